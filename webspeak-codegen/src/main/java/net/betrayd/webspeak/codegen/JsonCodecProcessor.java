@@ -0,0 +1,374 @@
+package net.betrayd.webspeak.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a <code>JsonCodec</code> for every type annotated with
+ * <code>@GenerateJsonCodec</code>. Codecs write the same JSON a default Gson
+ * instance would, without any reflection.
+ */
+@SupportedAnnotationTypes(JsonCodecProcessor.ANNOTATION)
+public class JsonCodecProcessor extends AbstractProcessor {
+
+    static final String PACKAGE = "net.betrayd.webspeak.impl.net.codec";
+    static final String ANNOTATION = PACKAGE + ".GenerateJsonCodec";
+
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+    /**
+     * Codecs in <code>JsonCodecs</code> for types that don't need generating.
+     */
+    private static final Map<String, String> BUILTIN_CODECS = Map.of(
+            "java.lang.String", "STRING",
+            "java.lang.Boolean", "BOOLEAN",
+            "java.lang.Integer", "INTEGER",
+            "java.lang.Long", "LONG",
+            "java.lang.Float", "FLOAT",
+            "java.lang.Double", "DOUBLE",
+            "com.google.gson.JsonElement", "ELEMENT",
+            "net.betrayd.webspeak.util.WebSpeakVector", "VECTOR");
+
+    /**
+     * A property of a type being generated.
+     *
+     * @param name   JSON and Java name.
+     * @param type   Java type.
+     * @param access Expression to get it from <code>val</code>.
+     * @param codec  Index of the codec field it uses, or <code>-1</code> if it's
+     *               primitive.
+     */
+    private static record Property(String name, TypeMirror type, String access, int codec) {};
+
+    /**
+     * Simple names already generated, so two types don't end up with the same
+     * codec.
+     */
+    private final Map<String, TypeElement> generated = new HashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                try {
+                    generate(type);
+                } catch (IOException e) {
+                    error(type, "Unable to write codec: " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static String getCodecName(TypeElement type) {
+        return type.getSimpleName() + "Codec";
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        String codecName = getCodecName(type);
+        TypeElement existing = generated.putIfAbsent(codecName, type);
+        if (existing != null) {
+            error(type, "Codec name " + codecName + " is already used by " + existing.getQualifiedName());
+            return;
+        }
+
+        boolean isRecord = type.getKind() == ElementKind.RECORD;
+        if (!isRecord && type.getKind() != ElementKind.CLASS) {
+            error(type, "Only records and classes can have generated codecs");
+            return;
+        } else if (!type.getModifiers().contains(Modifier.PUBLIC)) {
+            error(type, "Types with generated codecs must be public");
+            return;
+        }
+
+        List<Property> properties = new ArrayList<>();
+        List<String> codecs = new ArrayList<>();
+        if (isRecord) {
+            for (RecordComponentElement component : type.getRecordComponents()) {
+                String name = component.getSimpleName().toString();
+                addProperty(properties, codecs, component, name, component.asType(), "val." + name + "()");
+            }
+        } else {
+            if (!hasPublicNoArgConstructor(type)) {
+                error(type, "Classes with generated codecs need a public no-arg constructor");
+                return;
+            }
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT))
+                    continue;
+                if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.FINAL)) {
+                    error(field, "Fields of classes with generated codecs must be public and non-final");
+                    continue;
+                }
+                String name = field.getSimpleName().toString();
+                addProperty(properties, codecs, field, name, field.asType(), "val." + name);
+            }
+        }
+
+        String typeName = type.getQualifiedName().toString();
+        try (Writer writer = processingEnv.getFiler().createSourceFile(PACKAGE + "." + codecName, type).openWriter()) {
+            writer.write(writeSource(codecName, typeName, isRecord, properties, codecs));
+        }
+    }
+
+    private static boolean hasPublicNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addProperty(List<Property> properties, List<String> codecs, Element element, String name,
+            TypeMirror type, String access) {
+        if (type.getKind().isPrimitive()) {
+            if (type.getKind() == TypeKind.CHAR) {
+                error(element, "char properties aren't supported");
+                return;
+            }
+            properties.add(new Property(name, type, access, -1));
+            return;
+        }
+
+        String codec = getCodecExpression(element, type);
+        if (codec == null)
+            return;
+        codecs.add(codec);
+        properties.add(new Property(name, type, access, codecs.size() - 1));
+    }
+
+    /**
+     * Get the expression for a non-primitive type's codec.
+     * @return The expression, or <code>null</code> if the type isn't supported.
+     */
+    private String getCodecExpression(Element element, TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            error(element, "Unsupported property type " + type);
+            return null;
+        }
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement typeElement = (TypeElement) declared.asElement();
+        String qualifiedName = typeElement.getQualifiedName().toString();
+
+        String builtin = BUILTIN_CODECS.get(qualifiedName);
+        if (builtin != null) {
+            return "JsonCodecs." + builtin;
+        }
+
+        if (qualifiedName.equals("java.util.List")) {
+            String element0 = getCodecExpression(element, declared.getTypeArguments().get(0));
+            return element0 != null ? "JsonCodecs.list(" + element0 + ")" : null;
+        } else if (qualifiedName.equals("java.util.Map")) {
+            TypeMirror key = declared.getTypeArguments().get(0);
+            if (!key.toString().equals("java.lang.String")) {
+                error(element, "Only maps with string keys are supported");
+                return null;
+            }
+            String value = getCodecExpression(element, declared.getTypeArguments().get(1));
+            return value != null ? "JsonCodecs.map(" + value + ")" : null;
+        } else if (typeElement.getKind() == ElementKind.ENUM) {
+            return getEnumCodecExpression(typeElement);
+        }
+
+        for (AnnotationMirror annotation : typeElement.getAnnotationMirrors()) {
+            if (annotation.getAnnotationType().toString().equals(ANNOTATION)) {
+                return getCodecName(typeElement) + ".INSTANCE";
+            }
+        }
+
+        error(element, "Unsupported property type " + type + ". Is it missing @GenerateJsonCodec?");
+        return null;
+    }
+
+    private static String getEnumCodecExpression(TypeElement type) {
+        StringBuilder builder = new StringBuilder("JsonCodecs.ofEnum(")
+                .append(type.getQualifiedName()).append(".class");
+        for (Element constant : type.getEnclosedElements()) {
+            if (constant.getKind() != ElementKind.ENUM_CONSTANT)
+                continue;
+            String name = constant.getSimpleName().toString();
+            for (AnnotationMirror annotation : constant.getAnnotationMirrors()) {
+                if (!annotation.getAnnotationType().toString().equals(SERIALIZED_NAME))
+                    continue;
+                for (var entry : annotation.getElementValues().entrySet()) {
+                    if (entry.getKey().getSimpleName().contentEquals("value")) {
+                        name = (String) ((AnnotationValue) entry.getValue()).getValue();
+                    }
+                }
+            }
+            builder.append(", ").append(stringLiteral(name));
+        }
+        return builder.append(')').toString();
+    }
+
+    private static String stringLiteral(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7E) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String getReadMethod(TypeKind kind) {
+        return switch (kind) {
+            case BOOLEAN -> "in.nextBoolean()";
+            case BYTE -> "(byte) in.nextInt()";
+            case SHORT -> "(short) in.nextInt()";
+            case INT -> "in.nextInt()";
+            case LONG -> "in.nextLong()";
+            case FLOAT -> "in.nextFloat()";
+            case DOUBLE -> "in.nextDouble()";
+            default -> throw new IllegalArgumentException("Not a supported primitive: " + kind);
+        };
+    }
+
+    private static String getDefaultValue(TypeMirror type) {
+        return switch (type.getKind()) {
+            case BOOLEAN -> "false";
+            case BYTE, SHORT, INT, LONG, FLOAT, DOUBLE -> "0";
+            default -> "null";
+        };
+    }
+
+    private static String writeSource(String codecName, String typeName, boolean isRecord,
+            List<Property> properties, List<String> codecs) {
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(PACKAGE).append(";\n\n");
+        src.append("/**\n * Generated from {@link ").append(typeName).append("}. Do not edit.\n */\n");
+        src.append("public final class ").append(codecName).append(" implements JsonCodec<").append(typeName)
+                .append("> {\n\n");
+        src.append("    public static final ").append(codecName).append(" INSTANCE = new ").append(codecName)
+                .append("();\n\n");
+
+        for (int i = 0; i < codecs.size(); i++) {
+            src.append("    private static final JsonCodec<").append(getBoxedName(properties, i))
+                    .append("> CODEC_").append(i).append(" = ").append(codecs.get(i)).append(";\n");
+        }
+        if (!codecs.isEmpty()) {
+            src.append('\n');
+        }
+
+        src.append("    private static final String[] NAMES = {");
+        for (int i = 0; i < properties.size(); i++) {
+            src.append(i > 0 ? ", " : " ").append(stringLiteral(properties.get(i).name()));
+        }
+        src.append(properties.isEmpty() ? "};\n\n" : " };\n\n");
+
+        src.append("    private ").append(codecName).append("() {}\n\n");
+
+        // Write
+        src.append("    @Override\n");
+        src.append("    public void write(").append(typeName).append(" val, StringBuilder out) {\n");
+        src.append("        out.append('{');\n");
+        src.append("        int start = out.length();\n");
+        for (Property property : properties) {
+            String name = stringLiteral(property.name());
+            if (property.codec() < 0) {
+                src.append("        JsonOutput.name(out, start, ").append(name).append(");\n");
+                src.append("        JsonOutput.value(out, ").append(property.access()).append(");\n");
+            } else {
+                src.append("        if (").append(property.access()).append(" != null) {\n");
+                src.append("            JsonOutput.name(out, start, ").append(name).append(");\n");
+                src.append("            CODEC_").append(property.codec()).append(".write(")
+                        .append(property.access()).append(", out);\n");
+                src.append("        }\n");
+            }
+        }
+        src.append("        out.append('}');\n");
+        src.append("    }\n\n");
+
+        // Read
+        src.append("    @Override\n");
+        src.append("    public ").append(typeName).append(" read(JsonInput in) {\n");
+        if (isRecord) {
+            for (int i = 0; i < properties.size(); i++) {
+                Property property = properties.get(i);
+                src.append("        ").append(property.type()).append(" p").append(i).append(" = ")
+                        .append(getDefaultValue(property.type())).append(";\n");
+            }
+        } else {
+            src.append("        ").append(typeName).append(" val = new ").append(typeName).append("();\n");
+        }
+        src.append("        in.beginObject();\n");
+        src.append("        while (in.hasNext()) {\n");
+        src.append("            switch (in.nextName(NAMES)) {\n");
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            String target = isRecord ? "p" + i : property.access();
+            String value = property.codec() < 0
+                    ? getReadMethod(property.type().getKind())
+                    : "in.nextNull() ? null : CODEC_" + property.codec() + ".read(in)";
+            src.append("                case ").append(i).append(" -> ")
+                    .append(target).append(" = ").append(value).append(";\n");
+        }
+        src.append("                default -> in.skipValue();\n");
+        src.append("            }\n");
+        src.append("        }\n");
+        src.append("        in.endObject();\n");
+        if (isRecord) {
+            src.append("        return new ").append(typeName).append('(');
+            for (int i = 0; i < properties.size(); i++) {
+                if (i > 0) {
+                    src.append(", ");
+                }
+                src.append('p').append(i);
+            }
+            src.append(");\n");
+        } else {
+            src.append("        return val;\n");
+        }
+        src.append("    }\n");
+        src.append("}\n");
+        return src.toString();
+    }
+
+    private static String getBoxedName(List<Property> properties, int codec) {
+        for (Property property : properties) {
+            if (property.codec() == codec) {
+                return property.type().toString();
+            }
+        }
+        throw new IllegalArgumentException("No property uses codec " + codec);
+    }
+}
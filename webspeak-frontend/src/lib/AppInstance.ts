@@ -6,7 +6,8 @@ import webSpeakAudio from "./webSpeakAudio";
 import webspeakPackets from "./webspeakPackets";
 
 export interface LocalPlayerInfo {
-    playerID: string
+    playerID: string,
+    handle?: number
 }
 
 export type WebSpeakVector = [number, number, number]
@@ -14,7 +15,19 @@ export type WebSpeakVector = [number, number, number]
 export interface PlayerTransform {
     pos: WebSpeakVector,
     forward: WebSpeakVector,
-    up: WebSpeakVector
+    up: WebSpeakVector,
+    /**
+     * Velocity to extrapolate the position with until the next update, in units per second.
+     */
+    velocity?: WebSpeakVector
+}
+
+/**
+ * How compact transform positions are encoded relative to the channel.
+ */
+export interface TransformFormat {
+    origin: WebSpeakVector,
+    precision: number
 }
 
 
@@ -50,6 +63,13 @@ export default class AppInstance {
      */
     private readonly playerVolumes = new Map<String, number>();
 
+    /**
+     * The player IDs that compact transform handles belong to.
+     */
+    readonly playerHandles = new Map<number, string>();
+
+    transformFormat: TransformFormat = { origin: [0, 0, 0], precision: 1 };
+
     get pannerOptions(): Readonly<PannerOptions> {
         return this._pannerOptions;
     }
@@ -210,11 +230,49 @@ export default class AppInstance {
     }
 
 
+    private extrapolateID = -1;
+
+    /**
+     * Move every player that has a velocity along to where it should be now.
+     */
+    extrapolateTransforms() {
+        const now = performance.now();
+        this.localPlayer.extrapolate(now);
+        for (const player of this.players.values()) {
+            player.extrapolate(now);
+        }
+    }
+
+    /**
+     * Tell the server when the local player starts or stops speaking, so it can
+     * update silent players less often.
+     */
+    private readonly sendSpeaking = (speaking: boolean) => {
+        if (this.netManager.connectionStatus === WebSocket.OPEN) {
+            this.netManager.sendPacket("speaking", { speaking });
+        }
+    }
+
+    private readonly onSetupAudioManager = (audio: webSpeakAudio.WSAudioManager) => {
+        audio.voiceActivity?.onSpeakingChanged.addListener(this.sendSpeaking);
+    }
+
     public connect() {
         this.netManager.connect();
+        this.extrapolateID = setInterval(() => this.extrapolateTransforms(), 1000 / 30);
+
+        let audio = webSpeakAudio.getAudioManager();
+        if (audio) {
+            this.onSetupAudioManager(audio);
+        } else {
+            webSpeakAudio.onSetupAudioManager.addListener(this.onSetupAudioManager);
+        }
     }
     
     public shutdown() {
         this.netManager.disconnect();
+        clearInterval(this.extrapolateID);
+        webSpeakAudio.onSetupAudioManager.removeListener(this.onSetupAudioManager);
+        webSpeakAudio.getAudioManager()?.voiceActivity?.onSpeakingChanged.removeListener(this.sendSpeaking);
     }
 }
\ No newline at end of file
@@ -1,6 +1,24 @@
 import AppInstance from "./AppInstance";
 import SimpleEvent from "./util/SimpleEvent";
 
+/**
+ * Subprotocol for the binary protocol. See `BinaryProtocol` on the server.
+ */
+const BINARY_SUBPROTOCOL = "webspeak.binary";
+const JSON_SUBPROTOCOL = "webspeak.json";
+
+/**
+ * Packet number that defines a new packet number.
+ */
+const DEFINE = 0;
+/**
+ * Packet number that starts a frame made of several frames, each a varint length and its bytes.
+ * Text protocol connections get these too; text packets never start with this byte.
+ */
+const BATCH = 1;
+const FORMAT_TEXT = 0;
+const FORMAT_BINARY = 1;
+
 /**
  * Recieves and handles packets from the server. Usually, one will exist per app instance.
  */
@@ -24,6 +42,11 @@ export default class NetManager {
      */
     readonly packetHandlers: Map<string, (payload: string) => void> = new Map();
 
+    /**
+     * A map of packet IDs and functions to handle them when they're sent in their binary encoding.
+     */
+    readonly binaryHandlers: Map<string, (payload: DataView) => void> = new Map();
+
     readonly app: AppInstance;
 
     /**
@@ -35,7 +58,7 @@ export default class NetManager {
      * An optional callback to be notified when a packet is recieved before it is handled.
      * @returns Whether to continue packet execution
      */
-    onPacket: (packetID: string, payload: string) => boolean = () => true;
+    onPacket: (packetID: string, payload: string | DataView) => boolean = () => true;
     onWsOpen: (e: Event) => void = e => console.log("Websocket has opened!", e);
     onWsError: (e: Event) => void = console.error;
     onWsClose: (e: CloseEvent) => void = e => console.log("Websocket has closed. ", e.reason);
@@ -74,6 +97,25 @@ export default class NetManager {
     
     private keepAliveID = -1;
 
+    /**
+     * Packets the server has defined on a binary connection, by number.
+     */
+    private readonly receivedPackets: Map<number, { name: string, binary: boolean }> = new Map();
+
+    /**
+     * Numbers we've defined for packets we send on a binary connection, by ID.
+     */
+    private readonly sentPackets: Map<string, number> = new Map();
+
+    private readonly textEncoder = new TextEncoder();
+
+    /**
+     * Whether the current connection uses the binary protocol.
+     */
+    get isBinary() {
+        return this.wsConnection?.protocol === BINARY_SUBPROTOCOL;
+    }
+
     /**
      * Register a packet handler on a given packet ID.
      * @param app Will be passed to handler for convenience
@@ -93,35 +135,67 @@ export default class NetManager {
         this.packetHandlers.set(packetID, payload => handler(JSON.parse(payload), this.app));
     }
 
+    /**
+     * Register a handler for a packet's binary encoding. Only used if the server has one for the packet;
+     * otherwise, the text handler is used even on binary connections.
+     * @param packetID Packet ID to register to.
+     * @param handler Handler to register. The view starts at the packet's payload.
+     */
+    public registerBinaryHandler(packetID: string, handler: (payload: DataView, app: AppInstance) => void) {
+        this.binaryHandlers.set(packetID, payload => handler(payload, this.app));
+    }
+
     /**
      * Attempt to connect to the server, using the established connection address.
      */
     public connect() {
+        this.openConnection(true);
+    }
+
+    /**
+     * @param offerProtocols Whether to offer the binary and json subprotocols. Some relays don't
+     * pass the server's choice back, which makes the browser drop the connection, so if it closes
+     * before opening we try once more without them.
+     */
+    private openConnection(offerProtocols: boolean) {
         console.log("Attempting connection to " + this.connectionAddress)
         if (this.wsConnection) {
             throw new Error("Already connected to server.");
         }
-        let ws = new WebSocket(this.connectionAddress);
+        let ws = offerProtocols
+            ? new WebSocket(this.connectionAddress, [BINARY_SUBPROTOCOL, JSON_SUBPROTOCOL])
+            : new WebSocket(this.connectionAddress);
+        ws.binaryType = 'arraybuffer';
         this._wsConnection = ws;
+        this.receivedPackets.clear();
+        this.sentPackets.clear();
+        let opened = false;
 
         this.keepAliveID = setInterval(() => {
             this.sendPacket('keepAlive', { timestamp: Date.now() });
         }, 15000)
 
         ws.onopen = e => {
+            opened = true;
             this.onWsOpen(e);
             this.onConnectionStatusChanged.dispatch(ws.readyState);
         }
         
         ws.onclose = e => {
-            this.onWsClose(e);
             this._wsConnection = null;
             clearInterval(this.keepAliveID);
+            if (!opened && offerProtocols) {
+                this.openConnection(false);
+                return;
+            }
+            this.onWsClose(e);
             this.onConnectionStatusChanged.dispatch(ws.readyState);
             this.onDisconnect.dispatch({ message: e.reason, errored: false });
         }
 
         ws.onerror = e => {
+            // onclose always follows, and decides whether to retry.
+            if (!opened && offerProtocols) return;
             this.onWsError(e);
             this._wsConnection = null;
             this.onConnectionStatusChanged.dispatch(ws.readyState);
@@ -131,23 +205,78 @@ export default class NetManager {
         ws.onmessage = msg => this.onWsMessage(msg);
     }
 
+    private readonly textDecoder = new TextDecoder();
+
     protected onWsMessage(msg: MessageEvent) {
-        let strData = msg.data as string;
+        if (msg.data instanceof ArrayBuffer) {
+            this.onBinaryFrame(new Uint8Array(msg.data));
+        } else {
+            this.onTextMessage(msg.data as string);
+        }
+    }
+
+    private onBinaryFrame(data: Uint8Array) {
+        if (data.length > 0 && data[0] === BATCH) {
+            let view = new DataView(data.buffer, data.byteOffset, data.byteLength);
+            let offset = 1;
+            while (offset < data.length) {
+                let length: number;
+                [length, offset] = readVarInt(view, offset);
+                this.onBinaryFrame(data.subarray(offset, offset + length));
+                offset += length;
+            }
+        } else if (this.isBinary) {
+            this.onBinaryMessage(data);
+        } else {
+            // The server sends pre-encoded packets as binary frames; they're still UTF-8 text.
+            this.onTextMessage(this.textDecoder.decode(data));
+        }
+    }
+
+    private onBinaryMessage(data: Uint8Array) {
+        let view = new DataView(data.buffer, data.byteOffset, data.byteLength);
+        let [number, offset] = readVarInt(view, 0);
+        if (number === DEFINE) {
+            let defined: number;
+            [defined, offset] = readVarInt(view, offset);
+            let binary = view.getUint8(offset) === FORMAT_BINARY;
+            let name = this.textDecoder.decode(data.subarray(offset + 1));
+            this.receivedPackets.set(defined, { name, binary });
+            return;
+        }
+
+        let packet = this.receivedPackets.get(number);
+        if (packet == undefined) {
+            this.onPacketError("Packet number was never defined: " + number);
+            return;
+        }
+
+        if (packet.binary) {
+            this.handlePacket(packet.name, new DataView(data.buffer, data.byteOffset + offset, data.byteLength - offset));
+        } else {
+            this.handlePacket(packet.name, this.textDecoder.decode(data.subarray(offset)));
+        }
+    }
+
+    private onTextMessage(strData: string) {
         let index = strData.indexOf(';');
         if (index < 0) {
             this.onPacketError("No semicolon was found to indicate packet type.", strData);
             return;
         }
 
-        let name = strData.substring(0, index);
-        let payload = strData.substring(index + 1);
+        this.handlePacket(strData.substring(0, index), strData.substring(index + 1));
+    }
 
+    private handlePacket(name: string, payload: string | DataView) {
         // If there was an onPacket handler and it returned false.
         if (!this.onPacket(name, payload)) {
             return;
         }
 
-        let handler = this.packetHandlers.get(name);
+        let handler: ((payload: any) => void) | undefined = typeof(payload) === 'string'
+            ? this.packetHandlers.get(name)
+            : this.binaryHandlers.get(name);
         if (handler == undefined) {
             this.onPacketError("Unknown packet type: " + name);
             return;
@@ -156,7 +285,7 @@ export default class NetManager {
         try {
             handler(payload);
         } catch (err) {
-            this.onPacketError(`An error occured while handling packet ${strData}: `, err);
+            this.onPacketError(`An error occured while handling packet ${name}: `, err, payload);
         }
     }
 
@@ -179,8 +308,20 @@ export default class NetManager {
         if (typeof(payload) !== 'string') {
             payload = JSON.stringify(payload);
         }
-        
-        ws.send(packetID + ';' + payload);
+
+        if (!this.isBinary) {
+            ws.send(packetID + ';' + payload);
+            return;
+        }
+
+        // Everything we send uses the text format; only the server's packets are worth encoding.
+        let number = this.sentPackets.get(packetID);
+        if (number == undefined) {
+            number = this.sentPackets.size + 1;
+            this.sentPackets.set(packetID, number);
+            ws.send(concatBytes(writeVarInt(DEFINE), writeVarInt(number), [FORMAT_TEXT], this.textEncoder.encode(packetID)));
+        }
+        ws.send(concatBytes(writeVarInt(number), this.textEncoder.encode(payload)));
     }
 
     public disconnect() {
@@ -189,4 +330,39 @@ export default class NetManager {
             this._wsConnection = null;
         }
     }
-}
\ No newline at end of file
+}
+/**
+ * Read an unsigned LEB128 varint.
+ * @returns The value and the offset after it.
+ */
+export function readVarInt(view: DataView, offset: number): [number, number] {
+    let value = 0;
+    let shift = 0;
+    let b: number;
+    do {
+        b = view.getUint8(offset++);
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+    } while (b & 0x80);
+    return [value >>> 0, offset];
+}
+
+function writeVarInt(value: number): number[] {
+    let bytes: number[] = [];
+    while (value > 0x7F) {
+        bytes.push((value & 0x7F) | 0x80);
+        value >>>= 7;
+    }
+    bytes.push(value);
+    return bytes;
+}
+
+function concatBytes(...parts: ArrayLike<number>[]): Uint8Array {
+    let result = new Uint8Array(parts.reduce((len, part) => len + part.length, 0));
+    let offset = 0;
+    for (const part of parts) {
+        result.set(part, offset);
+        offset += part.length;
+    }
+    return result;
+}
@@ -0,0 +1,76 @@
+import SimpleEvent from "./util/SimpleEvent";
+
+/**
+ * Decides whether the user is speaking based on the level of their mic.
+ * Speaking starts as soon as the level goes over the threshold, and stops once it's
+ * been under the threshold for the hold time, so short pauses between words don't count.
+ */
+export default class VoiceActivityDetector {
+
+    /**
+     * Called whenever the user starts or stops speaking.
+     */
+    readonly onSpeakingChanged = new SimpleEvent<boolean>();
+
+    /**
+     * RMS level, from `0` to `1`, the mic has to go over to count as speaking.
+     */
+    threshold = 0.02;
+
+    /**
+     * How long the mic has to be quiet before the user stops speaking, in milliseconds.
+     */
+    holdTime = 300;
+
+    private readonly analyser: AnalyserNode;
+    private readonly samples: Float32Array;
+    private readonly intervalID: number;
+
+    private _speaking = false;
+    private lastLoudTime = -Infinity;
+
+    get speaking() {
+        return this._speaking;
+    }
+
+    /**
+     * Start detecting voice activity.
+     * @param audioCtx Audio context to analyze in.
+     * @param mic The user's mic.
+     * @param interval How often to check the mic level, in milliseconds.
+     */
+    constructor(audioCtx: AudioContext, mic: MediaStream, interval = 50) {
+        this.analyser = audioCtx.createAnalyser();
+        this.analyser.fftSize = 1024;
+        this.samples = new Float32Array(this.analyser.fftSize);
+        audioCtx.createMediaStreamSource(mic).connect(this.analyser);
+        this.intervalID = setInterval(() => this.update(), interval);
+    }
+
+    private update() {
+        this.analyser.getFloatTimeDomainData(this.samples);
+        let sum = 0;
+        for (const sample of this.samples) {
+            sum += sample * sample;
+        }
+        const level = Math.sqrt(sum / this.samples.length);
+
+        const now = performance.now();
+        if (level > this.threshold) {
+            this.lastLoudTime = now;
+        }
+        const speaking = now - this.lastLoudTime < this.holdTime;
+        if (speaking !== this._speaking) {
+            this._speaking = speaking;
+            this.onSpeakingChanged.dispatch(speaking);
+        }
+    }
+
+    /**
+     * Stop detecting voice activity.
+     */
+    public stop() {
+        clearInterval(this.intervalID);
+        this.analyser.disconnect();
+    }
+}
@@ -60,6 +60,30 @@ export default abstract class WebSpeakPlayer {
     upY = 0;
     upZ = 1;
 
+    velX = 0;
+    velY = 0;
+    velZ = 0;
+
+    /**
+     * The position and time of the last transform update, for extrapolation.
+     */
+    private basePos: WebSpeakVector = [0, 0, 0];
+    private baseTime = 0;
+
+    /**
+     * Move the player along its velocity to where it should be at a given time.
+     * Automatically calls `updateTransform()` if the player is moving.
+     * @param time Current time, from `performance.now()`.
+     */
+    extrapolate(time: number) {
+        if (this.velX == 0 && this.velY == 0 && this.velZ == 0) return;
+        const seconds = (time - this.baseTime) / 1000;
+        this.x = this.basePos[0] + this.velX * seconds;
+        this.y = this.basePos[1] + this.velY * seconds;
+        this.z = this.basePos[2] + this.velZ * seconds;
+        this.updateTransform();
+    }
+
     /**
      * Copy the values from another player into this. Automatically calls `updateTransform()`.
      * @param other Player to copy the values of.
@@ -77,6 +101,12 @@ export default abstract class WebSpeakPlayer {
         this.upY = other.upY;
         this.upZ = other.upZ;
 
+        this.velX = other.velX;
+        this.velY = other.velY;
+        this.velZ = other.velZ;
+        this.basePos = other.basePos;
+        this.baseTime = other.baseTime;
+
         this.updateTransform();
         this.audioModifier = other.audioModifier;
         // this.spatialized = other.spatialized;
@@ -91,6 +121,14 @@ export default abstract class WebSpeakPlayer {
             this.x = transform.pos[0];
             this.y = transform.pos[1];
             this.z = transform.pos[2];
+
+            // Servers that don't dead reckon never send velocity.
+            const velocity = transform.velocity ?? [0, 0, 0];
+            this.velX = velocity[0];
+            this.velY = velocity[1];
+            this.velZ = velocity[2];
+            this.basePos = [this.x, this.y, this.z];
+            this.baseTime = performance.now();
         }
 
         if (transform.forward) {
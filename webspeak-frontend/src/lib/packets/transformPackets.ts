@@ -0,0 +1,115 @@
+import AppInstance, { TransformFormat, WebSpeakVector } from "../AppInstance";
+
+/**
+ * Decodes the compact transform encoding. Each transform is a varint of the
+ * player handle shifted left by one, three big-endian 32-bit fixed-point
+ * coordinates and a 32-bit smallest-three quaternion, sent as base64. If the
+ * low bit of the varint is set, three 16-bit fixed-point velocity components
+ * follow. On binary connections, the bytes are sent as-is.
+ */
+module transformPackets {
+    const ORIENTATION_MAX = (1 << 10) - 1;
+
+    /**
+     * Velocities are encoded in steps of the format precision times this, per second.
+     */
+    const VELOCITY_SCALE = 4;
+
+    export function registerHandlers(app: AppInstance) {
+        app.netManager.registerJsonHandler('setTransformFormat', onSetTransformFormat);
+        app.netManager.registerJsonHandler('setPlayerHandles', onSetPlayerHandles);
+        app.netManager.registerHandler('compactTransform', onCompactTransform);
+        app.netManager.registerBinaryHandler('compactTransform', decodeCompact);
+    }
+
+    function onSetTransformFormat(payload: TransformFormat, app: AppInstance) {
+        app.transformFormat = payload;
+    }
+
+    function onSetPlayerHandles(payload: Record<string, number>, app: AppInstance) {
+        for (const [playerID, handle] of Object.entries(payload)) {
+            app.playerHandles.set(handle, playerID);
+        }
+    }
+
+    function onCompactTransform(payload: string, app: AppInstance) {
+        const binary = atob(payload);
+        const bytes = new Uint8Array(binary.length);
+        for (let i = 0; i < binary.length; i++) {
+            bytes[i] = binary.charCodeAt(i);
+        }
+        decodeCompact(new DataView(bytes.buffer), app);
+    }
+
+    function decodeCompact(view: DataView, app: AppInstance) {
+        const { origin, precision } = app.transformFormat;
+
+        let offset = 0;
+        // More than one transform may be packed into the same payload.
+        while (offset < view.byteLength) {
+            let header = 0;
+            let shift = 0;
+            let byte: number;
+            do {
+                byte = view.getUint8(offset++);
+                header |= (byte & 0x7F) << shift;
+                shift += 7;
+            } while (byte & 0x80);
+            const handle = header >>> 1;
+
+            const pos: WebSpeakVector = [
+                origin[0] + view.getInt32(offset) * precision,
+                origin[1] + view.getInt32(offset + 4) * precision,
+                origin[2] + view.getInt32(offset + 8) * precision
+            ];
+            const [forward, up] = unpackOrientation(view.getUint32(offset + 12));
+            offset += 16;
+
+            let velocity: WebSpeakVector | undefined;
+            if (header & 1) {
+                const step = precision * VELOCITY_SCALE;
+                velocity = [
+                    view.getInt16(offset) * step,
+                    view.getInt16(offset + 2) * step,
+                    view.getInt16(offset + 4) * step
+                ];
+                offset += 6;
+            }
+
+            const playerID = app.playerHandles.get(handle);
+            if (playerID == undefined) {
+                app.netManager.onPacketError("Unknown player handle: " + handle);
+                continue;
+            }
+            app.updatePlayerTransform(playerID, { pos, forward, up, velocity });
+        }
+    }
+
+    /**
+     * Unpack a smallest-three quaternion into forward and up vectors.
+     * @param packed Packed orientation.
+     * @returns Forward and up.
+     */
+    export function unpackOrientation(packed: number): [WebSpeakVector, WebSpeakVector] {
+        const largest = packed >>> 30;
+        const q = [0, 0, 0, 0]; // x, y, z, w
+        let sum = 0;
+        let shift = 20;
+        for (let i = 0; i < 4; i++) {
+            if (i == largest) continue;
+            const bits = (packed >>> shift) & ORIENTATION_MAX;
+            q[i] = (bits / ORIENTATION_MAX - 0.5) * 2 / Math.SQRT2;
+            sum += q[i] * q[i];
+            shift -= 10;
+        }
+        q[largest] = Math.sqrt(Math.max(0, 1 - sum));
+
+        const [x, y, z, w] = q;
+        return [
+            [2 * (x * z + w * y), 2 * (y * z - w * x), 1 - 2 * (x * x + y * y)],
+            [2 * (x * y - w * z), 1 - 2 * (x * x + z * z), 2 * (y * z + w * x)]
+        ];
+    }
+}
+
+export default transformPackets;
@@ -1,3 +1,4 @@
+import VoiceActivityDetector from "./VoiceActivityDetector";
 import SimpleEvent from "./util/SimpleEvent";
 
 /**
@@ -21,6 +22,11 @@ module webSpeakAudio {
          */
         public readonly audioCtx: AudioContext
 
+        /**
+         * Detects when the user is speaking. `null` if they denied mic permissions.
+         */
+        public readonly voiceActivity: VoiceActivityDetector | null;
+
         private readonly _outputNode: GainNode;
 
         /**
@@ -36,6 +42,7 @@ module webSpeakAudio {
             this.audioCtx = new AudioContext();
             this._outputNode = this.audioCtx.createGain();
             this._outputNode.connect(this.audioCtx.destination);
+            this.voiceActivity = userMic ? new VoiceActivityDetector(this.audioCtx, userMic) : null;
         }
         
         /**
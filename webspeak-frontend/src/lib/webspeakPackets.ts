@@ -1,7 +1,10 @@
-import AppInstance, { PlayerTransform } from "./AppInstance";
+import AppInstance, { PlayerTransform, WebSpeakVector } from "./AppInstance";
+import { readVarInt } from "./NetManager";
 import { AudioModifier } from "./WebSpeakPlayer";
+import PlayerListEntry from "./util/PlayerListEntry";
 import playerListPackets from "./packets/playerListPackets";
 import rtcPackets from "./packets/rtcPackets";
+import transformPackets from "./packets/transformPackets";
 
 module webspeakPackets {
     export function setupPacketListeners(app: AppInstance) {
@@ -20,13 +23,17 @@ module webspeakPackets {
         //     })
         // }
 
+        registerHandler('initialState', onInitialState);
         registerHandler('localPlayerInfo', onLocalPlayerInfo);
         registerHandler('updateTransform', onUpdateTransform);
+        app.netManager.registerBinaryHandler('updateTransform', onBinaryUpdateTransform);
+        registerHandler('updateTransforms', onUpdateTransforms);
         registerHandler('setPannerOptions', onSetPannerOptions);
         registerHandler('setAudioModifier', onSetAudioModifier)
 
         rtcPackets.registerHandlers(app);
         playerListPackets.registerHandlers(app);
+        transformPackets.registerHandlers(app);
         
         // registerRTCPacketHandler('handIce', onHandIce);
         // registerHandler('requestOffer', onRequestOffer);
@@ -35,18 +42,55 @@ module webspeakPackets {
         // registerHandler('disconnectRTC', onDisconnectRTC);
     }
 
+    interface TransformData extends PlayerTransform {
+        playerID: string
+    }
+
+    interface LocalPlayerInfoData {
+        playerID?: string,
+        handle?: number
+    }
+
+    /**
+     * Everything the client needs when it first connects. May be split over several packets, in
+     * which case only the first has the local player info and panner options.
+     */
+    function onInitialState(app: AppInstance, payload: string) {
+        const state: {
+            localPlayer?: LocalPlayerInfoData,
+            pannerOptions?: PannerOptions,
+            playerEntries?: Record<string, PlayerListEntry>,
+            transforms?: Partial<TransformData>[]
+        } = JSON.parse(payload);
+
+        if (state.localPlayer) {
+            applyLocalPlayerInfo(app, state.localPlayer);
+        }
+        if (state.pannerOptions) {
+            app.setPannerOptions(state.pannerOptions);
+        }
+        if (state.playerEntries) {
+            app.playerList.setListEntries(Object.entries(state.playerEntries));
+        }
+        if (state.transforms) {
+            applyTransforms(app, state.transforms);
+        }
+    }
+
     function onLocalPlayerInfo(app: AppInstance, payload: string) {
-        const info: { playerID?: string } = JSON.parse(payload);
+        applyLocalPlayerInfo(app, JSON.parse(payload));
+    }
+
+    function applyLocalPlayerInfo(app: AppInstance, info: LocalPlayerInfoData) {
         if (info.playerID) {
             app.setLocalPlayerID(info.playerID);
+            if (info.handle != undefined) {
+                app.playerHandles.set(info.handle, info.playerID);
+            }
         }
     }
 
     function onUpdateTransform(app: AppInstance, payload: string) {
-        interface TransformData extends PlayerTransform {
-            playerID: string
-        }
-
         const data: Partial<TransformData> = JSON.parse(payload);
 
         if (data.playerID == undefined) {
@@ -57,6 +101,45 @@ module webspeakPackets {
 
     }
 
+    const textDecoder = new TextDecoder();
+
+    /**
+     * The player ID as a varint length and UTF-8, the position as three doubles, forward and up as
+     * three floats each, and a byte that's `1` if three velocity floats follow.
+     */
+    function onBinaryUpdateTransform(view: DataView, app: AppInstance) {
+        let [length, offset] = readVarInt(view, 0);
+        const playerID = textDecoder.decode(new Uint8Array(view.buffer, view.byteOffset + offset, length));
+        offset += length;
+
+        const readFloats = (): WebSpeakVector => {
+            const vec: WebSpeakVector = [view.getFloat32(offset), view.getFloat32(offset + 4), view.getFloat32(offset + 8)];
+            offset += 12;
+            return vec;
+        }
+
+        const pos: WebSpeakVector = [view.getFloat64(offset), view.getFloat64(offset + 8), view.getFloat64(offset + 16)];
+        offset += 24;
+        const forward = readFloats();
+        const up = readFloats();
+        const velocity = view.getUint8(offset++) ? readFloats() : undefined;
+
+        app.updatePlayerTransform(playerID, { pos, forward, up, velocity });
+    }
+
+    function onUpdateTransforms(app: AppInstance, payload: string) {
+        applyTransforms(app, JSON.parse(payload));
+    }
+
+    function applyTransforms(app: AppInstance, data: Partial<TransformData>[]) {
+        for (const transform of data) {
+            if (transform.playerID == undefined) {
+                throw new Error("Player ID was not sent.");
+            }
+            app.updatePlayerTransform(transform.playerID, transform);
+        }
+    }
+
     function onSetPannerOptions(app: AppInstance, payload: string) {
         let options: PannerOptions = JSON.parse(payload);
         app.setPannerOptions(options);
@@ -2,6 +2,7 @@ package net.betrayd.webspeak;
 
 import org.eclipse.jetty.websocket.api.StatusCode;
 
+import net.betrayd.webspeak.impl.net.EncodedPacket;
 import net.betrayd.webspeak.impl.net.S2CPacket;
 import net.betrayd.webspeak.impl.net.WebSpeakNet;
 
@@ -16,10 +17,39 @@ public interface PlayerConnection {
 
     public void sendText(String message);
 
+    /**
+     * Send a packet that's shared with other connections, usually made with
+     * {@link WebSpeakNet#encodePacket}. Implementations must not modify the
+     * buffers it hands out.
+     * <p>
+     * The default implementation sends it as text.
+     * 
+     * @param packet Encoded packet.
+     */
+    default void sendEncoded(EncodedPacket<?> packet) {
+        sendText(packet.getText());
+    }
+
     default <T> void sendPacket(S2CPacket<T> packet, T val) {
         sendText(WebSpeakNet.writePacket(packet, val));
     }
 
+    /**
+     * Hold back packets sent from now on until {@link #flushBatch}, so they can
+     * go out in as few frames as possible. Called at the start of each tick when
+     * {@link WebSpeakFlags#COALESCE_FRAMES} is set.
+     * <p>
+     * The default implementation does nothing.
+     */
+    default void startBatch() {
+    }
+
+    /**
+     * Send everything held back since {@link #startBatch}.
+     */
+    default void flushBatch() {
+    }
+
     public void disconnect(int statusCode, String reason);
     
     default void disconnect(String reason) {
@@ -0,0 +1,70 @@
+package net.betrayd.webspeak;
+
+import net.betrayd.webspeak.impl.TransformStore;
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+/**
+ * A player whose transform is pushed with {@link #setTransform} or
+ * {@link WebSpeakServer#updateTransforms} rather than polled. Its location,
+ * forward and up vectors are the last ones pushed.
+ * <p>
+ * A transform should be pushed as soon as the player is created. Until then,
+ * the player sits at the origin, and a warning is logged the first time the
+ * server polls it.
+ * 
+ * @implNote The last pushed transform is cached, so reading it only locks the
+ *           transform store if something was pushed since the last read.
+ */
+public abstract class PushedWebSpeakPlayer extends WebSpeakPlayer {
+
+    private record CachedTransform(long version, WebSpeakVector pos, WebSpeakVector forward, WebSpeakVector up) {
+    }
+
+    private volatile CachedTransform transform = new CachedTransform(-1, WebSpeakVector.ZERO,
+            new WebSpeakVector(0, 0, 1), new WebSpeakVector(0, 1, 0));
+    private volatile boolean warned;
+
+    public PushedWebSpeakPlayer(WebSpeakServer server, String playerId, String sessionId) {
+        super(server, playerId, sessionId);
+    }
+
+    private CachedTransform getTransform() {
+        TransformStore store = getServer().getTransformStore();
+        CachedTransform transform = this.transform;
+        if (transform.version() == store.getVersion()) {
+            return transform;
+        }
+        int handle = getHandle();
+        synchronized (store) {
+            long version = store.getVersion();
+            if (handle >= 0 && store.isPushed(handle)) {
+                transform = new CachedTransform(version, store.getPosition(handle), store.getForward(handle),
+                        store.getUp(handle));
+            } else {
+                // Only the server polls while holding its own lock.
+                if (handle >= 0 && !warned && Thread.holdsLock(getServer())) {
+                    warned = true;
+                    LOGGER.warn("Player was polled before a transform was pushed for it. Using the origin.");
+                }
+                transform = new CachedTransform(version, transform.pos(), transform.forward(), transform.up());
+            }
+        }
+        this.transform = transform;
+        return transform;
+    }
+
+    @Override
+    public WebSpeakVector getLocation() {
+        return getTransform().pos();
+    }
+
+    @Override
+    public WebSpeakVector getForward() {
+        return getTransform().forward();
+    }
+
+    @Override
+    public WebSpeakVector getUp() {
+        return getTransform().up();
+    }
+}
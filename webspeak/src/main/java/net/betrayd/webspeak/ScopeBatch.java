@@ -0,0 +1,102 @@
+package net.betrayd.webspeak;
+
+/**
+ * All the data a {@link ScopePolicy} needs to decide scope for a batch of
+ * candidate pairs in a single channel. Player data is stored in parallel
+ * arrays indexed by player index, and pair data is stored in parallel arrays
+ * indexed by pair index.
+ * 
+ * @apiNote The arrays returned by this batch may be longer than the number of
+ *          players or pairs, and are reused between ticks. Policies must not
+ *          modify them or keep them after {@link ScopePolicy#evaluate} returns.
+ */
+public interface ScopeBatch {
+
+    /**
+     * Get the channel all players in this batch are in.
+     * @return The channel.
+     */
+    WebSpeakChannel getChannel();
+
+    /**
+     * Get the number of players in this batch.
+     * @return Player count.
+     */
+    int getPlayerCount();
+
+    /**
+     * Get the player at a given index.
+     * @param index Player index.
+     * @return The player.
+     */
+    WebSpeakPlayer getPlayer(int index);
+
+    /**
+     * Get the X position of each player, as returned by
+     * {@link WebSpeakPlayer#getLocation} at the start of the tick.
+     * 
+     * @return X positions, indexed by player index.
+     */
+    double[] getX();
+
+    /**
+     * Get the Y position of each player.
+     * @return Y positions, indexed by player index.
+     * @see #getX
+     */
+    double[] getY();
+
+    /**
+     * Get the Z position of each player.
+     * @return Z positions, indexed by player index.
+     * @see #getX
+     */
+    double[] getZ();
+
+    /**
+     * Get the number of candidate pairs the policy needs to decide.
+     * @return Pair count.
+     */
+    int getPairCount();
+
+    /**
+     * Get the index of the first player in each pair.
+     * @return Player indices, indexed by pair index.
+     */
+    int[] getPairA();
+
+    /**
+     * Get the index of the second player in each pair.
+     * @return Player indices, indexed by pair index.
+     */
+    int[] getPairB();
+
+    /**
+     * Get whether each pair is currently in scope.
+     * @return Current scope state, indexed by pair index.
+     */
+    boolean[] getWasInScope();
+
+    /**
+     * Get whether each pair has spatialized audio. This is <code>false</code> if
+     * either player has an audio modifier that disables spatialization on the
+     * other.
+     * 
+     * @return Spatialization state, indexed by pair index.
+     */
+    boolean[] getSpatialized();
+
+    /**
+     * Get the range at which players join scope.
+     * @return Enter range.
+     * @see WebSpeakServer#getMaxAudioRange
+     */
+    float getRange();
+
+    /**
+     * Get the range at which players already in scope leave scope.
+     * @return Exit range.
+     * @see WebSpeakServer#getScopeExitRange
+     */
+    float getExitRange();
+}
@@ -0,0 +1,108 @@
+package net.betrayd.webspeak;
+
+import net.betrayd.webspeak.impl.scope.DistanceKernel;
+
+/**
+ * Decides which pairs of players in a channel are in scope. The server's
+ * broadphase picks out the candidate pairs and hands them to the policy in a
+ * single batch, so a policy can decide all of them in one tight loop.
+ * 
+ * @see WebSpeakServer#setScopePolicy
+ */
+@FunctionalInterface
+public interface ScopePolicy {
+
+    /**
+     * Decide whether each candidate pair in a batch should be in scope.
+     * 
+     * @param batch   Batch of candidate pairs.
+     * @param results Array to write the results to, indexed by pair index. At
+     *                least as long as {@link ScopeBatch#getPairCount}.
+     * @apiNote If {@link WebSpeakServer#setScopeExecutor} is set, this may be
+     *          called from several threads at once with different batches.
+     */
+    void evaluate(ScopeBatch batch, boolean[] results);
+
+    /**
+     * The default policy. Pairs without spatialized audio are always in scope.
+     * Other pairs join scope within the max audio range and leave scope past the
+     * scope exit range.
+     * <p>
+     * Unless a policy is set explicitly, the server switches to
+     * {@link #PER_PLAYER} once a player that overrides
+     * {@link WebSpeakPlayer#isInScope} is added.
+     */
+    public static final ScopePolicy DISTANCE = ScopePolicy::evaluateDistance;
+
+    /**
+     * A policy that calls {@link WebSpeakPlayer#isInScope} on each pair. Used
+     * automatically if <code>isInScope</code> has been overridden.
+     */
+    public static final ScopePolicy PER_PLAYER = (batch, results) -> {
+        int[] pairA = batch.getPairA();
+        int[] pairB = batch.getPairB();
+        for (int i = 0; i < batch.getPairCount(); i++) {
+            results[i] = batch.getPlayer(pairA[i]).isInScope(batch.getPlayer(pairB[i]));
+        }
+    };
+
+    private static void evaluateDistance(ScopeBatch batch, boolean[] results) {
+        double[] x = batch.getX();
+        double[] y = batch.getY();
+        double[] z = batch.getZ();
+        int[] pairA = batch.getPairA();
+        int[] pairB = batch.getPairB();
+        boolean[] wasInScope = batch.getWasInScope();
+        boolean[] spatialized = batch.getSpatialized();
+
+        double range = batch.getRange();
+        double exitRange = batch.getExitRange();
+        double rangeSquared = range * range;
+        double exitRangeSquared = exitRange * exitRange;
+
+        if (!DistanceKernel.isVectorized()) {
+            for (int i = 0; i < batch.getPairCount(); i++) {
+                int a = pairA[i];
+                int b = pairB[i];
+                double dx = x[a] - x[b];
+                double dy = y[a] - y[b];
+                double dz = z[a] - z[b];
+                double distanceSquared = dx * dx + dy * dy + dz * dz;
+                results[i] = !spatialized[i]
+                        || distanceSquared <= (wasInScope[i] ? exitRangeSquared : rangeSquared);
+            }
+            return;
+        }
+
+        // Pairs are mostly grouped by their first player, so test each player
+        // against a block of its candidates at once.
+        DistanceKernel kernel = DistanceKernel.get();
+        DistanceKernel.Block block = DistanceKernel.getBlock(batch);
+        double[] blockX = block.x;
+        double[] blockY = block.y;
+        double[] blockZ = block.z;
+        double[] blockLimits = block.limitsSquared;
+
+        int pairCount = batch.getPairCount();
+        int start = 0;
+        while (start < pairCount) {
+            int a = pairA[start];
+            int count = 0;
+            while (start + count < pairCount && pairA[start + count] == a && count < DistanceKernel.BLOCK_SIZE) {
+                int i = start + count;
+                int b = pairB[i];
+                blockX[count] = x[b];
+                blockY[count] = y[b];
+                blockZ[count] = z[b];
+                blockLimits[count] = wasInScope[i] ? exitRangeSquared : rangeSquared;
+                count++;
+            }
+
+            long hits = kernel.withinRange(x[a], y[a], z[a], blockX, blockY, blockZ, blockLimits, count);
+            for (int n = 0; n < count; n++) {
+                results[start + n] = !spatialized[start + n] || (hits & (1L << n)) != 0;
+            }
+            start += count;
+        }
+    }
+}
@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.WeakHashMap;
 
+import net.betrayd.webspeak.util.WebSpeakVector;
+
 /**
  * A channel that a player can be in. Players will only be considered for scope
  * with other players in the same channel.
@@ -31,6 +33,31 @@ public class WebSpeakChannel {
         return name;
     }
 
+    private volatile WebSpeakVector origin = WebSpeakVector.ZERO;
+
+    /**
+     * Get the point that compact player transforms in this channel are encoded
+     * relative to.
+     * 
+     * @return Channel origin.
+     * @see WebSpeakFlags#COMPACT_TRANSFORMS
+     */
+    public WebSpeakVector getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Set the point that compact player transforms in this channel are encoded
+     * relative to. Should be somewhere near the players in the channel so their
+     * positions don't get clamped.
+     * 
+     * @param origin Channel origin.
+     * @see WebSpeakFlags#COMPACT_TRANSFORMS
+     */
+    public void setOrigin(WebSpeakVector origin) {
+        this.origin = origin != null ? origin : WebSpeakVector.ZERO;
+    }
+
     // If the player is no longer being tracked by the server, no reason to keep it here.
     private final Set<WebSpeakPlayer> players = Collections.newSetFromMap(new WeakHashMap<>());
 
@@ -23,4 +23,143 @@ public class WebSpeakFlags {
      * Log to console whenever a player swaps channels.
      */
     public static final WebSpeakFlag<Boolean> DEBUG_CHANNEL_SWAPS = new WebSpeakFlag<>("debugChannelSwaps", false);
+
+    /**
+     * Use a spatial hash grid to skip scope checks between players that are
+     * obviously out of range. Disable this if the server's {@link ScopePolicy}
+     * puts players in scope beyond the scope exit range. Unless this is set
+     * explicitly, the server disables it when it switches to
+     * {@link ScopePolicy#PER_PLAYER} on its own.
+     */
+    public static final WebSpeakFlag<Boolean> SCOPE_BROADPHASE = new WebSpeakFlag<>("scopeBroadphase", true);
+
+    /**
+     * Only re-check scope pairs where at least one player moved, had its audio
+     * modifiers change, or connected/changed channels. Don't use this if the
+     * server's {@link ScopePolicy} depends on anything else; call
+     * {@link WebSpeakServer#invalidateAllScopes} when that changes instead.
+     */
+    public static final WebSpeakFlag<Boolean> INCREMENTAL_SCOPES = new WebSpeakFlag<>("incrementalScopes", false);
+
+    /**
+     * How much further than the max audio range two players in scope have to
+     * move apart before they leave scope. Stops players standing at the edge of
+     * the range from constantly re-negotiating RTC connections.
+     */
+    public static final WebSpeakFlag<Float> SCOPE_EXIT_MARGIN = new WebSpeakFlag<>("scopeExitMargin", 2f);
+
+    /**
+     * The max number of players any player can be in scope with at once. If more
+     * players are in range, each player keeps the ones with the highest
+     * {@link WebSpeakPlayer#getScopePriority}. <code>0</code> for no limit.
+     */
+    public static final WebSpeakFlag<Integer> PEER_BUDGET = new WebSpeakFlag<>("peerBudget", 0);
+
+    /**
+     * Max time to spend evaluating scopes each tick, in microseconds. When set,
+     * channels are evaluated round-robin in slices of players, and whatever
+     * doesn't fit in the budget is picked up on the following ticks. Scopes are
+     * evaluated on the tick thread in this mode, even if a scope executor is
+     * set. <code>0</code> for no limit.
+     */
+    public static final WebSpeakFlag<Integer> SCOPE_TIME_BUDGET = new WebSpeakFlag<>("scopeTimeBudget", 0);
+
+    /**
+     * When {@link #SCOPE_TIME_BUDGET} is set, the max number of ticks a player can
+     * wait for its scopes to be evaluated. Players that have waited this long are
+     * evaluated even if the budget has run out.
+     */
+    public static final WebSpeakFlag<Integer> SCOPE_MAX_STALENESS = new WebSpeakFlag<>("scopeMaxStaleness", 20);
+
+    /**
+     * Send player transforms in a compact binary encoding instead of JSON.
+     * Positions are quantized relative to the channel's
+     * {@link WebSpeakChannel#getOrigin origin} and orientations are packed into a
+     * single quaternion. Should be set before any players connect.
+     */
+    public static final WebSpeakFlag<Boolean> COMPACT_TRANSFORMS = new WebSpeakFlag<>("compactTransforms", false);
+
+    /**
+     * When {@link #COMPACT_TRANSFORMS} is set, the size of the smallest position
+     * step clients can see. Positions are stored as 32-bit integers of this step,
+     * so smaller values reduce the max distance from the channel origin.
+     */
+    public static final WebSpeakFlag<Float> TRANSFORM_PRECISION = new WebSpeakFlag<>("transformPrecision", 1f / 128);
+
+    /**
+     * Send each client at most one transform frame per tick, containing every
+     * player in scope with it that moved, instead of one frame per player.
+     */
+    public static final WebSpeakFlag<Boolean> BATCH_TRANSFORMS = new WebSpeakFlag<>("batchTransforms", false);
+
+    /**
+     * The max number of ticks between transform updates for players near the edge
+     * of each other's audio range. Closer players are updated more often, down to
+     * every tick. Rounded down to a power of two. <code>1</code> to update every
+     * pair every tick.
+     */
+    public static final WebSpeakFlag<Integer> TRANSFORM_LOD_INTERVAL = new WebSpeakFlag<>("transformLodInterval", 1);
+
+    /**
+     * The number of ticks between transform updates for players that aren't
+     * speaking, as reported by their client's voice activity detection. Players
+     * still get their own transform every tick. Rounded down to a power of two.
+     * <code>1</code> to update silent players as often as speaking ones.
+     * 
+     * @see WebSpeakPlayer#isSpeaking
+     */
+    public static final WebSpeakFlag<Integer> SILENT_TRANSFORM_INTERVAL = new WebSpeakFlag<>("silentTransformInterval", 1);
+
+    /**
+     * Send each player's velocity along with its transform and let clients
+     * extrapolate with it. A new transform is only sent once the player has
+     * drifted too far from where clients will have extrapolated it to.
+     */
+    public static final WebSpeakFlag<Boolean> DEAD_RECKONING = new WebSpeakFlag<>("deadReckoning", false);
+
+    /**
+     * When {@link #DEAD_RECKONING} is set, how far a player's position can drift
+     * from the extrapolated position before a new transform is sent.
+     */
+    public static final WebSpeakFlag<Float> DEAD_RECKONING_POSITION_ERROR = new WebSpeakFlag<>("deadReckoningPositionError", 0.1f);
+
+    /**
+     * When {@link #DEAD_RECKONING} is set, how far a player's forward or up
+     * vector can turn, in degrees, before a new transform is sent.
+     */
+    public static final WebSpeakFlag<Float> DEAD_RECKONING_ANGLE_ERROR = new WebSpeakFlag<>("deadReckoningAngleError", 5f);
+
+    /**
+     * Let clients that offer it use the binary websocket protocol instead of the
+     * text one. Only affects connections made after it's set; clients going
+     * through a relay always use the text protocol.
+     */
+    public static final WebSpeakFlag<Boolean> BINARY_PROTOCOL = new WebSpeakFlag<>("binaryProtocol", false);
+
+    /**
+     * The number of bytes that can be waiting to be written to a client before
+     * it's considered to have fallen behind. Until it catches up, transform
+     * updates to it are dropped and other packets are queued.
+     */
+    public static final WebSpeakFlag<Integer> OUTBOUND_HIGH_WATERMARK = new WebSpeakFlag<>("outboundHighWatermark", 128 * 1024);
+
+    /**
+     * The number of bytes waiting to be written to a client that has fallen behind
+     * has to get down to before it's considered caught up. It's then sent the
+     * transforms it missed.
+     */
+    public static final WebSpeakFlag<Integer> OUTBOUND_LOW_WATERMARK = new WebSpeakFlag<>("outboundLowWatermark", 32 * 1024);
+
+    /**
+     * The number of bytes that can be waiting to be written to a client, queued
+     * packets included, before it's disconnected for falling too far behind.
+     */
+    public static final WebSpeakFlag<Integer> OUTBOUND_MAX_BYTES = new WebSpeakFlag<>("outboundMaxBytes", 2 * 1024 * 1024);
+
+    /**
+     * Hold back the packets sent to each client during a tick and send them at
+     * the end of it, together in one frame. Clients going through a relay, and
+     * clients that didn't negotiate a subprotocol, still get a frame per packet.
+     */
+    public static final WebSpeakFlag<Boolean> COALESCE_FRAMES = new WebSpeakFlag<>("coalesceFrames", false);
 }
@@ -28,6 +28,8 @@ public abstract class WebSpeakPlayer {
     protected final Logger LOGGER;
 
     PlayerConnection connection;
+
+    int handle = -1;
     
     public WebSpeakPlayer(WebSpeakServer server, String playerId, String sessionId) {
         LOGGER = LoggerFactory.getLogger("WebSpeak Player (" + playerId + ")");
@@ -57,6 +59,18 @@ public abstract class WebSpeakPlayer {
         return server;
     }
 
+    /**
+     * Get the small integer handle the server uses to refer to this player
+     * internally. Handles are unique among the players in a server, but may be
+     * reused once a player is removed.
+     * 
+     * @return Player handle, or <code>-1</code> if the player hasn't been added
+     *         to the server.
+     */
+    public final int getHandle() {
+        return handle;
+    }
+
     private WSPlayerListEntry playerListEntry = new WSPlayerListEntry("Default Name", "");
     // Initialize to true so we send updates on our next tick.
     private boolean isPlayerListDirty = true;
@@ -302,6 +316,7 @@ public abstract class WebSpeakPlayer {
      */
     public void invalidateAudioModifiers(Collection<? extends WebSpeakPlayer> players) {
         invalidAudioModifiers.addAll(players);
+        invalidateScopes(players);
         // for (var player : players) {
         //     updatePlayerAudioModifiers(player);
         // }
@@ -313,6 +328,18 @@ public abstract class WebSpeakPlayer {
      */
     public void invalidateAudioModifier(WebSpeakPlayer player) {
         invalidAudioModifiers.add(player);
+        server.invalidateScope(this);
+        server.invalidateScope(player);
+    }
+
+    // A modifier can (un)spatialize the pair, so scope needs to be re-checked.
+    private void invalidateScopes(Collection<? extends WebSpeakPlayer> players) {
+        if (players.isEmpty())
+            return;
+        server.invalidateScope(this);
+        for (var player : players) {
+            server.invalidateScope(player);
+        }
     }
 
     private final Consumer<Collection<? extends WebSpeakPlayer>> invalidateAudioModifiersListener = this::invalidateAudioModifiers;
@@ -439,6 +466,7 @@ public abstract class WebSpeakPlayer {
         this.channel = channel;
         if (channel != null) {
             this.channel.onAddPlayer(this);
+            server.invalidateScope(this);
         }
         if (getServer().getFlag(WebSpeakFlags.DEBUG_CHANNEL_SWAPS)) {
                 LOGGER.info("Player joined channel " + (channel != null ? channel.getName() : "null"));
@@ -467,8 +495,11 @@ public abstract class WebSpeakPlayer {
 
 
     /**
-     * Get the global location of this player.
+     * Get the global location of this player. Polled every tick unless the
+     * player's transform is pushed with {@link #setTransform}.
+     * 
      * @return Player location vector.
+     * @see PushedWebSpeakPlayer
      */
     public abstract WebSpeakVector getLocation();
 
@@ -489,20 +520,95 @@ public abstract class WebSpeakPlayer {
     }
 
     /**
-     * Check if this player is in scope with another player.
+     * Push a new transform for this player and mark it as changed. Once this has
+     * been called, the player's transform is no longer polled, so it must be
+     * pushed every time it changes.
+     * 
+     * @param pos     New location.
+     * @param forward New forward vector. <code>null</code> to keep the current
+     *                one.
+     * @param up      New up vector. <code>null</code> to keep the current one.
+     * @see WebSpeakServer#updateTransforms
+     * @see PushedWebSpeakPlayer
+     */
+    public final void setTransform(WebSpeakVector pos, WebSpeakVector forward, WebSpeakVector up) {
+        server.updateTransform(this, pos, forward, up);
+    }
+
+    private volatile boolean speaking;
+
+    /**
+     * Check if this player is speaking, as reported by their client's voice
+     * activity detection.
+     * 
+     * @return If the player is speaking.
+     * @see WebSpeakFlags#SILENT_TRANSFORM_INTERVAL
+     */
+    public boolean isSpeaking() {
+        return speaking;
+    }
+
+    /**
+     * Set whether this player is speaking. Called when the client's voice
+     * activity detection reports a change.
+     * 
+     * @param speaking If the player is speaking.
+     */
+    public void setSpeaking(boolean speaking) {
+        this.speaking = speaking;
+    }
+
+    /**
+     * Check if this player is in scope with another player. Players join scope
+     * within the max audio range, but only leave scope once they're further
+     * apart than the scope exit range.
      * 
      * @param other Other player.
      * @return If we're in scope
+     * @apiNote The server only calls this when its scope policy is
+     *          {@link ScopePolicy#PER_PLAYER}, which it switches to when a
+     *          player that overrides this is added, unless another policy was
+     *          set explicitly. Otherwise, this gives the same result as
+     *          {@link ScopePolicy#DISTANCE}. When
+     *          {@link WebSpeakFlags#SCOPE_BROADPHASE} is enabled, this is only
+     *          called on players within roughly the max audio range of each
+     *          other, players already in scope, and players with an audio
+     *          modifier between them. The server disables it along with
+     *          switching policies, unless it was set explicitly.
      */
     public boolean isInScope(WebSpeakPlayer other) {
         if (!this.getAudioModifier(other).isSpatialized() || !other.getAudioModifier(this).isSpatialized()) {
             return true;
         }
 
-        float range = server.getMaxAudioRange();
+        double range = server.areInScope(this, other) ? server.getScopeExitRange() : server.getMaxAudioRange();
         return this.getLocation().squaredDistanceTo(other.getLocation()) <= range * range;
     }
 
+    /**
+     * Get how important it is for this player to be in scope with another player.
+     * When {@link WebSpeakFlags#PEER_BUDGET} is set and more players are in range
+     * than the budget allows, the players with the highest priority are kept.
+     * 
+     * @param other Other player.
+     * @return Scope priority. Higher values are kept first.
+     * @implNote By default, players without spatialized audio are always kept
+     *           first, followed by the nearest players. Players already in scope
+     *           get the benefit of {@link WebSpeakFlags#SCOPE_EXIT_MARGIN} so
+     *           two similarly-distant players don't keep swapping places.
+     */
+    public double getScopePriority(WebSpeakPlayer other) {
+        if (!this.getAudioModifier(other).isSpatialized() || !other.getAudioModifier(this).isSpatialized()) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double distance = this.getLocation().distanceTo(other.getLocation());
+        if (server.areInScope(this, other)) {
+            distance = Math.max(distance - server.getFlag(WebSpeakFlags.SCOPE_EXIT_MARGIN), 0);
+        }
+        return -distance;
+    }
+
     /**
      * Perform any additional ticking this webspeak player desires.
      */
@@ -1,10 +1,15 @@
 package net.betrayd.webspeak;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
@@ -12,30 +17,42 @@ import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.betrayd.webspeak.WebSpeakFlags.WebSpeakFlag;
+import net.betrayd.webspeak.impl.HandleSet;
 import net.betrayd.webspeak.impl.PlayerCoordinateManager;
+import net.betrayd.webspeak.impl.PlayerHandleRegistry;
 import net.betrayd.webspeak.impl.RTCManager;
-import net.betrayd.webspeak.impl.RelationGraph;
 import net.betrayd.webspeak.impl.ServerBackend;
+import net.betrayd.webspeak.impl.TransformStore;
 import net.betrayd.webspeak.impl.WebSpeakFlagHolder;
 import net.betrayd.webspeak.impl.jetty.JettyServerBackend;
+import net.betrayd.webspeak.impl.net.EncodedPacket;
 import net.betrayd.webspeak.impl.net.WebSpeakNet;
+import net.betrayd.webspeak.impl.net.packets.InitialStateS2CPacket;
 import net.betrayd.webspeak.impl.net.packets.LocalPlayerInfoS2CPacket;
 import net.betrayd.webspeak.impl.net.packets.PlayerListPackets;
 import net.betrayd.webspeak.impl.net.packets.SetPannerOptionsC2SPacket;
+import net.betrayd.webspeak.impl.net.packets.UpdateTransformS2CPacket;
 import net.betrayd.webspeak.impl.relay.RelayServerBackend;
-import net.betrayd.webspeak.impl.util.WebSpeakUtils;
+import net.betrayd.webspeak.impl.scope.ChannelScopeEvaluator;
+import net.betrayd.webspeak.impl.scope.ScopeDiff;
+import net.betrayd.webspeak.impl.scope.ScopeMatrix;
+import net.betrayd.webspeak.impl.scope.ScopeSnapshot;
 import net.betrayd.webspeak.util.PannerOptions;
 import net.betrayd.webspeak.util.WSPlayerListEntry;
 import net.betrayd.webspeak.util.WebSpeakEvents;
 import net.betrayd.webspeak.util.WebSpeakEvents.WebSpeakEvent;
 import net.betrayd.webspeak.util.WebSpeakMath;
+import net.betrayd.webspeak.util.WebSpeakVector;
 
 //TODO: remove everthing I changed to this class in the last commit and make it good. THis class is the worst offender of the slapped together code I threw in
 
@@ -71,15 +88,226 @@ public class WebSpeakServer implements Executor {
     
     private final WebSpeakChannel defaultChannel;
 
-    // private final RelationGraph<WebSpeakPlayer> rtcConnections = new RelationGraph<>();
     private final RTCManager rtcManager = new RTCManager(this);
-    private final PlayerCoordinateManager playerCoordinateManager = new PlayerCoordinateManager(this);
+
+    /**
+     * Transforms pushed with {@link #updateTransforms}.
+     * @implNote Guarded by its own monitor, not the server's, so pushes don't
+     *           wait for ticks.
+     */
+    private final TransformStore transformStore = new TransformStore();
 
     /**
      * Keep track of all players in scope with each other.
      * @apiNote Only players that have a client connected are considered for scope.
+     * @implNote Only modified while holding the server's monitor.
+     */
+    private final ScopeMatrix scopes = new ScopeMatrix();
+
+    /**
+     * The latest published copy of <code>scopes</code>, for threads that don't
+     * hold the server's monitor.
+     */
+    private volatile ScopeSnapshot scopeSnapshot = ScopeSnapshot.EMPTY;
+    private long scopeEpoch;
+
+    private final PlayerHandleRegistry playerHandles = new PlayerHandleRegistry();
+    private final PlayerCoordinateManager playerCoordinateManager = new PlayerCoordinateManager(this, transformStore,
+            playerHandles);
+
+    /**
+     * Scope evaluators for each channel, which keep their broadphase state between ticks.
+     */
+    private final Map<WebSpeakChannel, ChannelScopeEvaluator> scopeEvaluators = new WeakHashMap<>();
+
+    /**
+     * Whether each player class overrides {@link WebSpeakPlayer#isInScope}.
+     */
+    private static final ClassValue<Boolean> OVERRIDES_IS_IN_SCOPE = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("isInScope", WebSpeakPlayer.class).getDeclaringClass() != WebSpeakPlayer.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private volatile ScopePolicy scopePolicy = ScopePolicy.DISTANCE;
+
+    /**
+     * If the scope policy was set with {@link #setScopePolicy}, rather than
+     * picked based on the players that were added.
+     */
+    private boolean scopePolicySet;
+    private boolean warnedIsInScope;
+
+    /**
+     * If {@link WebSpeakFlags#SCOPE_BROADPHASE} was set with {@link #setFlag},
+     * rather than left for the server to decide.
+     */
+    private volatile boolean scopeBroadphaseSet;
+
+    /**
+     * Get the policy that decides which players are in scope.
+     * @return Current scope policy.
+     */
+    public ScopePolicy getScopePolicy() {
+        return scopePolicy;
+    }
+
+    /**
+     * Set the policy that decides which players are in scope. Every scope pair
+     * will be re-checked next tick.
+     * <p>
+     * If this is never called, the server uses {@link ScopePolicy#DISTANCE}
+     * until a player that overrides {@link WebSpeakPlayer#isInScope} is added,
+     * and {@link ScopePolicy#PER_PLAYER} from then on. The switch also disables
+     * {@link WebSpeakFlags#SCOPE_BROADPHASE}, unless it was set explicitly, as
+     * the override may keep players in scope at any distance.
+     * 
+     * @param scopePolicy New scope policy.
+     */
+    public synchronized void setScopePolicy(ScopePolicy scopePolicy) {
+        this.scopePolicy = Objects.requireNonNull(scopePolicy);
+        scopePolicySet = true;
+        invalidateAllScopes();
+    }
+
+    /**
+     * Make sure a player's <code>isInScope</code> override is called, unless a
+     * scope policy was set explicitly.
+     */
+    private synchronized void checkScopePolicy(WebSpeakPlayer player) {
+        if (scopePolicy == ScopePolicy.PER_PLAYER || !OVERRIDES_IS_IN_SCOPE.get(player.getClass())) {
+            return;
+        }
+        if (!scopePolicySet) {
+            scopePolicy = ScopePolicy.PER_PLAYER;
+            if (!scopeBroadphaseSet) {
+                // Bypass setFlag so the game can still turn it back on.
+                flagHolder.setFlag(WebSpeakFlags.SCOPE_BROADPHASE, false);
+                LOGGER.info("{} overrides isInScope; using ScopePolicy.PER_PLAYER without the scope broadphase",
+                        player.getClass().getName());
+            } else {
+                LOGGER.info("{} overrides isInScope; using ScopePolicy.PER_PLAYER", player.getClass().getName());
+            }
+            invalidateAllScopes();
+        } else if (!warnedIsInScope) {
+            warnedIsInScope = true;
+            LOGGER.warn("{} overrides isInScope, but the server's scope policy doesn't call it",
+                    player.getClass().getName());
+        }
+    }
+
+    private volatile ForkJoinPool scopeExecutor;
+
+    /**
+     * Get the pool that channel scopes are evaluated on.
+     * @return The pool, or <code>null</code> if scopes are evaluated on the tick thread.
+     */
+    public ForkJoinPool getScopeExecutor() {
+        return scopeExecutor;
+    }
+
+    /**
+     * Evaluate the scopes of each channel in parallel on a given pool. Scope
+     * changes are still applied and scope events are still fired on the tick
+     * thread, in the same order as if they were evaluated sequentially.
+     * 
+     * @param scopeExecutor Pool to use, or <code>null</code> to evaluate all
+     *                      channels on the tick thread.
+     * @apiNote When this is set, the {@link ScopePolicy} and
+     *          {@link WebSpeakPlayer#getLocation} will be called from the pool's
+     *          threads, so they must be safe to call while the game is
+     *          ticking.
+     */
+    public void setScopeExecutor(ForkJoinPool scopeExecutor) {
+        this.scopeExecutor = scopeExecutor;
+    }
+
+    /**
+     * Players that need all their scope pairs re-checked next tick, because their
+     * audio modifiers, connection or channel changed.
+     */
+    private final Set<WebSpeakPlayer> scopeDirtyPlayers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * If set, every scope pair will be re-checked next tick.
+     */
+    private volatile boolean scopesInvalid = true;
+
+    /**
+     * Number of players evaluated at a time in budgeted scope mode.
+     */
+    private static final int SCOPE_SLICE_SIZE = 64;
+
+    /**
+     * Handles of players still waiting for their scopes to be evaluated in
+     * budgeted mode. Only used on the tick thread.
+     * @implNote A handle stops being pending as soon as its tick in
+     *           <code>pendingScopeTicks</code> is cleared. It's only removed
+     *           from this set at the end of the tick.
+     */
+    private final HandleSet pendingScopes = new HandleSet(playerHandles::get);
+
+    /**
+     * The scope tick each pending handle started waiting on, or <code>0</code>
+     * if it isn't pending.
      */
-    private final RelationGraph<WebSpeakPlayer> scopes = new RelationGraph<>();
+    private long[] pendingScopeTicks = new long[16];
+
+    /**
+     * Whether each pending handle needs all its pairs checked, not just nearby
+     * ones.
+     */
+    private boolean[] pendingScopeDirty = new boolean[16];
+
+    // Scratch space for budgeted scope ticks, reused so they don't allocate.
+    private final HandleSet sliceMovedHandles = new HandleSet(playerHandles::get);
+    private final HandleSet sliceDirtyHandles = new HandleSet(playerHandles::get);
+    private final List<ChannelScopeEvaluator> budgetEvaluators = new ArrayList<>();
+    /**
+     * Pending handles grouped by channel, in handle order.
+     */
+    private int[] pendingScopeOrder = new int[16];
+    /**
+     * Where each channel's handles start in <code>pendingScopeOrder</code>.
+     */
+    private int[] pendingChannelStarts = new int[17];
+    private int[] pendingChannelFill = new int[16];
+    /**
+     * The budget index of each pending handle's channel.
+     */
+    private int[] pendingScopeChannels = new int[16];
+
+    private long scopeTickCount;
+    private int scopeChannelCursor;
+
+    /**
+     * Evaluators prepared during the current budgeted scope tick, so each
+     * channel's positions and grid are only built once however many slices it's
+     * evaluated in.
+     */
+    private final List<ChannelScopeEvaluator> preparedScopeEvaluators = new ArrayList<>();
+
+    /**
+     * Mark a player as needing all of its scope pairs re-checked next tick.
+     * Only does anything in incremental scope mode.
+     * 
+     * @param player Player to invalidate.
+     */
+    void invalidateScope(WebSpeakPlayer player) {
+        scopeDirtyPlayers.add(player);
+    }
+
+    /**
+     * Re-check every scope pair next tick.
+     */
+    public void invalidateAllScopes() {
+        scopesInvalid = true;
+    }
 
     final WebSpeakEvent<Consumer<WebSpeakPlayer>> ON_SESSION_CONNECTED = WebSpeakEvents.createSimple();
     final WebSpeakEvent<Consumer<WebSpeakPlayer>> ON_SESSION_DISCONNECTED = WebSpeakEvents.createSimple();
@@ -92,6 +320,9 @@ public class WebSpeakServer implements Executor {
     private final WebSpeakFlagHolder flagHolder = new WebSpeakFlagHolder();
     
     public <T> T setFlag(WebSpeakFlag<T> flag, T value) {
+        if (flag == WebSpeakFlags.SCOPE_BROADPHASE) {
+            scopeBroadphaseSet = true;
+        }
         return flagHolder.setFlag(flag, value);
     }
 
@@ -119,7 +350,11 @@ public class WebSpeakServer implements Executor {
      * Send an updated copy of the panner options to all clients.
      */
     public void updatePannerOptions() {
+        float prevRange = maxAudioRange;
         maxAudioRange = (float) WebSpeakMath.getMaxRange(pannerOptions);
+        if (maxAudioRange != prevRange) {
+            invalidateAllScopes();
+        }
         WebSpeakNet.sendPacketTo(getPlayers(), SetPannerOptionsC2SPacket.PACKET, pannerOptions);
     }
 
@@ -131,6 +366,16 @@ public class WebSpeakServer implements Executor {
         return maxAudioRange;
     }
 
+    /**
+     * Get the range at which players already in scope will leave scope. This is
+     * the max audio range plus {@link WebSpeakFlags#SCOPE_EXIT_MARGIN}.
+     * 
+     * @return Scope exit range.
+     */
+    public float getScopeExitRange() {
+        return maxAudioRange + Math.max(getFlag(WebSpeakFlags.SCOPE_EXIT_MARGIN), 0);
+    }
+
     /**
      * Get the base Javalin app
      */
@@ -157,7 +402,23 @@ public class WebSpeakServer implements Executor {
      * @throws Exception If something bad happens while starting the server.
      */
     public synchronized void startJetty(int port) throws Exception {
-        serverBackend = new JettyServerBackend(this);
+        start(new JettyServerBackend(this), port);
+    }
+
+    /**
+     * Start the server on a given backend.
+     * 
+     * @param backend Backend to use. Must belong to this server.
+     * @param port    The port to start on, or <code>-1</code> if the backend
+     *                doesn't use one.
+     * @throws Exception If something bad happens while starting the server.
+     * @implNote Package-private so tests can start a server without a network.
+     */
+    synchronized void start(ServerBackend backend, int port) throws Exception {
+        if (backend.getServer() != this) {
+            throw new IllegalArgumentException("Backend belongs to the wrong server!");
+        }
+        serverBackend = backend;
         serverBackend.start(port);
     }
     
@@ -170,8 +431,7 @@ public class WebSpeakServer implements Executor {
         //create a relayServer backed with our ID set to a random UUID because the chance we make a duplicate one is about 0
         String serverID = UUID.randomUUID().toString();
         LOGGER.info("Server ID is: " + serverID);
-        serverBackend = new RelayServerBackend(this, relayServerURL, serverID);
-        serverBackend.start(-1);
+        start(new RelayServerBackend(this, relayServerURL, serverID), -1);
     }
 
     /**
@@ -182,8 +442,7 @@ public class WebSpeakServer implements Executor {
      * @throws Exception
      */
     public synchronized void startRelay(String relayServerURL, String serverID) throws Exception {
-        serverBackend = new RelayServerBackend(this, relayServerURL, serverID);
-        serverBackend.start(-1);
+        start(new RelayServerBackend(this, relayServerURL, serverID), -1);
     }
 
     /**
@@ -232,10 +491,10 @@ public class WebSpeakServer implements Executor {
     }
 
     void onUpdatePlayerListEntry(String playerID, WSPlayerListEntry entry) {
-        Map<String, WSPlayerListEntry> map = Map.of(playerID, entry);
+        EncodedPacket<?> encoded = WebSpeakNet.encodePacket(PlayerListPackets.SET_PLAYER_ENTRIES_S2C, Map.of(playerID, entry));
         for (var player : this.players.values()) {
             if (player.isConnected()) {
-                player.getConnection().sendPacket(PlayerListPackets.SET_PLAYER_ENTRIES_S2C, map);
+                player.getConnection().sendEncoded(encoded);
             }
         }
     }
@@ -252,43 +511,358 @@ public class WebSpeakServer implements Executor {
 
         if (!isRunning())
             return;
-        Runnable task;
-        while ((task = tasks.poll()) != null) {
-            task.run();
+
+        List<PlayerConnection> batched = null;
+        if (getFlag(WebSpeakFlags.COALESCE_FRAMES)) {
+            batched = new ArrayList<>(players.size());
+            for (var player : players.values()) {
+                PlayerConnection connection = player.getConnection();
+                if (connection != null) {
+                    connection.startBatch();
+                    batched.add(connection);
+                }
+            }
         }
 
-        // rtcManager.tickRTC();
-        tickScopes();
-        for (var player : players.values()) {
-            player.tick();
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+
+            // rtcManager.tickRTC();
+            HandleSet movedPlayers = playerCoordinateManager.pollTransforms();
+            tickScopes(movedPlayers);
+            publishScopes();
+            for (var player : players.values()) {
+                player.tick();
+            }
+
+            playerCoordinateManager.tick();
+        } finally {
+            if (batched != null) {
+                for (var connection : batched) {
+                    connection.flushBatch();
+                }
+            }
+        }
+    }
+
+    private void tickScopes(HandleSet movedHandles) {
+        List<WebSpeakChannel> channelList;
+        synchronized (channels) {
+            channelList = List.copyOf(channels);
+        }
+
+        int timeBudget = getFlag(WebSpeakFlags.SCOPE_TIME_BUDGET);
+        if (timeBudget > 0) {
+            tickScopesBudgeted(movedHandles, channelList, timeBudget * 1000L);
+            return;
+        } else if (!pendingScopes.isEmpty()) {
+            // Budget was just turned off; don't lose anything that was still waiting.
+            for (int i = 0; i < pendingScopes.size(); i++) {
+                clearPendingScope(pendingScopes.get(i));
+            }
+            pendingScopes.clear();
+            scopesInvalid = true;
         }
 
-        playerCoordinateManager.tick();
+        Set<WebSpeakPlayer> movedPlayers = movedHandles.players();
+        Set<WebSpeakPlayer> dirtyPlayers;
+        List<ChannelScopeEvaluator> evaluators = new ArrayList<>(channelList.size());
+
+        if (!getFlag(WebSpeakFlags.INCREMENTAL_SCOPES) || scopesInvalid) {
+            scopesInvalid = false;
+            scopeDirtyPlayers.clear();
+            movedPlayers = null;
+            dirtyPlayers = null;
+            for (var channel : channelList) {
+                evaluators.add(getScopeEvaluator(channel));
+            }
+        } else {
+            // Copy so anything invalidated while we're ticking gets picked up next tick.
+            dirtyPlayers = Set.copyOf(scopeDirtyPlayers);
+            scopeDirtyPlayers.removeAll(dirtyPlayers);
+
+            // Only channels with something going on need to be looked at.
+            Set<WebSpeakChannel> dirtyChannels = new HashSet<>();
+            for (var player : movedPlayers) {
+                dirtyChannels.add(player.getChannel());
+            }
+            for (var player : dirtyPlayers) {
+                dirtyChannels.add(player.getChannel());
+            }
+
+            for (var channel : channelList) {
+                if (dirtyChannels.contains(channel)) {
+                    evaluators.add(getScopeEvaluator(channel));
+                }
+            }
+        }
+
+        List<ScopeDiff> diffs = new ArrayList<>(evaluators.size());
+        ForkJoinPool executor = scopeExecutor;
+        if (executor != null && evaluators.size() > 1) {
+            Set<WebSpeakPlayer> moved = movedPlayers;
+            Set<WebSpeakPlayer> dirty = dirtyPlayers;
+            List<ForkJoinTask<ScopeDiff>> tasks = new ArrayList<>(evaluators.size());
+            for (var evaluator : evaluators) {
+                tasks.add(executor.submit(() -> evaluator.evaluate(moved, dirty)));
+            }
+            // Scopes can't be modified until every evaluator is done reading them.
+            for (var task : tasks) {
+                diffs.add(task.join());
+            }
+        } else {
+            for (var evaluator : evaluators) {
+                diffs.add(evaluator.evaluate(movedPlayers, dirtyPlayers));
+            }
+        }
+
+        // Apply in channel order so the result doesn't depend on thread timing.
+        for (var diff : diffs) {
+            applyScopeDiff(diff);
+        }
     }
 
-    private void tickScopes() {
-        for (var channel : channels) {
-            tickChannelScope(channel);
+    /**
+     * Evaluate scopes round-robin until the time budget runs out. Players that
+     * aren't reached stay pending until a later tick.
+     */
+    private void tickScopesBudgeted(HandleSet movedHandles, List<WebSpeakChannel> channelList,
+            long budgetNanos) {
+        try {
+            evaluateScopesBudgeted(movedHandles, channelList, budgetNanos);
+        } finally {
+            for (var evaluator : preparedScopeEvaluators) {
+                evaluator.release();
+            }
+            preparedScopeEvaluators.clear();
+            for (var evaluator : budgetEvaluators) {
+                evaluator.setBudgetIndex(-1);
+            }
+            budgetEvaluators.clear();
+
+            // Drop everything that stopped being pending this tick.
+            for (int i = pendingScopes.size() - 1; i >= 0; i--) {
+                if (pendingScopeTicks[pendingScopes.get(i)] == 0) {
+                    pendingScopes.removeAt(i);
+                }
+            }
         }
     }
 
-    private void tickChannelScope(WebSpeakChannel channel) {
-        List<WebSpeakPlayer> connectedPlayers = channel.getPlayers().stream().filter(p -> p.isConnected()).toList();
+    private void evaluateScopesBudgeted(HandleSet movedHandles, List<WebSpeakChannel> channelList,
+            long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        long tick = ++scopeTickCount;
+
+        // Without incremental scopes, keep sweeping over every player.
+        if (scopesInvalid || (!getFlag(WebSpeakFlags.INCREMENTAL_SCOPES) && pendingScopes.isEmpty())) {
+            scopesInvalid = false;
+            int capacity = playerHandles.getCapacity();
+            for (int handle = 0; handle < capacity; handle++) {
+                if (playerHandles.get(handle) != null) {
+                    addPendingScope(handle, tick, false);
+                }
+            }
+        }
+        for (int i = 0; i < movedHandles.size(); i++) {
+            addPendingScope(movedHandles.get(i), tick, false);
+        }
+        if (!scopeDirtyPlayers.isEmpty()) {
+            // Anything invalidated while we're draining gets picked up next tick.
+            Iterator<WebSpeakPlayer> iterator = scopeDirtyPlayers.iterator();
+            while (iterator.hasNext()) {
+                int handle = iterator.next().getHandle();
+                iterator.remove();
+                if (handle >= 0) {
+                    addPendingScope(handle, tick, true);
+                }
+            }
+        }
+
+        int channelCount = channelList.size();
+        groupPendingScopes(channelList);
+
+        // Players that have waited too long get evaluated no matter what.
+        int maxStaleness = getFlag(WebSpeakFlags.SCOPE_MAX_STALENESS);
+        for (int n = 0; n < channelCount; n++) {
+            ChannelScopeEvaluator evaluator = budgetEvaluators.get(n);
+            for (int i = pendingChannelStarts[n]; i < pendingChannelStarts[n + 1]; i++) {
+                int handle = pendingScopeOrder[i];
+                if (tick - pendingScopeTicks[handle] >= maxStaleness) {
+                    addToScopeSlice(handle);
+                    if (sliceMovedHandles.size() + sliceDirtyHandles.size() == SCOPE_SLICE_SIZE) {
+                        evaluateScopeSlice(evaluator);
+                    }
+                }
+            }
+            evaluateScopeSlice(evaluator);
+        }
+
+        for (int n = 0; n < channelCount; n++) {
+            int index = (scopeChannelCursor + n) % channelCount;
+            ChannelScopeEvaluator evaluator = budgetEvaluators.get(index);
+            int i = pendingChannelStarts[index];
+            int end = pendingChannelStarts[index + 1];
+
+            while (i < end && System.nanoTime() < deadline) {
+                while (i < end && sliceMovedHandles.size() + sliceDirtyHandles.size() < SCOPE_SLICE_SIZE) {
+                    int handle = pendingScopeOrder[i++];
+                    // Stale players may have been evaluated already.
+                    if (pendingScopeTicks[handle] != 0) {
+                        addToScopeSlice(handle);
+                    }
+                }
+                evaluateScopeSlice(evaluator);
+            }
+
+            if (i < end) {
+                // Out of time. Pick up from this channel next tick.
+                scopeChannelCursor = index;
+                return;
+            }
+        }
+        scopeChannelCursor = channelCount > 0 ? (scopeChannelCursor + 1) % channelCount : 0;
+    }
+
+    private void addPendingScope(int handle, long tick, boolean dirty) {
+        if (handle >= pendingScopeTicks.length) {
+            int newLength = Math.max(handle + 1, pendingScopeTicks.length * 2);
+            pendingScopeTicks = Arrays.copyOf(pendingScopeTicks, newLength);
+            pendingScopeDirty = Arrays.copyOf(pendingScopeDirty, newLength);
+        }
+        if (pendingScopeTicks[handle] == 0) {
+            pendingScopeTicks[handle] = tick;
+        }
+        pendingScopeDirty[handle] |= dirty;
+        pendingScopes.add(handle);
+    }
+
+    private void clearPendingScope(int handle) {
+        pendingScopeTicks[handle] = 0;
+        pendingScopeDirty[handle] = false;
+    }
+
+    /**
+     * Sort the pending handles into <code>pendingScopeOrder</code> by channel,
+     * in handle order so slices stay stable between ticks. Handles that can't be
+     * evaluated any more stop being pending.
+     */
+    private void groupPendingScopes(List<WebSpeakChannel> channelList) {
+        int channelCount = channelList.size();
+        for (int n = 0; n < channelCount; n++) {
+            ChannelScopeEvaluator evaluator = getScopeEvaluator(channelList.get(n));
+            evaluator.setBudgetIndex(n);
+            budgetEvaluators.add(evaluator);
+        }
+        if (pendingChannelStarts.length < channelCount + 1) {
+            pendingChannelStarts = new int[channelCount + 1];
+            pendingChannelFill = new int[channelCount];
+        } else {
+            Arrays.fill(pendingChannelStarts, 0, channelCount + 1, 0);
+        }
 
-        for (var pair : WebSpeakUtils.compareAll(connectedPlayers)) {
-            if (pair.a().equals(pair.b())) {
+        // Handles given out after this are picked up next tick.
+        int capacity = playerHandles.getCapacity();
+        if (pendingScopeChannels.length < capacity) {
+            pendingScopeChannels = new int[Math.max(capacity, pendingScopeChannels.length * 2)];
+        }
+        int pendingCount = 0;
+        for (int i = 0; i < pendingScopes.size(); i++) {
+            int handle = pendingScopes.get(i);
+            if (handle >= capacity)
                 continue;
+            WebSpeakPlayer player = playerHandles.get(handle);
+            if (player == null || !player.isConnected() || player.getChannel() == null) {
+                clearPendingScope(handle);
+                pendingScopeChannels[handle] = -1;
+                continue;
+            }
+            ChannelScopeEvaluator evaluator = scopeEvaluators.get(player.getChannel());
+            int index = evaluator != null ? evaluator.getBudgetIndex() : -1;
+            pendingScopeChannels[handle] = index;
+            if (index >= 0) {
+                pendingChannelStarts[index + 1]++;
+                pendingCount++;
             }
+        }
 
-            boolean wasInScope = scopes.containsRelation(pair.a(), pair.b());
-            boolean isInScope = pair.a().isInScope(pair.b());
+        for (int n = 0; n < channelCount; n++) {
+            pendingChannelStarts[n + 1] += pendingChannelStarts[n];
+            pendingChannelFill[n] = pendingChannelStarts[n];
+        }
+        if (pendingScopeOrder.length < pendingCount) {
+            pendingScopeOrder = new int[Math.max(pendingCount, pendingScopeOrder.length * 2)];
+        }
+        for (int handle = 0; handle < capacity; handle++) {
+            if (pendingScopes.contains(handle) && pendingScopeTicks[handle] != 0 && pendingScopeChannels[handle] >= 0) {
+                pendingScopeOrder[pendingChannelFill[pendingScopeChannels[handle]]++] = handle;
+            }
+        }
+    }
 
-            if (!wasInScope && isInScope) {
-                scopes.add(pair.a(), pair.b());
-                joinScope(pair.a(), pair.b());
-            } else if (wasInScope && !isInScope) {
-                scopes.remove(pair.a(), pair.b());
-                leaveScope(pair.a(), pair.b());
+    private void addToScopeSlice(int handle) {
+        if (pendingScopeDirty[handle]) {
+            sliceDirtyHandles.add(handle);
+        } else {
+            sliceMovedHandles.add(handle);
+        }
+        clearPendingScope(handle);
+    }
+
+    /**
+     * Evaluate the handles added to the current slice, if there are any.
+     */
+    private void evaluateScopeSlice(ChannelScopeEvaluator evaluator) {
+        if (sliceMovedHandles.isEmpty() && sliceDirtyHandles.isEmpty()) {
+            return;
+        }
+        try {
+            if (!evaluator.isPrepared()) {
+                evaluator.prepare();
+                preparedScopeEvaluators.add(evaluator);
+            }
+            applyScopeDiff(evaluator.evaluatePrepared(sliceMovedHandles, sliceDirtyHandles));
+        } finally {
+            sliceMovedHandles.clear();
+            sliceDirtyHandles.clear();
+        }
+    }
+
+    private ChannelScopeEvaluator getScopeEvaluator(WebSpeakChannel channel) {
+        ChannelScopeEvaluator evaluator = scopeEvaluators.get(channel);
+        if (evaluator == null) {
+            evaluator = new ChannelScopeEvaluator(this, channel, scopes, transformStore);
+            scopeEvaluators.put(channel, evaluator);
+        }
+        return evaluator;
+    }
+
+    private void applyScopeDiff(ScopeDiff diff) {
+        boolean hasPeerBudget = getFlag(WebSpeakFlags.PEER_BUDGET) > 0;
+        for (int i = 0; i < diff.getLeaveCount(); i++) {
+            int a = diff.getLeaveA(i);
+            int b = diff.getLeaveB(i);
+            if (scopes.clear(a, b)) {
+                WebSpeakPlayer playerA = playerHandles.get(a);
+                WebSpeakPlayer playerB = playerHandles.get(b);
+                leaveScope(playerA, playerB);
+                // A free slot may let in a player that was cut by the budget.
+                if (hasPeerBudget) {
+                    invalidateScope(playerA);
+                    invalidateScope(playerB);
+                }
+            }
+        }
+        for (int i = 0; i < diff.getJoinCount(); i++) {
+            WebSpeakPlayer a = playerHandles.get(diff.getJoinA(i));
+            WebSpeakPlayer b = playerHandles.get(diff.getJoinB(i));
+            // A client may have disconnected while the diff was being computed.
+            if (a != null && b != null && a.isConnected() && b.isConnected()
+                    && scopes.set(a.getHandle(), b.getHandle())) {
+                joinScope(a, b);
             }
         }
     }
@@ -300,14 +874,44 @@ public class WebSpeakServer implements Executor {
      * @param player Player to kick.
      */
     protected synchronized void kickScopes(WebSpeakPlayer player) {
-        for (var other : scopes.getRelations(player)) {
+        int handle = player.getHandle();
+        if (handle < 0) {
+            return;
+        }
+        boolean hasPeerBudget = getFlag(WebSpeakFlags.PEER_BUDGET) > 0;
+        for (var other : getPlayersInScope(player)) {
             leaveScope(player, other);
+            if (hasPeerBudget) {
+                invalidateScope(other);
+            }
         }
-        scopes.removeAll(player);
+        scopes.clearAll(handle);
+        publishScopes();
+    }
+
+    /**
+     * Publish a new scope snapshot if scopes changed since the last one.
+     */
+    private synchronized void publishScopes() {
+        if (scopes.hasChanges()) {
+            scopeSnapshot = scopes.publish(++scopeEpoch, playerHandles.getPlayers());
+        }
+    }
+
+    /**
+     * Get the epoch of the latest published scope snapshot. This increases every
+     * time scopes change, so it can be used to tell if anything needs to be
+     * re-read.
+     * 
+     * @return Scope epoch.
+     */
+    public final long getScopeEpoch() {
+        return scopeSnapshot.getEpoch();
     }
 
     private void joinScope(WebSpeakPlayer a, WebSpeakPlayer b) {
         rtcManager.connectRTC(a, b);
+        playerCoordinateManager.onJoinedScope(a, b);
         a.onJoinedScope(b);
         b.onJoinedScope(a);
         ON_JOIN_SCOPE.invoker().accept(a, b);
@@ -330,10 +934,21 @@ public class WebSpeakServer implements Executor {
      * @apiNote Players can only be considered for scope when they have a web client
      *          connected.
      * @implNote This doesn't actually re-query the players; it simply checks if the
-     *           scope manager thinks they're in scope.
+     *           scope manager thinks they're in scope. Calls made while ticking
+     *           (including from scope events) see scope changes right away.
+     *           Calls from other threads read the snapshot published at the end
+     *           of the last tick, and never block.
      */
     public final boolean areInScope(WebSpeakPlayer a, WebSpeakPlayer b) {
-        return (a == b) || scopes.containsRelation(a, b);
+        if (a == b) {
+            return true;
+        }
+        int handleA = a.getHandle();
+        int handleB = b.getHandle();
+        if (handleA < 0 || handleB < 0) {
+            return false;
+        }
+        return Thread.holdsLock(this) ? scopes.get(handleA, handleB) : scopeSnapshot.get(handleA, handleB);
     }
     
     /**
@@ -343,9 +958,134 @@ public class WebSpeakServer implements Executor {
      * @return All players in scope.
      * @apiNote Players can only be considered for scope when they have a web client
      *          connected.
+     * @implNote Reads the same state as {@link #areInScope}.
      */
     public final Collection<WebSpeakPlayer> getPlayersInScope(WebSpeakPlayer player) {
-        return scopes.getRelations(player);
+        int handle = player.getHandle();
+        if (handle < 0) {
+            return new ArrayList<>(0);
+        }
+        if (Thread.holdsLock(this)) {
+            List<WebSpeakPlayer> list = new ArrayList<>(scopes.count(handle));
+            scopes.forEach(handle, other -> list.add(playerHandles.get(other)));
+            return list;
+        } else {
+            ScopeSnapshot snapshot = scopeSnapshot;
+            List<WebSpeakPlayer> list = new ArrayList<>(snapshot.count(handle));
+            snapshot.forEach(handle, other -> list.add(snapshot.getPlayer(other)));
+            return list;
+        }
+    }
+
+    /**
+     * Call a function with the handle of every player in scope with a given
+     * player. Unlike {@link #getPlayersInScope}, this doesn't allocate.
+     * 
+     * @param handle   Handle of the player to check.
+     * @param consumer Function to call.
+     * @implNote Reads the same state as {@link #areInScope}.
+     * @see #getPlayerByHandle
+     */
+    public final void forEachHandleInScope(int handle, IntConsumer consumer) {
+        if (handle < 0) {
+            return;
+        }
+        if (Thread.holdsLock(this)) {
+            scopes.forEach(handle, consumer);
+        } else {
+            scopeSnapshot.forEach(handle, consumer);
+        }
+    }
+
+    /**
+     * Get the player that has been given a handle.
+     * 
+     * @param handle Player handle.
+     * @return The player, or <code>null</code> if no player in this server has
+     *         that handle.
+     * @see WebSpeakPlayer#getHandle
+     */
+    public final WebSpeakPlayer getPlayerByHandle(int handle) {
+        return playerHandles.get(handle);
+    }
+
+    TransformStore getTransformStore() {
+        return transformStore;
+    }
+
+    /**
+     * Push the transforms of many players at once. Once a player's transform has
+     * been pushed, it's no longer polled with {@link WebSpeakPlayer#getLocation}
+     * and friends, and only players that were pushed since the last tick are
+     * checked for changes.
+     * 
+     * @param handles     Handles of the players to update.
+     * @param xyz         Player positions, as <code>x, y, z</code> for each
+     *                    handle.
+     * @param orientation Player orientations, as
+     *                    <code>forwardX, forwardY, forwardZ, upX, upY, upZ</code>
+     *                    for each handle. <code>null</code> to only update
+     *                    positions.
+     * @throws IllegalArgumentException If a handle doesn't belong to a player in
+     *                                  this server, or an array is too short for
+     *                                  the number of handles. Nothing is updated
+     *                                  if this is thrown.
+     * @see WebSpeakPlayer#getHandle
+     * @implNote This doesn't wait for the server to finish ticking. The transforms
+     *           are written under the transform store's own lock, and picked up
+     *           on the next tick.
+     */
+    public void updateTransforms(int[] handles, double[] xyz, float[] orientation) {
+        if (xyz.length < handles.length * 3) {
+            throw new IllegalArgumentException("Expected " + handles.length * 3 + " position values, got " + xyz.length);
+        }
+        if (orientation != null && orientation.length < handles.length * TransformStore.ORIENTATION_STRIDE) {
+            throw new IllegalArgumentException("Expected " + handles.length * TransformStore.ORIENTATION_STRIDE
+                    + " orientation values, got " + orientation.length);
+        }
+
+        // Players are removed under the same lock, so a handle can't be recycled mid-update.
+        synchronized (transformStore) {
+            for (int handle : handles) {
+                if (playerHandles.get(handle) == null) {
+                    throw new IllegalArgumentException("No player has handle " + handle);
+                }
+            }
+            for (int i = 0; i < handles.length; i++) {
+                int handle = handles[i];
+                transformStore.setPosition(handle, xyz[i * 3], xyz[i * 3 + 1], xyz[i * 3 + 2]);
+                if (orientation != null) {
+                    transformStore.setOrientation(handle, orientation, i * TransformStore.ORIENTATION_STRIDE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Push the transform of a single player.
+     * 
+     * @param player  Player to update.
+     * @param pos     New position.
+     * @param forward New forward vector. <code>null</code> to keep the current
+     *                one.
+     * @param up      New up vector. <code>null</code> to keep the current one.
+     * @throws IllegalArgumentException If the player isn't in this server.
+     * @see #updateTransforms
+     */
+    public void updateTransform(WebSpeakPlayer player, WebSpeakVector pos, WebSpeakVector forward,
+            WebSpeakVector up) {
+        if (forward == null || up == null) {
+            forward = forward != null ? forward : player.getForward();
+            up = up != null ? up : player.getUp();
+        }
+        synchronized (transformStore) {
+            int handle = player.getHandle();
+            if (handle < 0 || playerHandles.get(handle) != player) {
+                throw new IllegalArgumentException("Player " + player.getPlayerId() + " is not in this server.");
+            }
+            transformStore.setPosition(handle, pos.x(), pos.y(), pos.z());
+            transformStore.setOrientation(handle, forward, up);
+        }
     }
 
     /**
@@ -353,15 +1093,61 @@ public class WebSpeakServer implements Executor {
      * @param connection New connection.
      */
     public void onWebsocketConnected(PlayerConnection connection) {
-        connection.sendPacket(LocalPlayerInfoS2CPacket.PACKET, new LocalPlayerInfoS2CPacket(connection.getPlayer().getPlayerId()));
-        connection.sendPacket(SetPannerOptionsC2SPacket.PACKET, pannerOptions);
+        invalidateScope(connection.getPlayer());
 
         playerCoordinateManager.onPlayerConnected(connection.getPlayer());
-        sendEntirePlayerList(connection);
+        sendInitialState(connection);
 
         ON_SESSION_CONNECTED.invoker().accept(connection.getPlayer());
     }
 
+    /**
+     * Called when a client has caught up after some of its transform updates were
+     * dropped. Should not be used except internally.
+     * @param connection The client's connection.
+     */
+    public void onTransformsDropped(PlayerConnection connection) {
+        execute(() -> {
+            WebSpeakPlayer player = connection.getPlayer();
+            if (player != null && player.getConnection() == connection) {
+                playerCoordinateManager.resyncTransforms(player);
+            }
+        });
+    }
+
+    /**
+     * Send a newly connected client its own info, the panner options, the
+     * player list and the transforms of everyone in scope with it, in as few
+     * frames as possible.
+     * 
+     * @param connection New connection.
+     */
+    private synchronized void sendInitialState(PlayerConnection connection) {
+        WebSpeakPlayer player = connection.getPlayer();
+        List<UpdateTransformS2CPacket> transforms = playerCoordinateManager.getInitialTransforms(player);
+        Iterator<WebSpeakPlayer> entries = players.values().iterator();
+        int transformIndex = 0;
+        boolean first = true;
+
+        while (first || entries.hasNext() || transformIndex < transforms.size()) {
+            Map<String, WSPlayerListEntry> chunkEntries = new HashMap<>();
+            while (chunkEntries.size() < InitialStateS2CPacket.CHUNK_SIZE && entries.hasNext()) {
+                WebSpeakPlayer entry = entries.next();
+                chunkEntries.put(entry.getPlayerId(), entry.getPlayerListEntry());
+            }
+            int transformEnd = Math.min(transformIndex + InitialStateS2CPacket.CHUNK_SIZE, transforms.size());
+
+            connection.sendPacket(InitialStateS2CPacket.PACKET, new InitialStateS2CPacket(
+                    first ? new LocalPlayerInfoS2CPacket(player.getPlayerId(), player.getHandle()) : null,
+                    first ? pannerOptions : null,
+                    chunkEntries,
+                    transforms.subList(transformIndex, transformEnd)));
+
+            transformIndex = transformEnd;
+            first = false;
+        }
+    }
+
     /**
      * Called when a websocket has disconnected. Should not be used except internally.
      * @param connection The connection.
@@ -371,12 +1157,17 @@ public class WebSpeakServer implements Executor {
         LOGGER.info("Player {} disconnected from voice.", connection.getPlayer().getPlayerId());
     }
 
-    public synchronized void sendEntirePlayerList(PlayerConnection target) {
-        Map<String, WSPlayerListEntry> entries = new HashMap<>();
-        for (var player : players.values()) {
-            entries.put(player.getPlayerId(), player.getPlayerListEntry());
-        }
-        target.sendPacket(PlayerListPackets.SET_PLAYER_ENTRIES_S2C, entries);
+    /**
+     * Send a client the entire player list.
+     *
+     * @param target Connection to send to.
+     * @deprecated Clients get the player list in their initial state when they
+     *             connect. This now re-sends that whole state, which clients
+     *             apply the same way.
+     */
+    @Deprecated
+    public void sendEntirePlayerList(PlayerConnection target) {
+        sendInitialState(target);
     }
 
     /**
@@ -515,12 +1306,12 @@ public class WebSpeakServer implements Executor {
         } else {
             old = players.put(player.getPlayerId(), player);
         }
+        if (old != null) {
+            onRemovePlayer(old);
+        }
         if (player.getChannel() == null) {
             player.setChannel(defaultChannel);
         }
-        if (old != null) {
-            onRemovePlayer(player);
-        }
         onAddPlayer(player);
         return old;
     }
@@ -553,6 +1344,8 @@ public class WebSpeakServer implements Executor {
     }
 
     private void onAddPlayer(WebSpeakPlayer player) {
+        checkScopePolicy(player);
+        player.handle = playerHandles.acquire(player);
         serverBackend.addPlayer(player);
         ON_PLAYER_ADDED.invoker().accept(player);
     }
@@ -596,6 +1389,21 @@ public class WebSpeakServer implements Executor {
             player.onRemoved();
             removeFromPlayerList(player.getPlayerId());
 
+            // Clear anything still pointing at the handle before it's given to someone else.
+            if (player.handle >= 0) {
+                synchronized (this) {
+                    scopes.clearAll(player.handle);
+                    publishScopes();
+                    playerCoordinateManager.onPlayerRemoved(player.handle);
+                    // Under the store's lock so nothing can push to the handle after it's freed.
+                    synchronized (transformStore) {
+                        transformStore.remove(player.handle);
+                        playerHandles.release(player.handle);
+                        player.handle = -1;
+                    }
+                }
+            }
+
             serverBackend.removePlayer(player);
             ON_PLAYER_REMOVED.invoker().accept(player);
         } catch (Exception e) {
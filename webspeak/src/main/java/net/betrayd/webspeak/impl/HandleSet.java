@@ -0,0 +1,168 @@
+package net.betrayd.webspeak.impl;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import net.betrayd.webspeak.WebSpeakPlayer;
+
+/**
+ * A set of player handles, stored as a list of handles plus a bitset for
+ * lookups. Clearing only touches the handles that were added, and nothing is
+ * allocated once the arrays are big enough, so it can be reused every tick.
+ */
+public class HandleSet {
+    private int[] handles = new int[16];
+    private long[] bits = new long[1];
+    private int size;
+
+    private final Set<WebSpeakPlayer> players;
+
+    /**
+     * Create a handle set.
+     * @param lookup Function to get the player with a handle, used by
+     *               {@link #players}.
+     */
+    public HandleSet(IntFunction<WebSpeakPlayer> lookup) {
+        this.players = new PlayerView(lookup);
+    }
+
+    /**
+     * Add a handle to the set.
+     * @param handle Handle to add.
+     * @return <code>true</code> if the handle wasn't already in the set.
+     */
+    public boolean add(int handle) {
+        int word = handle >>> 6;
+        if (word >= bits.length) {
+            bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+        }
+        long bit = 1L << handle;
+        if ((bits[word] & bit) != 0) {
+            return false;
+        }
+        bits[word] |= bit;
+        if (size == handles.length) {
+            handles = Arrays.copyOf(handles, size * 2);
+        }
+        handles[size++] = handle;
+        return true;
+    }
+
+    public boolean contains(int handle) {
+        int word = handle >>> 6;
+        return handle >= 0 && word < bits.length && (bits[word] & (1L << handle)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get a handle by its index in the set. Handles are kept in the order they
+     * were added until one is removed.
+     *
+     * @param index Index, from <code>0</code> to <code>size() - 1</code>.
+     * @return The handle.
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return handles[index];
+    }
+
+    /**
+     * Remove the handle at an index by moving the last handle into its place.
+     * When iterating from the end, every handle is still visited exactly once.
+     *
+     * @param index Index to remove.
+     */
+    public void removeAt(int index) {
+        int handle = get(index);
+        bits[handle >>> 6] &= ~(1L << handle);
+        handles[index] = handles[--size];
+    }
+
+    /**
+     * Remove a handle from the set.
+     * @param handle Handle to remove.
+     * @return <code>true</code> if the handle was in the set.
+     */
+    public boolean remove(int handle) {
+        if (!contains(handle)) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (handles[i] == handle) {
+                removeAt(i);
+                break;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            bits[handles[i] >>> 6] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * Get an unmodifiable view of the players whose handles are in the set. The
+     * view is always the same object, and reflects later changes to the set.
+     *
+     * @return Player view.
+     */
+    public Set<WebSpeakPlayer> players() {
+        return players;
+    }
+
+    private class PlayerView extends AbstractSet<WebSpeakPlayer> {
+        final IntFunction<WebSpeakPlayer> lookup;
+
+        PlayerView(IntFunction<WebSpeakPlayer> lookup) {
+            this.lookup = lookup;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof WebSpeakPlayer player))
+                return false;
+            int handle = player.getHandle();
+            return HandleSet.this.contains(handle) && lookup.apply(handle) == player;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<WebSpeakPlayer> iterator() {
+            return new Iterator<>() {
+                int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < size;
+                }
+
+                @Override
+                public WebSpeakPlayer next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    return lookup.apply(handles[index++]);
+                }
+            };
+        }
+    }
+}
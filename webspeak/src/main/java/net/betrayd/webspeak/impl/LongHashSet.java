@@ -0,0 +1,116 @@
+package net.betrayd.webspeak.impl;
+
+import java.util.Arrays;
+
+/**
+ * A set of non-negative longs, stored in an open-addressed table plus a list of
+ * what was added. Like {@link HandleSet}, clearing only touches the slots that
+ * were used, and nothing is allocated once the arrays are big enough.
+ */
+public class LongHashSet {
+    private static final long EMPTY = -1;
+
+    private long[] table = newTable(32);
+    private long[] keys = new long[16];
+    /**
+     * The table slot of each key, so clearing doesn't have to look them up.
+     */
+    private int[] slots = new int[16];
+    private int size;
+
+    /**
+     * Add a key to the set.
+     * @param key Key to add. Must not be negative.
+     * @return <code>true</code> if the key wasn't already in the set.
+     */
+    public boolean add(long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key must not be negative: " + key);
+        }
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = key;
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        keys[size] = key;
+        slots[size] = slot;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get a key by the order it was added in.
+     * @param index Index of the key.
+     * @return The key.
+     */
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return keys[index];
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            table[slots[i]] = EMPTY;
+        }
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        table = newTable(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(keys[i]) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = keys[i];
+            slots[i] = slot;
+        }
+    }
+
+    private static long[] newTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -1,75 +1,604 @@
 package net.betrayd.webspeak.impl;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.function.IntConsumer;
 
 import net.betrayd.webspeak.PlayerConnection;
+import net.betrayd.webspeak.WebSpeakChannel;
+import net.betrayd.webspeak.WebSpeakFlags;
 import net.betrayd.webspeak.WebSpeakPlayer;
 import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.impl.net.EncodedPacket;
 import net.betrayd.webspeak.impl.net.WebSpeakNet;
+import net.betrayd.webspeak.impl.net.packets.InitialStateS2CPacket;
+import net.betrayd.webspeak.impl.net.packets.TransformPackets;
+import net.betrayd.webspeak.impl.net.packets.TransformPackets.CompactTransform;
+import net.betrayd.webspeak.impl.net.packets.TransformPackets.TransformFormat;
 import net.betrayd.webspeak.impl.net.packets.UpdateTransformS2CPacket;
 import net.betrayd.webspeak.util.WebSpeakVector;
 
 public class PlayerCoordinateManager {
-    private static record WebSpeakTransform(WebSpeakVector pos, WebSpeakVector forward, WebSpeakVector up) {
+    /**
+     * @param velocity Velocity clients should extrapolate with, in units per
+     *                 second. <code>null</code> if not dead reckoning.
+     * @param time     The {@link System#nanoTime} this transform was taken at when
+     *                 dead reckoning.
+     */
+    private static record WebSpeakTransform(WebSpeakVector pos, WebSpeakVector forward, WebSpeakVector up,
+            WebSpeakVector velocity, long time) {
+
+        WebSpeakTransform(WebSpeakVector pos, WebSpeakVector forward, WebSpeakVector up) {
+            this(pos, forward, up, null, 0);
+        }
+
+        /**
+         * Get where clients will have extrapolated this transform to.
+         */
+        WebSpeakTransform extrapolate(long now) {
+            if (velocity == null) {
+                return this;
+            }
+            double seconds = (now - time) / 1e9d;
+            return new WebSpeakTransform(pos.add(velocity.multiply(seconds)), forward, up, velocity, now);
+        }
     };
 
     private final WebSpeakServer server;
-    private final WeakHashMap<WebSpeakPlayer, WebSpeakTransform> prevTransforms = new WeakHashMap<>();
+    /**
+     * The last transform sent for each player.
+     */
+    private final TransformTracker sentTransforms = new TransformTracker();
+
+    /**
+     * The compact transform format each client was last told about.
+     */
+    private final WeakHashMap<WebSpeakPlayer, TransformFormat> sentFormats = new WeakHashMap<>();
+
+    /**
+     * Transforms that are pushed instead of polled.
+     */
+    private final TransformStore transformStore;
+
+    /**
+     * The server's player handles, so polling can walk them without allocating.
+     */
+    private final PlayerHandleRegistry playerHandles;
+
+    /**
+     * Players whose transforms have changed since the last call to {@link #tick}.
+     */
+    private final HandleSet dirtyPlayers;
+
+    /**
+     * Pairs whose latest transform was held back by the transform LOD.
+     */
+    private final TransformScheduler scheduler = new TransformScheduler();
+
+    /**
+     * The players each transform is sent to, reused between transforms.
+     */
+    private final List<WebSpeakPlayer> targets = new ArrayList<>();
+    /**
+     * The players in scope with the player being sent, reused between players.
+     */
+    private final List<WebSpeakPlayer> inScope = new ArrayList<>();
+    private final IntConsumer inScopeAdder = this::addInScope;
+
+    /**
+     * Each client's transform batch this tick. Only used if
+     * {@link WebSpeakFlags#BATCH_TRANSFORMS} is set.
+     */
+    private final Map<WebSpeakPlayer, TransformBatch> batches = new HashMap<>();
 
-    public PlayerCoordinateManager(WebSpeakServer server) {
+    /**
+     * Polled transform, laid out as position followed by orientation.
+     */
+    private final double[] polled = new double[3 + TransformStore.ORIENTATION_STRIDE];
+
+    private int tickCount;
+
+    public PlayerCoordinateManager(WebSpeakServer server, TransformStore transformStore,
+            PlayerHandleRegistry playerHandles) {
         this.server = server;
+        this.transformStore = transformStore;
+        this.playerHandles = playerHandles;
+        this.dirtyPlayers = new HandleSet(server::getPlayerByHandle);
     }
 
     public WebSpeakServer getServer() {
         return server;
     }
 
+    /**
+     * Poll every player's transform and mark the ones that changed as dirty.
+     * Should be called before {@link #tick}. Doesn't allocate unless a player's
+     * transform is polled from {@link WebSpeakPlayer#getLocation} and friends.
+     * 
+     * @return The handles of all players whose transforms changed. Only valid
+     *         until the next call to {@link #tick}.
+     */
+    public HandleSet pollTransforms() {
+        boolean deadReckoning = server.getFlag(WebSpeakFlags.DEAD_RECKONING);
+        long now = System.nanoTime();
+        double maxError = server.getFlag(WebSpeakFlags.DEAD_RECKONING_POSITION_ERROR);
+        double minCos = Math.cos(Math.toRadians(server.getFlag(WebSpeakFlags.DEAD_RECKONING_ANGLE_ERROR)));
+        boolean compact = server.getFlag(WebSpeakFlags.COMPACT_TRANSFORMS);
+        float precision = server.getFlag(WebSpeakFlags.TRANSFORM_PRECISION);
+        if (!deadReckoning) {
+            sentTransforms.clearPolled();
+        }
+
+        double[] t = polled;
+        transformStore.pollDirty();
+        WebSpeakPlayer[] players = playerHandles.getPlayers();
+        for (int handle = 0; handle < players.length; handle++) {
+            WebSpeakPlayer player = players[handle];
+            if (player == null)
+                continue;
+            boolean pushed = transformStore.isPushed(handle);
+            // Pushed transforms can only change when they're pushed.
+            if (pushed && !deadReckoning && !transformStore.isDirty(handle))
+                continue;
+            readTransform(player, handle, pushed, t);
+
+            if (deadReckoning) {
+                // Only mark a transform as dirty once it has drifted too far from where
+                // clients have extrapolated the last one to.
+                if (!sentTransforms.hasVelocity(handle)
+                        || sentTransforms.extrapolatedDistanceSquared(handle, t[0], t[1], t[2], now) > maxError * maxError
+                        || !sentTransforms.isOrientationWithin(handle, t[3], t[4], t[5], t[6], t[7], t[8], minCos)) {
+                    sentTransforms.set(handle, t[0], t[1], t[2], t[3], t[4], t[5], t[6], t[7], t[8]);
+                    sentTransforms.estimateVelocity(handle, t[0], t[1], t[2], now);
+                    // Extrapolate with exactly what the client will see.
+                    if (compact) {
+                        sentTransforms.roundVelocity(handle, precision);
+                    }
+                    dirtyPlayers.add(handle);
+                }
+                sentTransforms.setPolled(handle, t[0], t[1], t[2], now);
+            } else if (sentTransforms.hasVelocity(handle)
+                    || !sentTransforms.matches(handle, t[0], t[1], t[2], t[3], t[4], t[5], t[6], t[7], t[8])) {
+                sentTransforms.set(handle, t[0], t[1], t[2], t[3], t[4], t[5], t[6], t[7], t[8]);
+                dirtyPlayers.add(handle);
+            }
+        }
+        return dirtyPlayers;
+    }
+
+    /**
+     * Read a player's current transform into an array.
+     * 
+     * @param player Player to read.
+     * @param handle Player's handle.
+     * @param pushed If the transform should be read from the transform store.
+     * @param dest   Array to write the position and orientation to.
+     */
+    private void readTransform(WebSpeakPlayer player, int handle, boolean pushed, double[] dest) {
+        if (pushed) {
+            transformStore.getTransform(handle, dest);
+        } else {
+            WebSpeakVector pos = player.getLocation();
+            WebSpeakVector forward = player.getForward();
+            WebSpeakVector up = player.getUp();
+            dest[0] = pos.x();
+            dest[1] = pos.y();
+            dest[2] = pos.z();
+            dest[3] = forward.x();
+            dest[4] = forward.y();
+            dest[5] = forward.z();
+            dest[6] = up.x();
+            dest[7] = up.y();
+            dest[8] = up.z();
+        }
+    }
+
+    private WebSpeakTransform getSentTransform(int handle) {
+        return new WebSpeakTransform(sentTransforms.getPosition(handle), sentTransforms.getForward(handle),
+                sentTransforms.getUp(handle), sentTransforms.getVelocity(handle), sentTransforms.getTime(handle));
+    }
+
+    /**
+     * Send all dirty transforms to the players that have them in scope.
+     */
     public void tick() {
-        Collection<WebSpeakPlayer> players = server.getPlayers();
-        Map<WebSpeakPlayer, WebSpeakTransform> newTransforms = new HashMap<>();
+        tickCount++;
+        int maxInterval = server.getFlag(WebSpeakFlags.TRANSFORM_LOD_INTERVAL);
+        int silentInterval = Integer.highestOneBit(Math.max(server.getFlag(WebSpeakFlags.SILENT_TRANSFORM_INTERVAL), 1));
+        // Silent players are decimated the same way distant ones are.
+        boolean lod = maxInterval > 1 || silentInterval > 1;
+
+        if (!lod) {
+            // LOD may have just been turned off; flush whatever it was holding back.
+            scheduler.clear(dirtyPlayers);
+        }
 
-        // Iterate through players and mark transforms dirty as needed
-        for (WebSpeakPlayer player : players) {
-            WebSpeakTransform transform = new WebSpeakTransform(player.getLocation(), player.getForward(), player.getUp());
-            WebSpeakTransform prevTransform = prevTransforms.get(player);
+        Map<WebSpeakPlayer, TransformBatch> batches = server.getFlag(WebSpeakFlags.BATCH_TRANSFORMS)
+                ? this.batches
+                : null;
+        // Clients extrapolate from when a transform arrives, so send where it is
+        // now rather than where it was when it was sampled, possibly ticks ago.
+        long now = System.nanoTime();
+
+        if (lod) {
+            float range = server.getMaxAudioRange();
+            for (int i = 0; i < dirtyPlayers.size(); i++) {
+                int handle = dirtyPlayers.get(i);
+                WebSpeakPlayer player = server.getPlayerByHandle(handle);
+                if (player == null || !sentTransforms.isSent(handle))
+                    continue;
+                // Players always get their own transform right away.
+                scheduler.schedule(handle, handle, 1);
+                // Pairs that are still queued will pick up the new transform when they're due.
+                for (var target : getInScope(handle)) {
+                    int targetHandle = target.getHandle();
+                    if (!scheduler.isQueued(handle, targetHandle)) {
+                        scheduler.schedule(handle, targetHandle,
+                                getInterval(player, handle, targetHandle, range, maxInterval, silentInterval));
+                    }
+                }
+            }
+
+            int dueCount = scheduler.takeDue(tickCount);
+            int i = 0;
+            while (i < dueCount) {
+                int handle = scheduler.getDueSource(i);
+                WebSpeakPlayer player = server.getPlayerByHandle(handle);
+                boolean valid = player != null && sentTransforms.isSent(handle);
+                targets.clear();
+                for (; i < dueCount && scheduler.getDueSource(i) == handle; i++) {
+                    int targetHandle = scheduler.getDueListener(i);
+                    WebSpeakPlayer target = server.getPlayerByHandle(targetHandle);
+                    if (!valid || target == null || !server.areInScope(player, target)) {
+                        scheduler.unqueue(handle, targetHandle);
+                        continue;
+                    }
+                    // The pair may have changed bands since it was queued.
+                    int interval = targetHandle == handle ? 1
+                            : getInterval(player, handle, targetHandle, range, maxInterval, silentInterval);
+                    if (TransformScheduler.isScheduled(handle, targetHandle, interval, tickCount)) {
+                        scheduler.unqueue(handle, targetHandle);
+                        targets.add(target);
+                    } else {
+                        scheduler.schedule(handle, targetHandle, interval);
+                    }
+                }
+                if (!targets.isEmpty()) {
+                    sendTransform(player, getSentTransform(handle).extrapolate(now), targets, batches);
+                }
+            }
+        } else {
+            for (int i = 0; i < dirtyPlayers.size(); i++) {
+                int handle = dirtyPlayers.get(i);
+                WebSpeakPlayer player = server.getPlayerByHandle(handle);
+                if (player == null)
+                    continue;
+                targets.clear();
+                targets.addAll(getInScope(handle));
+                targets.add(player);
+                sendTransform(player, getSentTransform(handle).extrapolate(now), targets, batches);
+            }
+        }
 
-            if (prevTransform == null || !transform.equals(prevTransform)) {
-                newTransforms.put(player, transform);
+        if (batches != null) {
+            try {
+                flushBatches(batches);
+            } finally {
+                batches.clear();
             }
         }
-        prevTransforms.putAll(newTransforms); // Update prev transforms with new transforms
-        
-        for (var entry : newTransforms.entrySet()) {
-            sendPlayerTransform(entry.getKey(), entry.getValue(), players);
+        targets.clear();
+        inScope.clear();
+        dirtyPlayers.clear();
+    }
+
+    /**
+     * Get the LOD update interval between a player and a listener.
+     */
+    private int getInterval(WebSpeakPlayer player, int handle, int targetHandle, float range, int maxInterval,
+            int silentInterval) {
+        double distance = sentTransforms.isSent(targetHandle) ? sentTransforms.distance(handle, targetHandle) : 0;
+        int minInterval = player.isSpeaking() ? 1 : silentInterval;
+        return Math.max(TransformScheduler.getInterval(distance, range, maxInterval), minInterval);
+    }
+
+    /**
+     * Get the players in scope with a player, without allocating.
+     *
+     * @return A list that's only valid until the next call.
+     */
+    private List<WebSpeakPlayer> getInScope(int handle) {
+        inScope.clear();
+        server.forEachHandleInScope(handle, inScopeAdder);
+        return inScope;
+    }
+
+    private void addInScope(int handle) {
+        WebSpeakPlayer player = server.getPlayerByHandle(handle);
+        if (player != null) {
+            inScope.add(player);
+        }
+    }
+
+    /**
+     * All the transforms going to a single client this tick.
+     */
+    private static class TransformBatch {
+        final PlayerConnection connection;
+        final TransformFormat format;
+        final ByteArrayOutputStream compact;
+        final StringBuilder json;
+
+        TransformBatch(PlayerConnection connection, TransformFormat format) {
+            this.connection = connection;
+            this.format = format;
+            if (format != null) {
+                compact = new ByteArrayOutputStream();
+                json = null;
+            } else {
+                compact = null;
+                json = new StringBuilder("[");
+            }
+        }
+    }
+
+    /**
+     * Send a transform to a list of players, either right away or by adding it
+     * to their batches.
+     * 
+     * @param player    Player the transform belongs to.
+     * @param transform The transform.
+     * @param targets   Players to send to.
+     * @param batches   Batches for each client. <code>null</code> to send right
+     *                  away.
+     */
+    private void sendTransform(WebSpeakPlayer player, WebSpeakTransform transform, List<WebSpeakPlayer> targets,
+            Map<WebSpeakPlayer, TransformBatch> batches) {
+        if (targets.isEmpty()) {
+            return;
+        } else if (batches == null) {
+            sendPlayerTransform(player, transform, targets);
+            return;
+        }
+
+        boolean compact = server.getFlag(WebSpeakFlags.COMPACT_TRANSFORMS);
+        if (compact && player.getHandle() < 0)
+            return;
+
+        // Each transform is only encoded once, no matter how many clients it goes to.
+        String json = null;
+        byte[] encoded = null;
+        TransformFormat encodedFormat = null;
+
+        for (var target : targets) {
+            TransformBatch batch = batches.get(target);
+            if (batch == null) {
+                PlayerConnection connection = target.getConnection();
+                if (connection == null)
+                    continue;
+                batch = new TransformBatch(connection, compact ? updateFormat(target, connection) : null);
+                batches.put(target, batch);
+            }
+
+            if (compact) {
+                if (encoded == null || !batch.format.equals(encodedFormat)) {
+                    encoded = CompactTransform.create(player.getHandle(), transform.pos(), transform.forward(),
+                            transform.up(), transform.velocity(), batch.format).toByteArray();
+                    encodedFormat = batch.format;
+                }
+                batch.compact.writeBytes(encoded);
+            } else {
+                if (json == null) {
+                    json = UpdateTransformS2CPacket.PACKET.write(new UpdateTransformS2CPacket(
+                            player.getPlayerId(), transform.pos(), transform.forward(), transform.up(), transform.velocity()));
+                }
+                if (batch.json.length() > 1) {
+                    batch.json.append(',');
+                }
+                batch.json.append(json);
+            }
+        }
+    }
+
+    /**
+     * Send every client its batch, with at most one frame per client.
+     */
+    private void flushBatches(Map<WebSpeakPlayer, TransformBatch> batches) {
+        for (var batch : batches.values()) {
+            if (batch.compact != null) {
+                batch.connection.sendPacket(TransformPackets.COMPACT_TRANSFORM_BATCH_S2C, batch.compact.toByteArray());
+            } else {
+                batch.connection.sendPacket(UpdateTransformS2CPacket.BATCH_PACKET, batch.json.append(']').toString());
+            }
         }
     }
 
     public void sendPlayerTransform(WebSpeakPlayer player, Iterable<? extends WebSpeakPlayer> targets) {
-        sendPlayerTransform(player, new WebSpeakTransform(player.getLocation(), player.getForward(), player.getUp()),  targets);
+        sendPlayerTransform(player, getCurrentTransform(player), targets);
+    }
+
+    /**
+     * Get the transform a client that's just starting to track a player should
+     * get.
+     */
+    private WebSpeakTransform getCurrentTransform(WebSpeakPlayer player) {
+        int handle = player.getHandle();
+        if (handle >= 0 && sentTransforms.hasVelocity(handle)) {
+            // Start the client off in sync with everyone else extrapolating.
+            return getSentTransform(handle).extrapolate(System.nanoTime());
+        }
+        if (handle >= 0) {
+            synchronized (transformStore) {
+                if (transformStore.isPushed(handle)) {
+                    return new WebSpeakTransform(transformStore.getPosition(handle), transformStore.getForward(handle),
+                            transformStore.getUp(handle));
+                }
+            }
+        }
+        return new WebSpeakTransform(player.getLocation(), player.getForward(), player.getUp());
+    }
+
+    /**
+     * Get the transforms a newly connected client should start with: its own,
+     * and those of everyone in scope with it.
+     * 
+     * @param player The client's player.
+     * @return Transform packets.
+     */
+    public List<UpdateTransformS2CPacket> getInitialTransforms(WebSpeakPlayer player) {
+        Collection<WebSpeakPlayer> inScope = server.getPlayersInScope(player);
+        List<UpdateTransformS2CPacket> transforms = new ArrayList<>(inScope.size() + 1);
+        transforms.add(getTransformPacket(player));
+        for (var other : inScope) {
+            transforms.add(getTransformPacket(other));
+        }
+        return transforms;
+    }
+
+    /**
+     * Send a client the current transforms of itself and everyone in scope with
+     * it, after some of its transform updates were dropped. They're encoded and
+     * batched the same way as regular updates, so they can be dropped too; the
+     * client is resynced again once it catches up.
+     * 
+     * @param player The client's player.
+     */
+    public void resyncTransforms(WebSpeakPlayer player) {
+        if (player.getConnection() == null)
+            return;
+
+        Map<WebSpeakPlayer, TransformBatch> batches = server.getFlag(WebSpeakFlags.BATCH_TRANSFORMS)
+                ? new HashMap<>(2)
+                : null;
+        List<WebSpeakPlayer> target = List.of(player);
+        sendTransform(player, getCurrentTransform(player), target, batches);
+        int batched = 1;
+        for (var other : server.getPlayersInScope(player)) {
+            // Split up like the initial state, so one frame doesn't hold up everything behind it.
+            if (batches != null && batched == InitialStateS2CPacket.CHUNK_SIZE) {
+                flushBatches(batches);
+                batches.clear();
+                batched = 0;
+            }
+            sendTransform(other, getCurrentTransform(other), target, batches);
+            batched++;
+        }
+        if (batches != null) {
+            flushBatches(batches);
+        }
+    }
+
+    private UpdateTransformS2CPacket getTransformPacket(WebSpeakPlayer player) {
+        WebSpeakTransform transform = getCurrentTransform(player);
+        return new UpdateTransformS2CPacket(player.getPlayerId(), transform.pos(), transform.forward(), transform.up(),
+                transform.velocity());
     }
 
     private void sendPlayerTransform(WebSpeakPlayer player, WebSpeakTransform transform,
             Iterable<? extends WebSpeakPlayer> targets) {
 
-        String packet = WebSpeakNet.writePacket(UpdateTransformS2CPacket.PACKET,
-                UpdateTransformS2CPacket.fromPlayer(player));
+        boolean compact = server.getFlag(WebSpeakFlags.COMPACT_TRANSFORMS) && player.getHandle() >= 0;
+        // Encoded once and shared between every target.
+        EncodedPacket<?> packet = null;
+        TransformFormat packetFormat = null;
 
         for (var target : targets) {
             PlayerConnection connection = target.getConnection();
             if (connection == null || !server.areInScope(target, player))
                 continue;
-            connection.sendText(packet);
+
+            if (compact) {
+                // Players in scope share a channel, so this is normally only encoded once.
+                TransformFormat format = updateFormat(target, connection);
+                if (packet == null || !format.equals(packetFormat)) {
+                    packet = writeTransform(player, transform, format);
+                    packetFormat = format;
+                }
+            } else if (packet == null) {
+                packet = writeTransform(player, transform, null);
+            }
+            connection.sendEncoded(packet);
         }
     }
 
+    /**
+     * Write a transform packet.
+     * 
+     * @param player    Player the transform belongs to.
+     * @param transform The transform.
+     * @param format    Compact transform format. <code>null</code> to write JSON.
+     * @return Encoded packet.
+     */
+    private EncodedPacket<?> writeTransform(WebSpeakPlayer player, WebSpeakTransform transform, TransformFormat format) {
+        if (format != null) {
+            return WebSpeakNet.encodePacket(TransformPackets.COMPACT_TRANSFORM_S2C, CompactTransform.create(
+                    player.getHandle(), transform.pos(), transform.forward(), transform.up(), transform.velocity(), format));
+        } else {
+            return WebSpeakNet.encodePacket(UpdateTransformS2CPacket.PACKET, new UpdateTransformS2CPacket(
+                    player.getPlayerId(), transform.pos(), transform.forward(), transform.up(), transform.velocity()));
+        }
+    }
+
+    /**
+     * Make sure a client knows the compact transform format of the channel it's
+     * in, sending it if it changed.
+     * 
+     * @param target     Client's player.
+     * @param connection Client's connection.
+     * @return The format to encode transforms for this client with.
+     */
+    private TransformFormat updateFormat(WebSpeakPlayer target, PlayerConnection connection) {
+        WebSpeakChannel channel = target.getChannel();
+        TransformFormat format = new TransformFormat(
+                channel != null ? channel.getOrigin() : WebSpeakVector.ZERO,
+                server.getFlag(WebSpeakFlags.TRANSFORM_PRECISION));
+
+        synchronized (sentFormats) {
+            if (!format.equals(sentFormats.put(target, format))) {
+                connection.sendPacket(TransformPackets.SET_TRANSFORM_FORMAT_S2C, format);
+            }
+        }
+        return format;
+    }
+
+    /**
+     * Called when two players join scope with each other. Sends each player's
+     * transform to the other, along with the handle mapping if compact
+     * transforms are on.
+     */
+    public void onJoinedScope(WebSpeakPlayer a, WebSpeakPlayer b) {
+        if (server.getFlag(WebSpeakFlags.COMPACT_TRANSFORMS)) {
+            a.getConnection().sendPacket(TransformPackets.SET_PLAYER_HANDLES_S2C, Map.of(b.getPlayerId(), b.getHandle()));
+            b.getConnection().sendPacket(TransformPackets.SET_PLAYER_HANDLES_S2C, Map.of(a.getPlayerId(), a.getHandle()));
+        }
+        sendPlayerTransform(a, Collections.singleton(b));
+        sendPlayerTransform(b, Collections.singleton(a));
+    }
+
+    /**
+     * Called when a player is removed, before its handle is released.
+     * @param handle The player's handle.
+     */
+    public void onPlayerRemoved(int handle) {
+        sentTransforms.remove(handle);
+        dirtyPlayers.remove(handle);
+        scheduler.remove(handle);
+    }
+
+    /**
+     * Called when a player's client connects. Its initial transforms are sent
+     * separately with {@link #getInitialTransforms}.
+     */
     public void onPlayerConnected(WebSpeakPlayer player) {
-        Collection<WebSpeakPlayer> collectionWrapper = Collections.singleton(player);
-        for (WebSpeakPlayer otherPlayer : getServer().getPlayers()) {
-            sendPlayerTransform(otherPlayer, collectionWrapper);
+        // New client; it doesn't know about any format yet.
+        synchronized (sentFormats) {
+            sentFormats.remove(player);
         }
     }
 }
@@ -0,0 +1,84 @@
+package net.betrayd.webspeak.impl;
+
+import java.util.Arrays;
+
+import net.betrayd.webspeak.WebSpeakPlayer;
+
+/**
+ * Hands out small, dense int handles to players so per-player data can be
+ * stored in arrays instead of hash maps. Handles of removed players are
+ * recycled.
+ *
+ * @implNote The handle table is copy-on-write, so lookups never lock. Players
+ *           are added and removed far less often than they're looked up.
+ */
+public class PlayerHandleRegistry {
+    private volatile WebSpeakPlayer[] players = new WebSpeakPlayer[0];
+    private int[] freeHandles = new int[16];
+    private int freeCount;
+
+    /**
+     * Assign a handle to a player.
+     * @param player Player to assign to.
+     * @return The new handle.
+     */
+    public synchronized int acquire(WebSpeakPlayer player) {
+        WebSpeakPlayer[] newPlayers;
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+            newPlayers = players.clone();
+        } else {
+            handle = players.length;
+            newPlayers = Arrays.copyOf(players, handle + 1);
+        }
+        newPlayers[handle] = player;
+        players = newPlayers;
+        return handle;
+    }
+
+    /**
+     * Free a handle so it can be given to another player.
+     * @param handle Handle to free.
+     */
+    public synchronized void release(int handle) {
+        if (handle < 0 || handle >= players.length || players[handle] == null) {
+            return;
+        }
+        WebSpeakPlayer[] newPlayers = players.clone();
+        newPlayers[handle] = null;
+        players = newPlayers;
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeHandles.length * 2);
+        }
+        freeHandles[freeCount++] = handle;
+    }
+
+    /**
+     * Get the player that has a handle.
+     * @param handle Handle to look up.
+     * @return The player, or <code>null</code> if the handle isn't in use.
+     */
+    public WebSpeakPlayer get(int handle) {
+        WebSpeakPlayer[] players = this.players;
+        return handle >= 0 && handle < players.length ? players[handle] : null;
+    }
+
+    /**
+     * Get the current handle table. The returned array is never modified.
+     * @return Array mapping handles to players.
+     */
+    public WebSpeakPlayer[] getPlayers() {
+        return players;
+    }
+
+    /**
+     * Get one more than the largest handle that has ever been handed out. All
+     * handles are smaller than this.
+     * 
+     * @return Handle capacity.
+     */
+    public int getCapacity() {
+        return players.length;
+    }
+}
@@ -8,7 +8,6 @@ import net.betrayd.webspeak.WebSpeakPlayer;
 import net.betrayd.webspeak.WebSpeakServer;
 import net.betrayd.webspeak.impl.net.packets.RTCPackets;
 import net.betrayd.webspeak.impl.net.packets.RTCPackets.RequestOfferS2CPacket;
-import net.betrayd.webspeak.impl.net.packets.UpdateTransformS2CPacket;
 
 public class RTCManager {
     private static final Logger LOGGER = LoggerFactory.getLogger("WebSpeak RTC Manager");
@@ -29,10 +28,6 @@ public class RTCManager {
             LOGGER.info("Requesting player {} to RTC offer to {}", a.getPlayerId(), b.getPlayerId());
         }
         a.getConnection().sendPacket(RTCPackets.REQUEST_OFFER_S2C, new RequestOfferS2CPacket(b.getPlayerId()));
-
-        // I tried moving this to the player code, but it doesn't seem to work and I don't give a shit.
-        UpdateTransformS2CPacket.fromPlayer(a).send(b.getConnection());
-        UpdateTransformS2CPacket.fromPlayer(b).send(a.getConnection());
     }
 
     public void disconnectRTC(WebSpeakPlayer a, WebSpeakPlayer b) {
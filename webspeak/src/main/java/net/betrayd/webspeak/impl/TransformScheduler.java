@@ -0,0 +1,244 @@
+package net.betrayd.webspeak.impl;
+
+import java.util.Arrays;
+
+/**
+ * Decides which (source, listener) pairs get a transform update on a given
+ * tick when transform level of detail is on. Each pair updates on a
+ * power-of-two interval, offset by a phase taken from the pair's handles so
+ * pairs with the same interval are spread evenly across ticks.
+ * <p>
+ * Pairs waiting for an update are kept in one bucket per interval and slot,
+ * so each tick only visits the pairs that are due on it. A pair is only ever
+ * queued once; when it comes due it gets the source's latest transform, even
+ * if the source changed again while it waited.
+ *
+ * @implNote Which pairs are queued is kept in one bitset row per source, laid
+ *           out like the rows of the scope matrix, so memory grows with the
+ *           handles that actually have pairs queued rather than with the
+ *           square of the player count.
+ */
+public class TransformScheduler {
+    private static final long[] EMPTY_ROW = new long[0];
+
+    /**
+     * Bitset rows of queued listeners, indexed by source handle.
+     */
+    private long[][] queued = new long[16][];
+
+    /**
+     * Pairs waiting in each bucket, packed with {@link #pack}. The buckets of
+     * interval <code>1 &lt;&lt; level</code> start at index
+     * <code>(1 &lt;&lt; level) - 1</code>, one per slot.
+     */
+    private long[][] buckets = new long[0][];
+    private int[] bucketSizes = new int[0];
+    private int levels;
+
+    private long[] due = new long[16];
+    private int dueCount;
+
+    /**
+     * Check if a pair is waiting for an update.
+     * @param source   Source handle.
+     * @param listener Listener handle.
+     * @return If the pair is queued.
+     */
+    public boolean isQueued(int source, int listener) {
+        long[] row = getRow(source);
+        int word = listener >>> 6;
+        return word < row.length && (row[word] & (1L << listener)) != 0;
+    }
+
+    /**
+     * Queue a pair for its next slot on an interval. Pairs taken with
+     * {@link #takeDue} that aren't sent yet may be scheduled again; otherwise a
+     * pair that's already queued must not be scheduled twice.
+     *
+     * @param source   Source handle.
+     * @param listener Listener handle.
+     * @param interval Pair's update interval. Must be a power of two.
+     */
+    public void schedule(int source, int listener, int interval) {
+        setQueued(source, listener);
+        int level = Integer.numberOfTrailingZeros(interval);
+        if (level >= levels) {
+            int newLevels = level + 1;
+            buckets = Arrays.copyOf(buckets, (1 << newLevels) - 1);
+            bucketSizes = Arrays.copyOf(bucketSizes, buckets.length);
+            levels = newLevels;
+        }
+        int slot = -getPhase(source, listener) & (interval - 1);
+        int bucket = interval - 1 + slot;
+
+        long[] entries = buckets[bucket];
+        int size = bucketSizes[bucket];
+        if (entries == null || size == entries.length) {
+            entries = entries == null ? new long[16] : Arrays.copyOf(entries, size * 2);
+            buckets[bucket] = entries;
+        }
+        entries[size] = pack(source, listener);
+        bucketSizes[bucket] = size + 1;
+    }
+
+    /**
+     * Mark a pair as no longer queued, after it was taken with {@link #takeDue}
+     * and either sent or dropped.
+     *
+     * @param source   Source handle.
+     * @param listener Listener handle.
+     */
+    public void unqueue(int source, int listener) {
+        long[] row = getRow(source);
+        int word = listener >>> 6;
+        if (word < row.length) {
+            row[word] &= ~(1L << listener);
+        }
+    }
+
+    /**
+     * Take every pair that is due on a tick out of its bucket. The pairs stay
+     * queued until they're {@link #unqueue unqueued} or scheduled again.
+     *
+     * @param tick Current tick.
+     * @return Number of due pairs. They can be read with {@link #getDueSource}
+     *         and {@link #getDueListener} until the next call, sorted by
+     *         source.
+     */
+    public int takeDue(int tick) {
+        dueCount = 0;
+        for (int level = 0; level < levels; level++) {
+            int interval = 1 << level;
+            int bucket = interval - 1 + (tick & (interval - 1));
+            int size = bucketSizes[bucket];
+            if (size == 0)
+                continue;
+            if (dueCount + size > due.length) {
+                due = Arrays.copyOf(due, Math.max(dueCount + size, due.length * 2));
+            }
+            System.arraycopy(buckets[bucket], 0, due, dueCount, size);
+            dueCount += size;
+            bucketSizes[bucket] = 0;
+        }
+        // Group pairs by source, so each source is only encoded once.
+        Arrays.sort(due, 0, dueCount);
+        return dueCount;
+    }
+
+    /**
+     * Get the source of a pair returned by {@link #takeDue}.
+     * @param index Index of the pair.
+     * @return Source handle.
+     */
+    public int getDueSource(int index) {
+        return (int) (due[index] >>> 32);
+    }
+
+    /**
+     * Get the listener of a pair returned by {@link #takeDue}.
+     * @param index Index of the pair.
+     * @return Listener handle.
+     */
+    public int getDueListener(int index) {
+        return (int) due[index];
+    }
+
+    /**
+     * Drop every queued pair involving a handle.
+     * @param handle Handle to remove.
+     */
+    public void remove(int handle) {
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            long[] entries = buckets[bucket];
+            int size = bucketSizes[bucket];
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                long entry = entries[i];
+                int source = (int) (entry >>> 32);
+                int listener = (int) entry;
+                if (source == handle || listener == handle) {
+                    unqueue(source, listener);
+                } else {
+                    entries[kept++] = entry;
+                }
+            }
+            bucketSizes[bucket] = kept;
+        }
+    }
+
+    /**
+     * Drop every queued pair.
+     * @param sources Set to add the source of each dropped pair to.
+     */
+    public void clear(HandleSet sources) {
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            long[] entries = buckets[bucket];
+            for (int i = 0; i < bucketSizes[bucket]; i++) {
+                int source = (int) (entries[i] >>> 32);
+                unqueue(source, (int) entries[i]);
+                sources.add(source);
+            }
+            bucketSizes[bucket] = 0;
+        }
+    }
+
+    private void setQueued(int source, int listener) {
+        if (source >= queued.length) {
+            queued = Arrays.copyOf(queued, Math.max(source + 1, queued.length * 2));
+        }
+        long[] row = queued[source];
+        int word = listener >>> 6;
+        if (row == null || word >= row.length) {
+            row = row == null ? new long[word + 1] : Arrays.copyOf(row, Math.max(word + 1, row.length * 2));
+            queued[source] = row;
+        }
+        row[word] |= 1L << listener;
+    }
+
+    private long[] getRow(int source) {
+        if (source >= queued.length) {
+            return EMPTY_ROW;
+        }
+        long[] row = queued[source];
+        return row != null ? row : EMPTY_ROW;
+    }
+
+    private static long pack(int source, int listener) {
+        return (long) source << 32 | (listener & 0xFFFFFFFFL);
+    }
+
+    private static int getPhase(int source, int listener) {
+        return source * 31 + listener;
+    }
+
+    /**
+     * Check if a pair is due for an update on a given tick.
+     * @param source   Source handle.
+     * @param listener Listener handle.
+     * @param interval Pair's update interval. Must be a power of two.
+     * @param tick     Current tick.
+     * @return If the pair should be updated.
+     */
+    public static boolean isScheduled(int source, int listener, int interval, int tick) {
+        return ((tick + getPhase(source, listener)) & (interval - 1)) == 0;
+    }
+
+    /**
+     * Get the update interval for a pair. The range is split evenly into one band
+     * per power of two up to the max interval: with a max of 8, pairs within a
+     * quarter of the range update every tick, then every 2nd, 4th and 8th tick.
+     *
+     * @param distance    Distance between the two players.
+     * @param range       Max audio range.
+     * @param maxInterval Max update interval, in ticks.
+     * @return Update interval. Always a power of two.
+     */
+    public static int getInterval(double distance, double range, int maxInterval) {
+        if (maxInterval <= 1 || range <= 0) {
+            return 1;
+        }
+        int levels = 31 - Integer.numberOfLeadingZeros(maxInterval);
+        int level = (int) Math.min(levels, distance / range * (levels + 1));
+        return 1 << Math.max(level, 0);
+    }
+}
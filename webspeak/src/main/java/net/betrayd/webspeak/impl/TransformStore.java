@@ -0,0 +1,222 @@
+package net.betrayd.webspeak.impl;
+
+import java.util.Arrays;
+
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+/**
+ * Holds transforms that were pushed to the server, indexed by player handle.
+ * Positions are stored as <code>x, y, z</code> triples and orientations as
+ * <code>forwardX, forwardY, forwardZ, upX, upY, upZ</code>, so whole batches can
+ * be copied in without allocating.
+ * <p>
+ * Players that have never had a transform pushed aren't in the store, and are
+ * polled instead.
+ * <p>
+ * The store is its own lock, separate from the server's, so transforms can be
+ * pushed while the server is ticking. Every method locks it; hold it across
+ * several calls to read or write a consistent transform.
+ */
+public class TransformStore {
+    public static final int ORIENTATION_STRIDE = 6;
+
+    private double[] positions = new double[0];
+    private float[] orientations = new float[0];
+    private long[] pushed = new long[0];
+    private long[] dirty = new long[0];
+    /**
+     * The dirty bits as of the last {@link #pollDirty}.
+     */
+    private long[] polledDirty = new long[0];
+    /**
+     * Bumped on every change, so readers can tell whether anything they cached
+     * is out of date without taking the lock.
+     */
+    private volatile long version;
+
+    private void ensureCapacity(int handle) {
+        int capacity = positions.length / 3;
+        if (handle < capacity) {
+            return;
+        }
+        int newCapacity = Math.max(handle + 1, Math.max(capacity * 2, 16));
+        positions = Arrays.copyOf(positions, newCapacity * 3);
+        orientations = Arrays.copyOf(orientations, newCapacity * ORIENTATION_STRIDE);
+        int words = (newCapacity + 63) >>> 6;
+        pushed = Arrays.copyOf(pushed, words);
+        dirty = Arrays.copyOf(dirty, words);
+        polledDirty = Arrays.copyOf(polledDirty, words);
+    }
+
+    /**
+     * Set the position of a player.
+     * @param handle Player handle.
+     * @param x      X.
+     * @param y      Y.
+     * @param z      Z.
+     */
+    public synchronized void setPosition(int handle, double x, double y, double z) {
+        ensureCapacity(handle);
+        if (!isPushed(handle)) {
+            // Default to the same orientation as an unmodified player.
+            int o = handle * ORIENTATION_STRIDE;
+            orientations[o] = 0;
+            orientations[o + 1] = 0;
+            orientations[o + 2] = 1;
+            orientations[o + 3] = 0;
+            orientations[o + 4] = 1;
+            orientations[o + 5] = 0;
+        }
+        int p = handle * 3;
+        positions[p] = x;
+        positions[p + 1] = y;
+        positions[p + 2] = z;
+        markPushed(handle);
+        version++;
+    }
+
+    /**
+     * Set the orientation of a player. Must be called after the player's
+     * position has been set at least once.
+     *
+     * @param handle Player handle.
+     * @param source Array to copy from, laid out like the store's orientations.
+     * @param offset Index of the first value in the source array.
+     */
+    public synchronized void setOrientation(int handle, float[] source, int offset) {
+        System.arraycopy(source, offset, orientations, handle * ORIENTATION_STRIDE, ORIENTATION_STRIDE);
+        version++;
+    }
+
+    /**
+     * Set the orientation of a player. Must be called after the player's
+     * position has been set at least once.
+     *
+     * @param handle  Player handle.
+     * @param forward Forward vector.
+     * @param up      Up vector.
+     */
+    public synchronized void setOrientation(int handle, WebSpeakVector forward, WebSpeakVector up) {
+        int o = handle * ORIENTATION_STRIDE;
+        orientations[o] = (float) forward.x();
+        orientations[o + 1] = (float) forward.y();
+        orientations[o + 2] = (float) forward.z();
+        orientations[o + 3] = (float) up.x();
+        orientations[o + 4] = (float) up.y();
+        orientations[o + 5] = (float) up.z();
+        version++;
+    }
+
+    private void markPushed(int handle) {
+        long bit = 1L << handle;
+        pushed[handle >>> 6] |= bit;
+        dirty[handle >>> 6] |= bit;
+    }
+
+    /**
+     * Check if a player's transform is pushed instead of polled.
+     * @param handle Player handle.
+     */
+    public synchronized boolean isPushed(int handle) {
+        int word = handle >>> 6;
+        return word < pushed.length && (pushed[word] & (1L << handle)) != 0;
+    }
+
+    /**
+     * Check if a player's transform was pushed between the last two calls to
+     * {@link #pollDirty}.
+     * @param handle Player handle.
+     */
+    public synchronized boolean isDirty(int handle) {
+        int word = handle >>> 6;
+        return word < polledDirty.length && (polledDirty[word] & (1L << handle)) != 0;
+    }
+
+    /**
+     * Take the set of players that were pushed since the last call, for
+     * {@link #isDirty}. Anything pushed after this is kept for the next call.
+     */
+    public synchronized void pollDirty() {
+        long[] polled = polledDirty;
+        polledDirty = dirty;
+        dirty = polled;
+        Arrays.fill(dirty, 0);
+    }
+
+    /**
+     * Remove a player from the store, so its handle can be reused.
+     * @param handle Player handle.
+     */
+    public synchronized void remove(int handle) {
+        int word = handle >>> 6;
+        if (word < pushed.length) {
+            pushed[word] &= ~(1L << handle);
+            dirty[word] &= ~(1L << handle);
+            polledDirty[word] &= ~(1L << handle);
+        }
+        version++;
+    }
+
+    /**
+     * Get a number that changes whenever anything in the store does. Doesn't
+     * lock the store.
+     * 
+     * @return Current version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public synchronized double getX(int handle) {
+        return positions[handle * 3];
+    }
+
+    public synchronized double getY(int handle) {
+        return positions[handle * 3 + 1];
+    }
+
+    public synchronized double getZ(int handle) {
+        return positions[handle * 3 + 2];
+    }
+
+    /**
+     * Get a single orientation component of a player.
+     * @param handle Player handle.
+     * @param index  Index of the component in the orientation layout, from
+     *               <code>0</code> to <code>ORIENTATION_STRIDE - 1</code>.
+     */
+    public synchronized float getOrientation(int handle, int index) {
+        return orientations[handle * ORIENTATION_STRIDE + index];
+    }
+
+    /**
+     * Read a player's whole transform at once.
+     * @param handle Player handle.
+     * @param dest   Array to write the position followed by the orientation to.
+     */
+    public synchronized void getTransform(int handle, double[] dest) {
+        int p = handle * 3;
+        dest[0] = positions[p];
+        dest[1] = positions[p + 1];
+        dest[2] = positions[p + 2];
+        int o = handle * ORIENTATION_STRIDE;
+        for (int i = 0; i < ORIENTATION_STRIDE; i++) {
+            dest[3 + i] = orientations[o + i];
+        }
+    }
+
+    public synchronized WebSpeakVector getPosition(int handle) {
+        int p = handle * 3;
+        return new WebSpeakVector(positions[p], positions[p + 1], positions[p + 2]);
+    }
+
+    public synchronized WebSpeakVector getForward(int handle) {
+        int o = handle * ORIENTATION_STRIDE;
+        return new WebSpeakVector(orientations[o], orientations[o + 1], orientations[o + 2]);
+    }
+
+    public synchronized WebSpeakVector getUp(int handle) {
+        int o = handle * ORIENTATION_STRIDE + 3;
+        return new WebSpeakVector(orientations[o], orientations[o + 1], orientations[o + 2]);
+    }
+}
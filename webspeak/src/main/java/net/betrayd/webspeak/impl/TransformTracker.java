@@ -0,0 +1,257 @@
+package net.betrayd.webspeak.impl;
+
+import java.util.Arrays;
+
+import net.betrayd.webspeak.impl.net.packets.TransformPackets;
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+/**
+ * Holds the last transform sent for each player, indexed by player handle, so
+ * changes can be detected without allocating. Laid out the same way as
+ * {@link TransformStore}, with orientations kept as doubles so polled
+ * transforms compare exactly.
+ * <p>
+ * When dead reckoning, also holds the velocity clients are extrapolating with
+ * and each player's position on the previous poll.
+ */
+public class TransformTracker {
+    private double[] positions = new double[0];
+    private double[] orientations = new double[0];
+    private double[] velocities = new double[0];
+    private long[] times = new long[0];
+
+    private double[] polledPositions = new double[0];
+    private long[] polledTimes = new long[0];
+
+    private long[] sent = new long[0];
+    private long[] moving = new long[0];
+    private long[] polled = new long[0];
+
+    private void ensureCapacity(int handle) {
+        int capacity = times.length;
+        if (handle < capacity) {
+            return;
+        }
+        int newCapacity = Math.max(handle + 1, Math.max(capacity * 2, 16));
+        positions = Arrays.copyOf(positions, newCapacity * 3);
+        orientations = Arrays.copyOf(orientations, newCapacity * TransformStore.ORIENTATION_STRIDE);
+        velocities = Arrays.copyOf(velocities, newCapacity * 3);
+        times = Arrays.copyOf(times, newCapacity);
+        polledPositions = Arrays.copyOf(polledPositions, newCapacity * 3);
+        polledTimes = Arrays.copyOf(polledTimes, newCapacity);
+        int words = (newCapacity + 63) >>> 6;
+        sent = Arrays.copyOf(sent, words);
+        moving = Arrays.copyOf(moving, words);
+        polled = Arrays.copyOf(polled, words);
+    }
+
+    private static boolean get(long[] bits, int handle) {
+        int word = handle >>> 6;
+        return word < bits.length && (bits[word] & (1L << handle)) != 0;
+    }
+
+    /**
+     * Check if a transform has been sent for a player.
+     * @param handle Player handle.
+     */
+    public boolean isSent(int handle) {
+        return get(sent, handle);
+    }
+
+    /**
+     * Check if clients are extrapolating a player's transform with a velocity.
+     * @param handle Player handle.
+     */
+    public boolean hasVelocity(int handle) {
+        return get(moving, handle);
+    }
+
+    /**
+     * Check if a transform is exactly the last one sent for a player.
+     * @return <code>false</code> if nothing was sent yet.
+     */
+    public boolean matches(int handle, double x, double y, double z,
+            double forwardX, double forwardY, double forwardZ, double upX, double upY, double upZ) {
+        if (!isSent(handle)) {
+            return false;
+        }
+        int p = handle * 3;
+        int o = handle * TransformStore.ORIENTATION_STRIDE;
+        return positions[p] == x && positions[p + 1] == y && positions[p + 2] == z
+                && orientations[o] == forwardX && orientations[o + 1] == forwardY && orientations[o + 2] == forwardZ
+                && orientations[o + 3] == upX && orientations[o + 4] == upY && orientations[o + 5] == upZ;
+    }
+
+    /**
+     * Record the transform that was sent for a player, without a velocity.
+     */
+    public void set(int handle, double x, double y, double z,
+            double forwardX, double forwardY, double forwardZ, double upX, double upY, double upZ) {
+        ensureCapacity(handle);
+        int p = handle * 3;
+        positions[p] = x;
+        positions[p + 1] = y;
+        positions[p + 2] = z;
+        int o = handle * TransformStore.ORIENTATION_STRIDE;
+        orientations[o] = forwardX;
+        orientations[o + 1] = forwardY;
+        orientations[o + 2] = forwardZ;
+        orientations[o + 3] = upX;
+        orientations[o + 4] = upY;
+        orientations[o + 5] = upZ;
+        sent[handle >>> 6] |= 1L << handle;
+        moving[handle >>> 6] &= ~(1L << handle);
+    }
+
+    /**
+     * Give a player's sent transform a velocity estimated from the previous poll.
+     * Must be called after {@link #set} and before {@link #setPolled}.
+     *
+     * @param handle Player handle.
+     * @param x      Current X.
+     * @param y      Current Y.
+     * @param z      Current Z.
+     * @param now    The {@link System#nanoTime} the transform was taken at.
+     */
+    public void estimateVelocity(int handle, double x, double y, double z, long now) {
+        int p = handle * 3;
+        if (get(polled, handle) && now > polledTimes[handle]) {
+            double seconds = (now - polledTimes[handle]) / 1e9d;
+            velocities[p] = (x - polledPositions[p]) / seconds;
+            velocities[p + 1] = (y - polledPositions[p + 1]) / seconds;
+            velocities[p + 2] = (z - polledPositions[p + 2]) / seconds;
+        } else {
+            velocities[p] = 0;
+            velocities[p + 1] = 0;
+            velocities[p + 2] = 0;
+        }
+        times[handle] = now;
+        moving[handle >>> 6] |= 1L << handle;
+    }
+
+    /**
+     * Round a player's velocity to what clients will decode from a compact
+     * transform.
+     *
+     * @param handle    Player handle.
+     * @param precision Format precision.
+     * @see TransformPackets#roundVelocity
+     */
+    public void roundVelocity(int handle, float precision) {
+        int p = handle * 3;
+        for (int i = p; i < p + 3; i++) {
+            velocities[i] = TransformPackets.roundVelocity(velocities[i], precision);
+        }
+    }
+
+    /**
+     * Record a player's position on this poll.
+     */
+    public void setPolled(int handle, double x, double y, double z, long now) {
+        ensureCapacity(handle);
+        int p = handle * 3;
+        polledPositions[p] = x;
+        polledPositions[p + 1] = y;
+        polledPositions[p + 2] = z;
+        polledTimes[handle] = now;
+        polled[handle >>> 6] |= 1L << handle;
+    }
+
+    public void clearPolled() {
+        Arrays.fill(polled, 0);
+    }
+
+    /**
+     * Get the squared distance between a position and where clients have
+     * extrapolated a player's sent transform to.
+     */
+    public double extrapolatedDistanceSquared(int handle, double x, double y, double z, long now) {
+        int p = handle * 3;
+        double seconds = hasVelocity(handle) ? (now - times[handle]) / 1e9d : 0;
+        double dx = positions[p] + velocities[p] * seconds - x;
+        double dy = positions[p + 1] + velocities[p + 1] * seconds - y;
+        double dz = positions[p + 2] + velocities[p + 2] * seconds - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Check if the angles between an orientation and a player's sent orientation
+     * are small enough.
+     *
+     * @param minCos Cosine of the largest angle allowed.
+     */
+    public boolean isOrientationWithin(int handle, double forwardX, double forwardY, double forwardZ,
+            double upX, double upY, double upZ, double minCos) {
+        int o = handle * TransformStore.ORIENTATION_STRIDE;
+        return cosAngle(orientations[o], orientations[o + 1], orientations[o + 2], forwardX, forwardY, forwardZ) >= minCos
+                && cosAngle(orientations[o + 3], orientations[o + 4], orientations[o + 5], upX, upY, upZ) >= minCos;
+    }
+
+    private static double cosAngle(double ax, double ay, double az, double bx, double by, double bz) {
+        double lengths = Math.sqrt((ax * ax + ay * ay + az * az) * (bx * bx + by * by + bz * bz));
+        if (lengths == 0) {
+            return ax == bx && ay == by && az == bz ? 1 : -1;
+        }
+        return (ax * bx + ay * by + az * bz) / lengths;
+    }
+
+    /**
+     * Get the distance between two players' sent positions.
+     */
+    public double distance(int a, int b) {
+        int pa = a * 3;
+        int pb = b * 3;
+        double dx = positions[pa] - positions[pb];
+        double dy = positions[pa + 1] - positions[pb + 1];
+        double dz = positions[pa + 2] - positions[pb + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Remove a player from the tracker, so its handle can be reused.
+     * @param handle Player handle.
+     */
+    public void remove(int handle) {
+        int word = handle >>> 6;
+        if (word < sent.length) {
+            long mask = ~(1L << handle);
+            sent[word] &= mask;
+            moving[word] &= mask;
+            polled[word] &= mask;
+        }
+    }
+
+    public WebSpeakVector getPosition(int handle) {
+        int p = handle * 3;
+        return new WebSpeakVector(positions[p], positions[p + 1], positions[p + 2]);
+    }
+
+    public WebSpeakVector getForward(int handle) {
+        int o = handle * TransformStore.ORIENTATION_STRIDE;
+        return new WebSpeakVector(orientations[o], orientations[o + 1], orientations[o + 2]);
+    }
+
+    public WebSpeakVector getUp(int handle) {
+        int o = handle * TransformStore.ORIENTATION_STRIDE + 3;
+        return new WebSpeakVector(orientations[o], orientations[o + 1], orientations[o + 2]);
+    }
+
+    /**
+     * Get the velocity clients are extrapolating a player's transform with.
+     * @return The velocity, or <code>null</code> if there isn't one.
+     */
+    public WebSpeakVector getVelocity(int handle) {
+        if (!hasVelocity(handle)) {
+            return null;
+        }
+        int p = handle * 3;
+        return new WebSpeakVector(velocities[p], velocities[p + 1], velocities[p + 2]);
+    }
+
+    /**
+     * Get the {@link System#nanoTime} a player's velocity was estimated at.
+     */
+    public long getTime(int handle) {
+        return times[handle];
+    }
+}
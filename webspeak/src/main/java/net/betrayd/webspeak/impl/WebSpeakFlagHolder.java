@@ -26,7 +26,7 @@ public class WebSpeakFlagHolder {
     
     public <T> T setFlag(WebSpeakFlag<T> flag, T value) {
         if (Objects.equals(flag.defaultValue(), value)) {
-            return (T) map.remove(value);
+            return (T) map.remove(flag);
         } else {
             return (T) map.put(flag, value);
         }
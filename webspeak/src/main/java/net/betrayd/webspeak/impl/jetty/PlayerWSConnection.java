@@ -1,5 +1,7 @@
 package net.betrayd.webspeak.impl.jetty;
 
+import java.nio.ByteBuffer;
+
 import org.eclipse.jetty.websocket.api.Callback;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.StatusCode;
@@ -13,6 +15,9 @@ import org.slf4j.LoggerFactory;
 import net.betrayd.webspeak.PlayerConnection;
 import net.betrayd.webspeak.WebSpeakPlayer;
 import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.impl.net.BinaryProtocol;
+import net.betrayd.webspeak.impl.net.EncodedPacket;
+import net.betrayd.webspeak.impl.net.OutboundQueue;
 import net.betrayd.webspeak.impl.net.S2CPacket;
 import net.betrayd.webspeak.impl.net.WebSpeakNet;
 import net.betrayd.webspeak.impl.net.WebSpeakNet.UnknownPacketException;
@@ -29,6 +34,20 @@ public class PlayerWSConnection implements PlayerConnection {
 
     private String sessionID;
 
+    /**
+     * Binary protocol state. <code>null</code> if the client uses the text
+     * protocol.
+     */
+    private BinaryProtocol.Connection binary;
+
+    /**
+     * If the client negotiated a subprotocol, so it knows text packets can come
+     * in binary frames. Older clients only read text frames.
+     */
+    private boolean binaryFrames;
+
+    private OutboundQueue outbound;
+
     public PlayerWSConnection(WebSpeakServer server) {
         this.server = server;
     }
@@ -52,6 +71,12 @@ public class PlayerWSConnection implements PlayerConnection {
         }
 
         this.session = session;
+        String subprotocol = session.getUpgradeResponse().getAcceptedSubProtocol();
+        if (BinaryProtocol.SUBPROTOCOL.equals(subprotocol)) {
+            binary = new BinaryProtocol.Connection();
+        }
+        binaryFrames = BinaryProtocol.SUBPROTOCOL.equals(subprotocol)
+                || BinaryProtocol.JSON_SUBPROTOCOL.equals(subprotocol);
         this.sessionID = NetUtils.splitQueryString(session.getUpgradeRequest().getQueryString()).get("id");
         WebSpeakPlayer player = server.getPlayerBySessionID(sessionID);
 
@@ -64,14 +89,30 @@ public class PlayerWSConnection implements PlayerConnection {
             session.close(StatusCode.BAD_PAYLOAD, "Session " + sessionID + " already has a player connected!", Callback.NOOP);
         }
         this.player = player;
+        this.outbound = new OutboundQueue(session, server, player.getPlayerId(),
+                () -> server.onTransformsDropped(this));
         player.setConnection(this);
         player.getServer().onWebsocketConnected(this);
     }
     
     @OnWebSocketMessage
     public void onWebSocketMessage(String message) {
+        applyPacket(() -> WebSpeakNet.applyPacket(player, message));
+    }
+
+    @OnWebSocketMessage
+    public void onWebSocketBinary(ByteBuffer payload, Callback callback) {
+        if (binary != null) {
+            applyPacket(() -> binary.applyPacket(player, payload));
+        } else {
+            applyPacket(() -> WebSpeakNet.applyPacket(player, BinaryProtocol.readUtf8(payload)));
+        }
+        callback.succeed();
+    }
+
+    private void applyPacket(Runnable applicator) {
         try {
-            WebSpeakNet.applyPacket(player, message);
+            applicator.run();
         } catch (UnknownPacketException e) {
             session.close(StatusCode.BAD_PAYLOAD, "Unknown packet type: " + e.getPacketId(), Callback.NOOP);
             LOGGER.warn("{} sent unknown packet '{}'", player.getPlayerId(), e.getPacketId());
@@ -89,11 +130,58 @@ public class PlayerWSConnection implements PlayerConnection {
     }
 
     public void sendText(String message) {
-        session.sendText(message, Callback.NOOP);
+        outbound.sendText(message, false);
+    }
+
+    /**
+     * Sent as a binary frame if the client negotiated a subprotocol, so Jetty
+     * doesn't have to encode it again. Text protocol clients decode binary
+     * frames the same as text ones.
+     */
+    @Override
+    public void sendEncoded(EncodedPacket<?> packet) {
+        if (binary != null) {
+            sendBinaryPacket(packet);
+        } else if (binaryFrames) {
+            outbound.sendBinary(packet.getUtf8().slice(), packet.getPacket().isDroppable());
+        } else {
+            outbound.sendText(packet.getText(), packet.getPacket().isDroppable());
+        }
+    }
+
+    // Synchronized so a packet's definition always goes out before it.
+    private synchronized void sendBinaryPacket(EncodedPacket<?> packet) {
+        S2CPacket<?> type = packet.getPacket();
+        if (binary.markDefined(BinaryProtocol.getNumber(type.getId()))) {
+            outbound.sendBinary(BinaryProtocol.writeDefinition(type), false);
+        }
+        outbound.sendBinary(packet.getBinary().slice(), type.isDroppable());
     }
 
     public <T> void sendPacket(S2CPacket<T> packet, T val) {
-        sendText(WebSpeakNet.writePacket(packet, val));
+        if (binary != null) {
+            sendBinaryPacket(new EncodedPacket<>(packet, val));
+        } else {
+            outbound.sendText(WebSpeakNet.writePacket(packet, val), packet.isDroppable());
+        }
+    }
+
+    /**
+     * Batches are binary frames, so clients that didn't negotiate a subprotocol
+     * get a frame per packet.
+     */
+    @Override
+    public void startBatch() {
+        if (outbound != null && binaryFrames) {
+            outbound.startBatch(binary == null);
+        }
+    }
+
+    @Override
+    public void flushBatch() {
+        if (outbound != null) {
+            outbound.flushBatch();
+        }
     }
 
     public void disconnect(int statusCode, String reason) {
@@ -3,7 +3,9 @@ package net.betrayd.webspeak.impl.jetty;
 import org.eclipse.jetty.ee10.websocket.server.JettyWebSocketServlet;
 import org.eclipse.jetty.ee10.websocket.server.JettyWebSocketServletFactory;
 
+import net.betrayd.webspeak.WebSpeakFlags;
 import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.impl.net.BinaryProtocol;
 
 public class PlayerWSConnectionServlet extends JettyWebSocketServlet {
 
@@ -17,6 +19,12 @@ public class PlayerWSConnectionServlet extends JettyWebSocketServlet {
     protected void configure(JettyWebSocketServletFactory factory) {
         // TODO: can we do player validation here?
         factory.setCreator((req, resp) -> {
+            // Browsers drop the connection if none of the subprotocols they offered are accepted.
+            if (server.getFlag(WebSpeakFlags.BINARY_PROTOCOL) && req.hasSubProtocol(BinaryProtocol.SUBPROTOCOL)) {
+                resp.setAcceptedSubProtocol(BinaryProtocol.SUBPROTOCOL);
+            } else if (req.hasSubProtocol(BinaryProtocol.JSON_SUBPROTOCOL)) {
+                resp.setAcceptedSubProtocol(BinaryProtocol.JSON_SUBPROTOCOL);
+            }
             return new PlayerWSConnection(server);
         });
     }
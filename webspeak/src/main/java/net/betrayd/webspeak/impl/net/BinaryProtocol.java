@@ -0,0 +1,167 @@
+package net.betrayd.webspeak.impl.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.betrayd.webspeak.WebSpeakPlayer;
+import net.betrayd.webspeak.impl.net.WebSpeakNet.UnknownPacketException;
+
+/**
+ * The binary websocket protocol, used by clients that negotiate the
+ * {@link #SUBPROTOCOL} subprotocol. Every binary frame is a varint packet
+ * number followed by the packet's payload.
+ * <p>
+ * Packet numbers aren't fixed. Before a side sends a number for the first time,
+ * it sends a definition frame: the number {@link #DEFINE}, then the varint
+ * number being defined, a format byte and the UTF-8 packet ID. With
+ * {@link #FORMAT_TEXT}, the payload is the same UTF-8 text the packet has in
+ * the text protocol. With {@link #FORMAT_BINARY}, it's the packet's own binary
+ * encoding.
+ * <p>
+ * The server can also send several frames as one, starting with the number
+ * {@link #BATCH} and followed by each frame as a varint length and its bytes.
+ * Text protocol clients that negotiated {@link #JSON_SUBPROTOCOL} get these
+ * too, as binary frames holding UTF-8 text frames; text packets never start
+ * with that byte.
+ * <p>
+ * Text frames are still accepted on binary connections, and are read with the
+ * text protocol.
+ */
+public class BinaryProtocol {
+    public static final String SUBPROTOCOL = "webspeak.binary";
+
+    /**
+     * Accepted when a client offers it and the binary protocol is off, so
+     * clients can offer both.
+     */
+    public static final String JSON_SUBPROTOCOL = "webspeak.json";
+
+    public static final int DEFINE = 0;
+
+    /**
+     * Starts a frame made of several frames. Only sent by the server.
+     */
+    public static final int BATCH = 1;
+
+    public static final int FORMAT_TEXT = 0;
+    public static final int FORMAT_BINARY = 1;
+
+    private static final Map<String, Integer> NUMBERS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_NUMBER = new AtomicInteger(BATCH + 1);
+
+    /**
+     * Get the number the server sends a packet ID as. Numbers are shared by all
+     * connections, so a packet only has to be encoded once.
+     *
+     * @param id Packet ID.
+     * @return Packet number.
+     */
+    public static int getNumber(String id) {
+        return NUMBERS.computeIfAbsent(id, k -> NEXT_NUMBER.getAndIncrement());
+    }
+
+    public static <T> ByteBuffer writePacket(S2CPacket<T> packet, T val) {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeVarInt(getNumber(packet.getId()));
+        packet.writeBinary(val, writer);
+        return writer.toByteBuffer();
+    }
+
+    public static ByteBuffer writeDefinition(S2CPacket<?> packet) {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeVarInt(DEFINE);
+        writer.writeVarInt(getNumber(packet.getId()));
+        writer.writeByte(packet.hasBinaryCodec() ? FORMAT_BINARY : FORMAT_TEXT);
+        writer.writeUtf8(packet.getId());
+        return writer.toByteBuffer();
+    }
+
+    public static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 32) {
+                throw new IllegalArgumentException("Varint is too long");
+            }
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Read the rest of a buffer as UTF-8.
+     */
+    public static String readUtf8(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private static record Definition(C2SPacket<?> packet, boolean binary) {};
+
+    /**
+     * The binary protocol state of a single connection. Not thread-safe; sends
+     * and receives should each be synchronized by the connection.
+     */
+    public static class Connection {
+        private final BitSet defined = new BitSet();
+        private final Map<Integer, Definition> received = new HashMap<>();
+
+        /**
+         * Mark a packet number as defined to the client.
+         * @param number Packet number.
+         * @return <code>true</code> if it wasn't already, and the definition needs
+         *         to be sent.
+         */
+        public boolean markDefined(int number) {
+            if (defined.get(number)) {
+                return false;
+            }
+            defined.set(number);
+            return true;
+        }
+
+        /**
+         * Read and apply a binary frame from the client.
+         *
+         * @param player Player that sent it.
+         * @param frame  Frame contents.
+         * @throws UnknownPacketException If the client defined a packet ID that
+         *                                doesn't exist.
+         */
+        public void applyPacket(WebSpeakPlayer player, ByteBuffer frame) throws UnknownPacketException {
+            int number = readVarInt(frame);
+            if (number == DEFINE) {
+                int defined = readVarInt(frame);
+                boolean binary = frame.get() == FORMAT_BINARY;
+                String id = readUtf8(frame);
+                C2SPacket<?> packet = C2SPackets.get(id);
+                if (packet == null) {
+                    throw new UnknownPacketException(id);
+                } else if (binary && !packet.hasBinaryCodec()) {
+                    throw new IllegalArgumentException("Packet '" + id + "' has no binary encoding");
+                }
+                received.put(defined, new Definition(packet, binary));
+                return;
+            }
+
+            Definition definition = received.get(number);
+            if (definition == null) {
+                throw new IllegalArgumentException("Packet number " + number + " was never defined");
+            }
+            applyPacket(player, definition.packet(), definition.binary(), frame);
+        }
+
+        private static <T> void applyPacket(WebSpeakPlayer player, C2SPacket<T> packet, boolean binary,
+                ByteBuffer payload) {
+            T val = binary ? packet.readBinary(payload) : packet.read(readUtf8(payload));
+            packet.apply(player, val);
+        }
+    }
+}
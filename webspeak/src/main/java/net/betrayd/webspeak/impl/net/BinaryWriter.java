@@ -0,0 +1,120 @@
+package net.betrayd.webspeak.impl.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable, big-endian byte buffer for writing binary packets.
+ */
+public class BinaryWriter {
+    private byte[] bytes;
+    private int size;
+
+    public BinaryWriter() {
+        this(64);
+    }
+
+    public BinaryWriter(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+        }
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    /**
+     * Write an unsigned varint: seven bits per byte, low bits first, with the
+     * high bit set on every byte but the last.
+     */
+    public void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    public void writeShort(int value) {
+        ensureCapacity(2);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+    }
+
+    public void writeInt(int value) {
+        ensureCapacity(4);
+        bytes[size++] = (byte) (value >>> 24);
+        bytes[size++] = (byte) (value >>> 16);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+    }
+
+    public void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    public void writeFloat(float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    public void writeDouble(double value) {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    public void writeBytes(byte[] src) {
+        writeBytes(src, 0, src.length);
+    }
+
+    public void writeBytes(byte[] src, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(src, offset, bytes, size, length);
+        size += length;
+    }
+
+    /**
+     * Write the remaining bytes of a buffer without moving its position.
+     */
+    public void writeBytes(ByteBuffer src) {
+        int length = src.remaining();
+        ensureCapacity(length);
+        src.get(src.position(), bytes, size, length);
+        size += length;
+    }
+
+    /**
+     * Write a string as a varint byte length followed by its UTF-8 bytes.
+     */
+    public void writeString(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length);
+        writeBytes(utf8);
+    }
+
+    /**
+     * Write a string's UTF-8 bytes without a length. Only usable as the last
+     * field of a packet.
+     */
+    public void writeUtf8(String value) {
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get everything that's been written.
+     * @return A read-only buffer backed by this writer.
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, size).asReadOnlyBuffer();
+    }
+}
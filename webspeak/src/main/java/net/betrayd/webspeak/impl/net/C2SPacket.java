@@ -1,25 +1,66 @@
 package net.betrayd.webspeak.impl.net;
 
+import java.nio.ByteBuffer;
 import java.util.function.BiConsumer;
 
-import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import net.betrayd.webspeak.WebSpeakPlayer;
+import net.betrayd.webspeak.impl.net.codec.JsonCodec;
 
 public interface C2SPacket<T> {
     public T read(String payload);
+
+    /**
+     * Read this packet's payload from the end of a text frame. Unless
+     * overridden, the payload is copied out and passed to {@link #read(String)}.
+     * 
+     * @param frame  Entire frame.
+     * @param offset Index the payload starts at.
+     * @return Packet value.
+     */
+    public default T read(String frame, int offset) {
+        return read(frame.substring(offset));
+    }
     public void apply(WebSpeakPlayer player, T val);
 
-    public static class JsonC2SPacket<T> implements C2SPacket<T> {
+    /**
+     * Check if this packet has its own encoding in the binary protocol.
+     * @return If {@link #readBinary} is overridden.
+     */
+    public default boolean hasBinaryCodec() {
+        return false;
+    }
 
-        private static final Gson GSON = new Gson();
+    /**
+     * Read this packet's payload in the binary protocol. Unless overridden, it's
+     * read as UTF-8 text.
+     * 
+     * @param payload Payload. Only valid until this returns.
+     * @return Packet value.
+     * @see BinaryProtocol
+     */
+    public default T readBinary(ByteBuffer payload) {
+        return read(BinaryProtocol.readUtf8(payload));
+    }
+
+    public static class JsonC2SPacket<T> implements C2SPacket<T> {
 
+        private JsonCodec<T> codec;
         private TypeToken<T> typeToken;
         private Class<T> clazz;
 
         private final BiConsumer<WebSpeakPlayer, T> applicator;
 
+        /**
+         * Create a packet that's read with a codec, usually one generated with
+         * {@link net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec}.
+         */
+        public JsonC2SPacket(JsonCodec<T> codec, BiConsumer<WebSpeakPlayer, T> applicator) {
+            this.codec = codec;
+            this.applicator = applicator;
+        }
+
         public JsonC2SPacket(TypeToken<T> typeToken, BiConsumer<WebSpeakPlayer, T> applicator) {
             this.typeToken = typeToken;
             this.applicator = applicator;
@@ -32,15 +73,22 @@ public interface C2SPacket<T> {
 
         @Override
         public T read(String payload) {
-            if (typeToken != null) {
-                return GSON.fromJson(payload, typeToken);
+            if (codec != null) {
+                return codec.read(payload);
+            } else if (typeToken != null) {
+                return GsonHolder.GSON.fromJson(payload, typeToken);
             } else if (clazz != null) {
-                return GSON.fromJson(payload, clazz);
+                return GsonHolder.GSON.fromJson(payload, clazz);
             } else {
-                throw new IllegalStateException("Somehow, both typeToken and clazz are null.");
+                throw new IllegalStateException("Somehow, codec, typeToken and clazz are all null.");
             }
         }
 
+        @Override
+        public T read(String frame, int offset) {
+            return codec != null ? codec.read(frame, offset, frame.length()) : read(frame.substring(offset));
+        }
+
         @Override
         public void apply(WebSpeakPlayer player, T val) {
             applicator.accept(player, val);
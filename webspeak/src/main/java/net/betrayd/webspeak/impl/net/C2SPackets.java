@@ -1,32 +1,144 @@
 package net.betrayd.webspeak.impl.net;
 
+import java.util.Map;
+
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 
 import net.betrayd.webspeak.impl.net.packets.KeepAliveC2SPacket;
 import net.betrayd.webspeak.impl.net.packets.RTCPackets;
+import net.betrayd.webspeak.impl.net.packets.SpeakingC2SPacket;
 import net.betrayd.webspeak.impl.net.packets.TestC2SPacket;
 import net.betrayd.webspeak.impl.relay.packets.RelayC2SPackets;
 
 public class C2SPackets {
+    /**
+     * All packets the client can send. Prefer {@link #register}, so the lookup
+     * table used by {@link #get(String, int, int)} is rebuilt.
+     */
     public static final BiMap<String, C2SPacket<?>> REGISTRY = HashBiMap.create();
 
+    private static volatile LookupTable lookupTable;
+
     static {
-        REGISTRY.put("test", TestC2SPacket.PACKET);
-        REGISTRY.put("keepAlive", KeepAliveC2SPacket.PACKET);
-
-        REGISTRY.put("returnOffer", RTCPackets.RETURN_OFFER_C2S);
-        REGISTRY.put("returnAnswer", RTCPackets.RETURN_ANSWER_C2S);
-        REGISTRY.put("returnIce", RTCPackets.RETURN_ICE_C2S);
-        REGISTRY.put("relayClientConnect", RelayC2SPackets.RELAY_CLIENT_CONNECTED_C2S_PACKET);
-        REGISTRY.put("relayClientDisconnect", RelayC2SPackets.RELAY_CLIENT_DISCONNECTED_C2S_PACKET);
+        register("test", TestC2SPacket.PACKET);
+        register("keepAlive", KeepAliveC2SPacket.PACKET);
+        register("speaking", SpeakingC2SPacket.PACKET);
+
+        register("returnOffer", RTCPackets.RETURN_OFFER_C2S);
+        register("returnAnswer", RTCPackets.RETURN_ANSWER_C2S);
+        register("returnIce", RTCPackets.RETURN_ICE_C2S);
+        register("relayClientConnect", RelayC2SPackets.RELAY_CLIENT_CONNECTED_C2S_PACKET);
+        register("relayClientDisconnect", RelayC2SPackets.RELAY_CLIENT_DISCONNECTED_C2S_PACKET);
     }
     
+    public static void register(String id, C2SPacket<?> packet) {
+        REGISTRY.put(id, packet);
+        lookupTable = null;
+    }
+
     public static C2SPacket<?> get(String id) {
         return REGISTRY.get(id);
     }
 
+    /**
+     * Look up a packet by an ID that's part of a larger string, without copying
+     * it out.
+     * 
+     * @param data  String containing the ID.
+     * @param start Index the ID starts at.
+     * @param end   Index after the ID.
+     * @return The packet, or <code>null</code> if there's none with that ID.
+     */
+    public static C2SPacket<?> get(String data, int start, int end) {
+        LookupTable table = lookupTable;
+        // Size check catches packets put straight into the registry.
+        if (table == null || table.size != REGISTRY.size()) {
+            table = new LookupTable(REGISTRY);
+            lookupTable = table;
+        }
+        return table.get(data, start, end);
+    }
+
     public static String getId(C2SPacket<?> packet) {
         return REGISTRY.inverse().get(packet);
     }
+
+    /**
+     * A hash table of packet IDs that's grown until no two IDs share a slot, so
+     * a lookup is one hash and one comparison. IDs are hashed like
+     * {@link String#hashCode}.
+     */
+    private static class LookupTable {
+        private static final int MAX_SIZE = 1 << 16;
+
+        final int size;
+        final int mask;
+        final String[] ids;
+        final C2SPacket<?>[] packets;
+
+        LookupTable(Map<String, C2SPacket<?>> registry) {
+            this.size = registry.size();
+
+            int length = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+            String[] ids;
+            while (true) {
+                ids = tryPlace(registry, length);
+                if (ids != null || length >= MAX_SIZE)
+                    break;
+                length <<= 1;
+            }
+            if (ids == null) {
+                // Shouldn't happen with any sane set of IDs; fall back to probing.
+                ids = new String[length];
+            }
+
+            this.mask = length - 1;
+            this.ids = ids;
+            this.packets = new C2SPacket<?>[length];
+            for (var entry : registry.entrySet()) {
+                int slot = spread(entry.getKey().hashCode()) & mask;
+                while (this.packets[slot] != null && !entry.getKey().equals(ids[slot])) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[slot] = entry.getKey();
+                packets[slot] = entry.getValue();
+            }
+        }
+
+        /**
+         * @return The IDs in their slots, or <code>null</code> if two collide.
+         */
+        private static String[] tryPlace(Map<String, C2SPacket<?>> registry, int length) {
+            String[] ids = new String[length];
+            for (String id : registry.keySet()) {
+                int slot = spread(id.hashCode()) & (length - 1);
+                if (ids[slot] != null)
+                    return null;
+                ids[slot] = id;
+            }
+            return ids;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        C2SPacket<?> get(String data, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + data.charAt(i);
+            }
+            int length = end - start;
+            int slot = spread(hash) & mask;
+            String id;
+            while ((id = ids[slot]) != null) {
+                if (id.length() == length && data.startsWith(id, start)) {
+                    return packets[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+    }
 }
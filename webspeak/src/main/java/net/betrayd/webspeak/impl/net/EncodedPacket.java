@@ -0,0 +1,60 @@
+package net.betrayd.webspeak.impl.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A packet that's about to be sent to several connections. Each encoding is
+ * only written the first time a connection asks for it, and is then shared by
+ * every connection that uses it.
+ */
+public class EncodedPacket<T> {
+    private final S2CPacket<T> packet;
+    private final T val;
+
+    private String text;
+    private ByteBuffer utf8;
+    private ByteBuffer binary;
+
+    public EncodedPacket(S2CPacket<T> packet, T val) {
+        this.packet = packet;
+        this.val = val;
+    }
+
+    public S2CPacket<T> getPacket() {
+        return packet;
+    }
+
+    /**
+     * Get the packet in the text protocol.
+     */
+    public synchronized String getText() {
+        if (text == null) {
+            text = WebSpeakNet.writePacket(packet, val);
+        }
+        return text;
+    }
+
+    /**
+     * Get the packet in the text protocol, UTF-8 encoded.
+     * @return A read-only buffer. Slice it before sending.
+     */
+    public synchronized ByteBuffer getUtf8() {
+        if (utf8 == null) {
+            utf8 = ByteBuffer.wrap(getText().getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        }
+        return utf8;
+    }
+
+    /**
+     * Get the packet in the binary protocol.
+     * @return A read-only buffer. Slice it before sending.
+     * @see BinaryProtocol
+     */
+    public synchronized ByteBuffer getBinary() {
+        if (binary == null) {
+            binary = BinaryProtocol.writePacket(packet, val);
+        }
+        return binary;
+    }
+}
@@ -0,0 +1,11 @@
+package net.betrayd.webspeak.impl.net;
+
+import com.google.gson.Gson;
+
+/**
+ * Holds the Gson instance for packets without a generated codec, so it's only
+ * created if one is actually used.
+ */
+class GsonHolder {
+    static final Gson GSON = new Gson();
+}
@@ -0,0 +1,342 @@
+package net.betrayd.webspeak.impl.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.websocket.api.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.betrayd.webspeak.WebSpeakFlags;
+import net.betrayd.webspeak.WebSpeakServer;
+
+/**
+ * Keeps track of how much has been handed to a websocket but not written yet,
+ * so a client that can't keep up doesn't make the server buffer without limit.
+ * <p>
+ * Frames go straight to the websocket until the bytes in flight reach the high
+ * watermark. From then on, droppable frames are dropped and everything else
+ * waits here until the bytes in flight drain to the low watermark. If the
+ * client falls so far behind that more than the maximum is waiting, it's
+ * disconnected.
+ * <p>
+ * Between {@link #startBatch} and {@link #flushBatch}, frames are held back
+ * and then sent as a single {@link BinaryProtocol#BATCH} frame.
+ *
+ * @see S2CPacket#isDroppable
+ */
+public class OutboundQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboundQueue.class);
+
+    /**
+     * Batches are split once they get this big, so one frame doesn't hold up
+     * everything behind it.
+     */
+    private static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    /**
+     * Where frames are actually sent.
+     */
+    public static interface Transport {
+        public void sendText(String text, Callback callback);
+
+        public void sendBinary(ByteBuffer data, Callback callback);
+
+        public void close(int statusCode, String reason);
+
+        public static Transport of(Session session) {
+            return new Transport() {
+                @Override
+                public void sendText(String text, Callback callback) {
+                    session.sendText(text, callback);
+                }
+
+                @Override
+                public void sendBinary(ByteBuffer data, Callback callback) {
+                    session.sendBinary(data, callback);
+                }
+
+                @Override
+                public void close(int statusCode, String reason) {
+                    session.close(statusCode, reason, Callback.NOOP);
+                }
+            };
+        }
+    }
+
+    /**
+     * A frame waiting to be sent.
+     * @param text   Text, or <code>null</code> if it's binary.
+     * @param binary Binary data, or <code>null</code> if it's text.
+     * @param size   Approximate size in bytes.
+     */
+    private static record Frame(String text, ByteBuffer binary, int size) {}
+
+    private final Transport transport;
+    private final String name;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final int maxBytes;
+    private final Runnable onDropped;
+
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private long inFlightBytes;
+    private long queuedBytes;
+
+    private boolean congested;
+    private boolean dropped;
+    private boolean draining;
+    private boolean closed;
+
+    /**
+     * Frames held back since {@link #startBatch}.
+     */
+    private final List<ByteBuffer> batch = new ArrayList<>();
+    private int batchBytes;
+    private boolean batchDroppable = true;
+    private boolean batching;
+    private boolean batchText;
+
+    /**
+     * Create a queue.
+     *
+     * @param transport     Where to send frames.
+     * @param name          What to call the client in logs.
+     * @param lowWatermark  Bytes in flight to drain to before sending again.
+     * @param highWatermark Bytes in flight to start queuing at.
+     * @param maxBytes      Bytes in flight and queued to disconnect past.
+     * @param onDropped     Called once the client has caught up after frames
+     *                      were dropped, so it can be sent what it missed.
+     */
+    public OutboundQueue(Transport transport, String name, int lowWatermark, int highWatermark, int maxBytes,
+            Runnable onDropped) {
+        this.transport = transport;
+        this.name = name;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.maxBytes = maxBytes;
+        this.onDropped = onDropped;
+    }
+
+    /**
+     * Create a queue with the watermarks set in a server's flags.
+     */
+    public OutboundQueue(Session session, WebSpeakServer server, String name, Runnable onDropped) {
+        this(Transport.of(session), name,
+                server.getFlag(WebSpeakFlags.OUTBOUND_LOW_WATERMARK),
+                server.getFlag(WebSpeakFlags.OUTBOUND_HIGH_WATERMARK),
+                server.getFlag(WebSpeakFlags.OUTBOUND_MAX_BYTES),
+                onDropped);
+    }
+
+    /**
+     * Send a text frame.
+     * @param text      Text to send.
+     * @param droppable If it can be dropped while the client is behind.
+     */
+    public synchronized void sendText(String text, boolean droppable) {
+        // Close enough to the UTF-8 length for the ASCII we normally send.
+        offer(new Frame(text, null, text.length()), droppable);
+    }
+
+    /**
+     * Send a binary frame.
+     * @param data      Data to send. Must not be modified afterwards.
+     * @param droppable If it can be dropped while the client is behind.
+     */
+    public synchronized void sendBinary(ByteBuffer data, boolean droppable) {
+        offer(new Frame(null, data, data.remaining()), droppable);
+    }
+
+    /**
+     * Hold back frames until {@link #flushBatch} is called.
+     * 
+     * @param includeText If text frames can go in the batch, because the client
+     *                    uses the text protocol. Otherwise, a text frame flushes
+     *                    the batch and is sent on its own.
+     */
+    public synchronized void startBatch(boolean includeText) {
+        batching = true;
+        batchText = includeText;
+    }
+
+    /**
+     * Send everything held back since {@link #startBatch} and stop batching.
+     */
+    public synchronized void flushBatch() {
+        if (batching) {
+            sendBatch();
+            batching = false;
+        }
+    }
+
+    private void offer(Frame frame, boolean droppable) {
+        if (closed) {
+            return;
+        } else if (batching && (frame.binary() != null || batchText)) {
+            // It would only be dropped once it's sent anyway.
+            if (congested && droppable) {
+                dropped = true;
+                return;
+            }
+            ByteBuffer data = frame.binary() != null ? frame.binary()
+                    : ByteBuffer.wrap(frame.text().getBytes(StandardCharsets.UTF_8));
+            if (batchBytes + data.remaining() > MAX_BATCH_BYTES) {
+                sendBatch();
+            }
+            batch.add(data);
+            batchBytes += data.remaining();
+            batchDroppable &= droppable;
+            return;
+        } else if (batching) {
+            // Keep it in order with what's already been held back.
+            sendBatch();
+        }
+        send(frame, droppable);
+    }
+
+    private void sendBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer data;
+        if (batch.size() == 1) {
+            data = batch.get(0);
+        } else {
+            BinaryWriter writer = new BinaryWriter(1 + batchBytes + batch.size() * 3);
+            writer.writeVarInt(BinaryProtocol.BATCH);
+            for (ByteBuffer frame : batch) {
+                writer.writeVarInt(frame.remaining());
+                writer.writeBytes(frame);
+            }
+            data = writer.toByteBuffer();
+        }
+        boolean droppable = batchDroppable;
+        batch.clear();
+        batchBytes = 0;
+        batchDroppable = true;
+        send(new Frame(null, data, data.remaining()), droppable);
+    }
+
+    private void send(Frame frame, boolean droppable) {
+        if (closed) {
+            return;
+        } else if (!congested) {
+            write(frame);
+            if (inFlightBytes >= highWatermark) {
+                congested = true;
+            }
+        } else if (droppable) {
+            dropped = true;
+        } else {
+            queue.add(frame);
+            queuedBytes += frame.size();
+            if (inFlightBytes + queuedBytes > maxBytes) {
+                LOGGER.warn("{} fell too far behind and was disconnected ({} bytes waiting)", name,
+                        inFlightBytes + queuedBytes);
+                close();
+                transport.close(StatusCode.TRY_AGAIN_LATER, "Client fell too far behind");
+            }
+        }
+    }
+
+    private void write(Frame frame) {
+        inFlightBytes += frame.size();
+        SentCallback callback = new SentCallback(frame.size());
+        if (frame.text() != null) {
+            transport.sendText(frame.text(), callback);
+        } else {
+            transport.sendBinary(frame.binary(), callback);
+        }
+    }
+
+    private void close() {
+        closed = true;
+        queue.clear();
+        queuedBytes = 0;
+        batch.clear();
+        batchBytes = 0;
+    }
+
+    private void onSent(int size, Throwable failure) {
+        boolean resync = false;
+        synchronized (this) {
+            inFlightBytes -= size;
+            if (failure != null) {
+                if (!closed) {
+                    LOGGER.warn("Failed to send to {}: {}", name, failure.toString());
+                    close();
+                }
+                return;
+            }
+
+            // Callbacks can run while a frame is being written, so don't drain twice.
+            if (congested && !draining && inFlightBytes <= lowWatermark) {
+                draining = true;
+                try {
+                    while (!queue.isEmpty() && inFlightBytes < highWatermark && !closed) {
+                        Frame frame = queue.poll();
+                        queuedBytes -= frame.size();
+                        write(frame);
+                    }
+                } finally {
+                    draining = false;
+                }
+
+                if (queue.isEmpty() && inFlightBytes < highWatermark) {
+                    congested = false;
+                    resync = dropped;
+                    dropped = false;
+                }
+            }
+        }
+        if (resync) {
+            onDropped.run();
+        }
+    }
+
+    /**
+     * Get the number of bytes handed to the websocket that haven't been written yet.
+     */
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    /**
+     * Get the number of bytes waiting for the client to catch up.
+     */
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * Check if the client has fallen behind and droppable frames are being dropped.
+     */
+    public synchronized boolean isCongested() {
+        return congested;
+    }
+
+    private class SentCallback implements Callback {
+        private final int size;
+
+        SentCallback(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public void succeed() {
+            onSent(size, null);
+        }
+
+        @Override
+        public void fail(Throwable x) {
+            onSent(size, x);
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package net.betrayd.webspeak.impl.net;
 
-import com.google.gson.Gson;
-
 import net.betrayd.webspeak.PlayerConnection;
+import net.betrayd.webspeak.impl.net.codec.JsonCodec;
 
 public abstract class S2CPacket<T> {
     private final String id;
@@ -13,10 +12,49 @@ public abstract class S2CPacket<T> {
 
     public abstract String write(T val);
 
+    /**
+     * Append this packet's text payload to a builder.
+     * @param val Packet value.
+     * @param out Builder to append to.
+     */
+    public void write(T val, StringBuilder out) {
+        out.append(write(val));
+    }
+
     public String getId() {
         return id;
     }
 
+    /**
+     * Check if this packet has its own encoding in the binary protocol.
+     * @return If {@link #writeBinary} is overridden.
+     */
+    public boolean hasBinaryCodec() {
+        return false;
+    }
+
+    /**
+     * Check if this packet can be dropped while a client is behind. Only
+     * packets whose contents are sent again once it catches up should be.
+     * 
+     * @see OutboundQueue
+     */
+    public boolean isDroppable() {
+        return false;
+    }
+
+    /**
+     * Write this packet's payload in the binary protocol. Unless overridden, it's
+     * the text payload as UTF-8.
+     * 
+     * @param val Packet value.
+     * @param out Writer to write to.
+     * @see BinaryProtocol
+     */
+    public void writeBinary(T val, BinaryWriter out) {
+        out.writeUtf8(write(val));
+    }
+
     /**
      * A utility function to send this packet to a player.
      * @param context Websocket context to send to.
@@ -24,19 +62,42 @@ public abstract class S2CPacket<T> {
      */
     @Deprecated
     public void send(PlayerConnection context, T val) {
-        context.sendText(WebSpeakNet.writePacket(this, val));
+        context.sendPacket(this, val);
     }
 
     public static class JsonS2CPacket<T> extends S2CPacket<T> {
-        private static final Gson GSON = new Gson();
+        private final JsonCodec<T> codec;
 
-        public JsonS2CPacket(String id) {
+        /**
+         * Create a packet that's written with a codec, usually one generated with
+         * {@link net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec}.
+         */
+        public JsonS2CPacket(String id, JsonCodec<T> codec) {
             super(id);
+            this.codec = codec;
+        }
+
+        /**
+         * Create a packet that's written reflectively with Gson.
+         */
+        public JsonS2CPacket(String id) {
+            this(id, null);
         }
 
         @Override
         public String write(T val) {
-            return GSON.toJson(val);
+            return codec != null ? codec.write(val) : GsonHolder.GSON.toJson(val);
+        }
+
+        @Override
+        public void write(T val, StringBuilder out) {
+            if (codec == null) {
+                out.append(GsonHolder.GSON.toJson(val));
+            } else if (val == null) {
+                out.append("null");
+            } else {
+                codec.write(val, out);
+            }
         }
     }
 
@@ -24,46 +24,72 @@ public class WebSpeakNet {
         }
     }
 
+    /**
+     * Builders are reused by each thread, unless they've grown past this.
+     */
+    private static final int MAX_REUSED_CAPACITY = 1 << 16;
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
     public static <T> String writePacket(S2CPacket<T> packet, T val) {
-        return packet.getId() + ";" + packet.write(val);
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        builder.append(packet.getId()).append(';');
+        packet.write(val, builder);
+        String text = builder.toString();
+        if (builder.capacity() > MAX_REUSED_CAPACITY) {
+            BUILDER.remove();
+        }
+        return text;
+    }
+
+    /**
+     * Prepare a packet to be sent to several connections with
+     * {@link PlayerConnection#sendEncoded}, so it's only encoded once per
+     * protocol.
+     */
+    public static <T> EncodedPacket<T> encodePacket(S2CPacket<T> packet, T val) {
+        return new EncodedPacket<>(packet, val);
     }
 
     public static <T> void sendPacket(Iterable<? extends PlayerConnection> players, S2CPacket<T> packet, T val) {
-        String text = writePacket(packet, val);
+        EncodedPacket<T> encoded = encodePacket(packet, val);
         for (var connection : players) {
-            connection.sendText(text);
+            connection.sendEncoded(encoded);
         }
     }
 
     public static <T> void sendPacketTo(Iterable<? extends WebSpeakPlayer> players, S2CPacket<T> packet, T val) {
-        String text = writePacket(packet, val);
+        EncodedPacket<T> encoded = encodePacket(packet, val);
         for (var player : players) {
             PlayerConnection connection = player.getConnection();
             if (connection != null) {
-                connection.sendText(text);
+                connection.sendEncoded(encoded);
             }
         }
     }
 
+    /**
+     * Read and apply a text frame from the client. The ID is looked up and the
+     * payload read without copying either out of the frame.
+     */
     public static void applyPacket(WebSpeakPlayer player, String data) {
         int colon = data.indexOf(';');
         if (colon < 0) {
             throw new IllegalArgumentException("No semicolon (;) was found to indicate packet type");
         }
-        String id = data.substring(0, colon);
-        String payload = data.substring(colon + 1);
 
-        C2SPacket<?> packet = C2SPackets.get(id);
+        C2SPacket<?> packet = C2SPackets.get(data, 0, colon);
         if (packet == null) {
-            throw new UnknownPacketException(id);
+            throw new UnknownPacketException(data.substring(0, colon));
         }
 
-        applyPacket(player, packet, payload);
+        applyPacket(player, packet, data, colon + 1);
     }
 
     // Aren't generics fun??
-    private static <T> void applyPacket(WebSpeakPlayer player, C2SPacket<T> packet, String payload) {
-        T val = packet.read(payload);
+    private static <T> void applyPacket(WebSpeakPlayer player, C2SPacket<T> packet, String data, int offset) {
+        T val = packet.read(data, offset);
         packet.apply(player, val);
     }
 }
@@ -0,0 +1,24 @@
+package net.betrayd.webspeak.impl.net.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generate a {@link JsonCodec} for a record, or a class with public fields and
+ * a no-arg constructor. The codec is generated at compile time as
+ * <code>[SimpleName]Codec</code> in this package, and writes the same JSON
+ * Gson would.
+ * <p>
+ * Properties can be primitives, their boxes, strings, enums (names are taken
+ * from <code>@SerializedName</code>), <code>JsonElement</code>,
+ * {@link net.betrayd.webspeak.util.WebSpeakVector}, other annotated types, and
+ * lists and string-keyed maps of those. <code>null</code> properties are left
+ * out.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateJsonCodec {
+
+}
@@ -0,0 +1,57 @@
+package net.betrayd.webspeak.impl.net.codec;
+
+/**
+ * Writes and reads a type as JSON without reflection. Usually generated with
+ * {@link GenerateJsonCodec}.
+ */
+public interface JsonCodec<T> {
+
+    /**
+     * Append a value as JSON.
+     * @param val Value. Never <code>null</code>.
+     * @param out Builder to append to.
+     */
+    public void write(T val, StringBuilder out);
+
+    /**
+     * Read a value from the current position of an input. The caller checks for
+     * <code>null</code> first.
+     * @param in Input to read from.
+     * @return Value.
+     */
+    public T read(JsonInput in);
+
+    public default String write(T val) {
+        if (val == null) {
+            return "null";
+        }
+        StringBuilder out = new StringBuilder();
+        write(val, out);
+        return out.toString();
+    }
+
+    /**
+     * Read a value that makes up an entire string.
+     * @param json JSON string.
+     * @return Value. <code>null</code> if the JSON is <code>null</code>.
+     * @throws IllegalArgumentException If the JSON is malformed.
+     */
+    public default T read(String json) {
+        return read(json, 0, json.length());
+    }
+
+    /**
+     * Read a value that makes up part of a string.
+     * @param json  String containing the JSON.
+     * @param start Index the JSON starts at.
+     * @param end   Index after the JSON.
+     * @return Value. <code>null</code> if the JSON is <code>null</code>.
+     * @throws IllegalArgumentException If the JSON is malformed.
+     */
+    public default T read(String json, int start, int end) {
+        JsonInput in = new JsonInput(json, start, end);
+        T val = in.nextNull() ? null : read(in);
+        in.end();
+        return val;
+    }
+}
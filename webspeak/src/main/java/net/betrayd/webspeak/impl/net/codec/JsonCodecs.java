@@ -0,0 +1,227 @@
+package net.betrayd.webspeak.impl.net.codec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+/**
+ * Codecs for built-in types, used by generated codecs.
+ */
+public final class JsonCodecs {
+    private JsonCodecs() {};
+
+    public static final JsonCodec<String> STRING = new JsonCodec<>() {
+        @Override
+        public void write(String val, StringBuilder out) {
+            JsonOutput.string(out, val);
+        }
+
+        @Override
+        public String read(JsonInput in) {
+            return in.nextString();
+        }
+    };
+
+    public static final JsonCodec<Boolean> BOOLEAN = new JsonCodec<>() {
+        @Override
+        public void write(Boolean val, StringBuilder out) {
+            JsonOutput.value(out, val.booleanValue());
+        }
+
+        @Override
+        public Boolean read(JsonInput in) {
+            return in.nextBoolean();
+        }
+    };
+
+    public static final JsonCodec<Integer> INTEGER = new JsonCodec<>() {
+        @Override
+        public void write(Integer val, StringBuilder out) {
+            JsonOutput.value(out, val.intValue());
+        }
+
+        @Override
+        public Integer read(JsonInput in) {
+            return in.nextInt();
+        }
+    };
+
+    public static final JsonCodec<Long> LONG = new JsonCodec<>() {
+        @Override
+        public void write(Long val, StringBuilder out) {
+            JsonOutput.value(out, val.longValue());
+        }
+
+        @Override
+        public Long read(JsonInput in) {
+            return in.nextLong();
+        }
+    };
+
+    public static final JsonCodec<Float> FLOAT = new JsonCodec<>() {
+        @Override
+        public void write(Float val, StringBuilder out) {
+            JsonOutput.value(out, val.floatValue());
+        }
+
+        @Override
+        public Float read(JsonInput in) {
+            return in.nextFloat();
+        }
+    };
+
+    public static final JsonCodec<Double> DOUBLE = new JsonCodec<>() {
+        @Override
+        public void write(Double val, StringBuilder out) {
+            JsonOutput.value(out, val.doubleValue());
+        }
+
+        @Override
+        public Double read(JsonInput in) {
+            return in.nextDouble();
+        }
+    };
+
+    public static final JsonCodec<JsonElement> ELEMENT = new JsonCodec<>() {
+        @Override
+        public void write(JsonElement val, StringBuilder out) {
+            JsonOutput.element(out, val);
+        }
+
+        @Override
+        public JsonElement read(JsonInput in) {
+            return in.nextElement();
+        }
+    };
+
+    /**
+     * Vectors are written as <code>[x, y, z]</code> arrays.
+     */
+    public static final JsonCodec<WebSpeakVector> VECTOR = new JsonCodec<>() {
+        @Override
+        public void write(WebSpeakVector val, StringBuilder out) {
+            out.append('[');
+            JsonOutput.value(out, val.x());
+            out.append(',');
+            JsonOutput.value(out, val.y());
+            out.append(',');
+            JsonOutput.value(out, val.z());
+            out.append(']');
+        }
+
+        @Override
+        public WebSpeakVector read(JsonInput in) {
+            in.beginArray();
+            in.hasNext();
+            double x = in.nextDouble();
+            in.hasNext();
+            double y = in.nextDouble();
+            in.hasNext();
+            double z = in.nextDouble();
+            in.endArray();
+            return new WebSpeakVector(x, y, z);
+        }
+    };
+
+    /**
+     * Get a codec for lists. <code>null</code> elements are written as
+     * <code>null</code>.
+     */
+    public static <T> JsonCodec<List<T>> list(JsonCodec<T> element) {
+        return new JsonCodec<>() {
+            @Override
+            public void write(List<T> val, StringBuilder out) {
+                out.append('[');
+                for (int i = 0; i < val.size(); i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    T item = val.get(i);
+                    if (item == null) {
+                        out.append("null");
+                    } else {
+                        element.write(item, out);
+                    }
+                }
+                out.append(']');
+            }
+
+            @Override
+            public List<T> read(JsonInput in) {
+                List<T> list = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add(in.nextNull() ? null : element.read(in));
+                }
+                in.endArray();
+                return list;
+            }
+        };
+    }
+
+    /**
+     * Get a codec for maps with string keys. Like Gson, entries with
+     * <code>null</code> values are left out.
+     */
+    public static <T> JsonCodec<Map<String, T>> map(JsonCodec<T> value) {
+        return new JsonCodec<>() {
+            @Override
+            public void write(Map<String, T> val, StringBuilder out) {
+                out.append('{');
+                int start = out.length();
+                for (var entry : val.entrySet()) {
+                    if (entry.getValue() == null)
+                        continue;
+                    JsonOutput.name(out, start, String.valueOf(entry.getKey()));
+                    value.write(entry.getValue(), out);
+                }
+                out.append('}');
+            }
+
+            @Override
+            public Map<String, T> read(JsonInput in) {
+                Map<String, T> map = new LinkedHashMap<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    String key = in.nextName();
+                    map.put(key, in.nextNull() ? null : value.read(in));
+                }
+                in.endObject();
+                return map;
+            }
+        };
+    }
+
+    /**
+     * Get a codec for an enum. Unknown names are read as <code>null</code>, like
+     * Gson.
+     *
+     * @param type  Enum class.
+     * @param names The JSON name of each constant, in order.
+     */
+    public static <E extends Enum<E>> JsonCodec<E> ofEnum(Class<E> type, String... names) {
+        E[] values = type.getEnumConstants();
+        Map<String, E> byName = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            byName.put(names[i], values[i]);
+        }
+
+        return new JsonCodec<>() {
+            @Override
+            public void write(E val, StringBuilder out) {
+                JsonOutput.string(out, names[val.ordinal()]);
+            }
+
+            @Override
+            public E read(JsonInput in) {
+                return byName.get(in.nextString());
+            }
+        };
+    }
+}
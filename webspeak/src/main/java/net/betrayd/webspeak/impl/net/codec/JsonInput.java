@@ -0,0 +1,441 @@
+package net.betrayd.webspeak.impl.net.codec;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A pull parser that reads JSON straight out of a string, for
+ * {@link JsonCodec}s. Malformed JSON throws an
+ * <code>IllegalArgumentException</code>.
+ */
+public class JsonInput {
+    private final String json;
+    private final int end;
+    private int pos;
+
+    /**
+     * Whether we're just inside an object or array, so the next value doesn't
+     * need a comma.
+     */
+    private boolean first;
+
+    public JsonInput(String json) {
+        this(json, 0, json.length());
+    }
+
+    /**
+     * Read part of a string.
+     * @param json  String to read from.
+     * @param start Index of the first character to read.
+     * @param end   Index after the last character to read.
+     */
+    public JsonInput(String json, int start, int end) {
+        this.json = json;
+        this.pos = start;
+        this.end = end;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " of JSON");
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+                return;
+            pos++;
+        }
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if (pos >= end) {
+            throw error("Unexpected end");
+        }
+        return json.charAt(pos);
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    public void beginObject() {
+        expect('{');
+        first = true;
+    }
+
+    public void endObject() {
+        expect('}');
+        first = false;
+    }
+
+    public void beginArray() {
+        expect('[');
+        first = true;
+    }
+
+    public void endArray() {
+        expect(']');
+        first = false;
+    }
+
+    /**
+     * Check if the current object or array has another value, and move past the
+     * comma before it.
+     */
+    public boolean hasNext() {
+        char c = peek();
+        if (c == '}' || c == ']') {
+            return false;
+        }
+        if (!first) {
+            expect(',');
+        }
+        first = false;
+        return true;
+    }
+
+    public String nextName() {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Read the next name and find it in a list, without copying it out of the
+     * JSON unless it has escapes.
+     * 
+     * @param names Names to look for.
+     * @return Index of the name in the list, or <code>-1</code> if it isn't in it.
+     */
+    public int nextName(String[] names) {
+        expect('"');
+        int start = pos;
+        int index = -1;
+        while (true) {
+            if (pos >= end) {
+                throw error("Unterminated string");
+            }
+            char c = json.charAt(pos);
+            if (c == '"') {
+                int length = pos - start;
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].length() == length && json.startsWith(names[i], start)) {
+                        index = i;
+                        break;
+                    }
+                }
+                pos++;
+                break;
+            } else if (c == '\\') {
+                String name = readEscapedString(start);
+                for (int i = 0; i < names.length; i++) {
+                    if (names[i].equals(name)) {
+                        index = i;
+                        break;
+                    }
+                }
+                break;
+            }
+            pos++;
+        }
+        expect(':');
+        return index;
+    }
+
+    /**
+     * Consume a <code>null</code> if there is one.
+     * @return If there was.
+     */
+    public boolean nextNull() {
+        if (peek() == 'n' && json.startsWith("null", pos)) {
+            pos += 4;
+            return true;
+        }
+        return false;
+    }
+
+    public String nextString() {
+        expect('"');
+        int start = pos;
+        while (pos < end) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                return json.substring(start, pos++);
+            } else if (c == '\\') {
+                return readEscapedString(start);
+            }
+            pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private String readEscapedString(int start) {
+        StringBuilder builder = new StringBuilder().append(json, start, pos);
+        while (pos < end) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return builder.toString();
+            } else if (c != '\\') {
+                builder.append(c);
+                continue;
+            } else if (pos >= end) {
+                break;
+            }
+
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case '"', '\\', '/' -> builder.append(escaped);
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > end) {
+                        throw error("Unterminated escape");
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(json, pos, pos + 4, 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                    pos += 4;
+                }
+                default -> throw error("Invalid escape");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    public boolean nextBoolean() {
+        peek();
+        if (json.startsWith("true", pos)) {
+            pos += 4;
+            return true;
+        } else if (json.startsWith("false", pos)) {
+            pos += 5;
+            return false;
+        }
+        throw error("Expected a boolean");
+    }
+
+    /**
+     * Move past a number literal.
+     * @return Index the literal started at.
+     */
+    private int skipNumber() {
+        peek();
+        int start = pos;
+        while (pos < end) {
+            char c = json.charAt(pos);
+            if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E')
+                break;
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Expected a number");
+        }
+        return start;
+    }
+
+    // Like Gson, numbers may also be sent as strings.
+    public double nextDouble() {
+        String text = peek() == '"' ? nextString() : json.substring(skipNumber(), pos);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'");
+        }
+    }
+
+    public float nextFloat() {
+        return (float) nextDouble();
+    }
+
+    public long nextLong() {
+        if (peek() == '"') {
+            return toLong(nextString());
+        }
+        int start = skipNumber();
+        try {
+            return Long.parseLong(json, start, pos, 10);
+        } catch (NumberFormatException e) {
+            return toLong(json.substring(start, pos));
+        }
+    }
+
+    private long toLong(String text) {
+        try {
+            double value = Double.parseDouble(text);
+            long result = (long) value;
+            if (result != value) {
+                throw error("Expected a whole number but was " + text);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'");
+        }
+    }
+
+    public int nextInt() {
+        long value = nextLong();
+        if ((int) value != value) {
+            throw error("Number " + value + " doesn't fit in an int");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Read the next value into a JSON tree. Numbers keep their original text, so
+     * they're written back out exactly as they came in.
+     */
+    public JsonElement nextElement() {
+        switch (peek()) {
+            case '{' -> {
+                JsonObject object = new JsonObject();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    object.add(name, nextElement());
+                }
+                endObject();
+                return object;
+            }
+            case '[' -> {
+                JsonArray array = new JsonArray();
+                beginArray();
+                while (hasNext()) {
+                    array.add(nextElement());
+                }
+                endArray();
+                return array;
+            }
+            case '"' -> {
+                return new JsonPrimitive(nextString());
+            }
+            case 't', 'f' -> {
+                return new JsonPrimitive(nextBoolean());
+            }
+            case 'n' -> {
+                if (!nextNull()) {
+                    throw error("Expected null");
+                }
+                return JsonNull.INSTANCE;
+            }
+            default -> {
+                String text = json.substring(skipNumber(), pos);
+                try {
+                    Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    throw error("Invalid number '" + text + "'");
+                }
+                return new JsonPrimitive(new JsonNumber(text));
+            }
+        }
+    }
+
+    /**
+     * A number that's only parsed when it's used.
+     */
+    private static class JsonNumber extends Number {
+        private final String text;
+
+        JsonNumber(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) longValue();
+        }
+
+        @Override
+        public long longValue() {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return (long) doubleValue();
+            }
+        }
+
+        @Override
+        public float floatValue() {
+            return Float.parseFloat(text);
+        }
+
+        @Override
+        public double doubleValue() {
+            return Double.parseDouble(text);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    public void skipValue() {
+        char c = peek();
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            while (pos < end) {
+                c = json.charAt(pos);
+                if (c == '"') {
+                    skipString();
+                    continue;
+                }
+                pos++;
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return;
+                }
+            }
+            throw error("Unterminated value");
+        } else {
+            int start = pos;
+            while (pos < end) {
+                c = json.charAt(pos);
+                if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r')
+                    break;
+                pos++;
+            }
+            if (pos == start) {
+                throw error("Expected a value");
+            }
+        }
+    }
+
+    private void skipString() {
+        expect('"');
+        while (pos < end) {
+            char c = json.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    /**
+     * Make sure there's nothing left but whitespace.
+     */
+    public void end() {
+        skipWhitespace();
+        if (pos < end) {
+            throw error("Unexpected trailing data");
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package net.betrayd.webspeak.impl.net.codec;
+
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Helpers for appending JSON to a <code>StringBuilder</code>. Output matches a
+ * default <code>Gson</code> instance character for character, including its
+ * HTML-safe string escaping.
+ */
+public final class JsonOutput {
+    private JsonOutput() {};
+
+    private static final String[] REPLACEMENTS = new String[128];
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            REPLACEMENTS[i] = String.format("\\u%04x", i);
+        }
+        REPLACEMENTS['"'] = "\\\"";
+        REPLACEMENTS['\\'] = "\\\\";
+        REPLACEMENTS['\t'] = "\\t";
+        REPLACEMENTS['\b'] = "\\b";
+        REPLACEMENTS['\n'] = "\\n";
+        REPLACEMENTS['\r'] = "\\r";
+        REPLACEMENTS['\f'] = "\\f";
+        REPLACEMENTS['<'] = "\\u003c";
+        REPLACEMENTS['>'] = "\\u003e";
+        REPLACEMENTS['&'] = "\\u0026";
+        REPLACEMENTS['='] = "\\u003d";
+        REPLACEMENTS['\''] = "\\u0027";
+    }
+
+    /**
+     * Append an object member name, with a comma before it if it isn't the first.
+     * @param out   Builder to append to.
+     * @param start Length of the builder just after the object's opening brace.
+     * @param name  Member name.
+     */
+    public static void name(StringBuilder out, int start, String name) {
+        if (out.length() > start) {
+            out.append(',');
+        }
+        string(out, name);
+        out.append(':');
+    }
+
+    public static void string(StringBuilder out, String value) {
+        out.append('"');
+        int last = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c < 128) {
+                replacement = REPLACEMENTS[c];
+                if (replacement == null) {
+                    continue;
+                }
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+            out.append(value, last, i).append(replacement);
+            last = i + 1;
+        }
+        out.append(value, last, length).append('"');
+    }
+
+    public static void value(StringBuilder out, boolean value) {
+        out.append(value);
+    }
+
+    public static void value(StringBuilder out, int value) {
+        out.append(value);
+    }
+
+    public static void value(StringBuilder out, long value) {
+        out.append(value);
+    }
+
+    public static void value(StringBuilder out, float value) {
+        checkFinite(value);
+        out.append(value);
+    }
+
+    public static void value(StringBuilder out, double value) {
+        checkFinite(value);
+        out.append(value);
+    }
+
+    private static void checkFinite(double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException(value + " is not a valid JSON number");
+        }
+    }
+
+    /**
+     * Append a JSON tree. Like Gson, <code>null</code> object members are left
+     * out.
+     */
+    public static void element(StringBuilder out, JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            out.append("null");
+        } else if (element instanceof JsonPrimitive primitive) {
+            if (primitive.isString()) {
+                string(out, primitive.getAsString());
+            } else if (primitive.isBoolean()) {
+                out.append(primitive.getAsBoolean());
+            } else {
+                Number number = primitive.getAsNumber();
+                if (number instanceof Double || number instanceof Float) {
+                    checkFinite(number.doubleValue());
+                }
+                out.append(number.toString());
+            }
+        } else if (element instanceof JsonArray array) {
+            out.append('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                element(out, array.get(i));
+            }
+            out.append(']');
+        } else {
+            out.append('{');
+            int start = out.length();
+            for (Map.Entry<String, JsonElement> entry : ((JsonObject) element).entrySet()) {
+                if (entry.getValue() == null || entry.getValue().isJsonNull()) {
+                    continue;
+                }
+                name(out, start, entry.getKey());
+                element(out, entry.getValue());
+            }
+            out.append('}');
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package net.betrayd.webspeak.impl.net.packets;
+
+import java.util.List;
+import java.util.Map;
+
+import net.betrayd.webspeak.impl.net.S2CPacket;
+import net.betrayd.webspeak.impl.net.S2CPacket.JsonS2CPacket;
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+import net.betrayd.webspeak.impl.net.codec.InitialStateS2CPacketCodec;
+import net.betrayd.webspeak.util.PannerOptions;
+import net.betrayd.webspeak.util.WSPlayerListEntry;
+
+/**
+ * Everything a client needs when it first connects. Split into chunks of at
+ * most {@link #CHUNK_SIZE} player list entries and transforms each; only the
+ * first chunk has the local player info and panner options.
+ * 
+ * @param localPlayer   The local player's info. <code>null</code> after the
+ *                      first chunk.
+ * @param pannerOptions Default panner options. <code>null</code> after the
+ *                      first chunk.
+ * @param playerEntries Player list entries.
+ * @param transforms    Transforms of the local player and everyone in scope
+ *                      with it.
+ */
+@GenerateJsonCodec
+public record InitialStateS2CPacket(LocalPlayerInfoS2CPacket localPlayer, PannerOptions pannerOptions,
+        Map<String, WSPlayerListEntry> playerEntries, List<UpdateTransformS2CPacket> transforms) {
+
+    public static final S2CPacket<InitialStateS2CPacket> PACKET = new JsonS2CPacket<>("initialState",
+            InitialStateS2CPacketCodec.INSTANCE);
+
+    public static final int CHUNK_SIZE = 256;
+}
@@ -5,9 +5,12 @@ import java.util.Date;
 import net.betrayd.webspeak.WebSpeakFlags;
 import net.betrayd.webspeak.WebSpeakServer;
 import net.betrayd.webspeak.impl.net.C2SPacket;
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+import net.betrayd.webspeak.impl.net.codec.KeepAliveC2SPacketCodec;
 
+@GenerateJsonCodec
 public record KeepAliveC2SPacket(long timestamp) {
-    public static final C2SPacket<KeepAliveC2SPacket> PACKET = new C2SPacket.JsonC2SPacket<>(KeepAliveC2SPacket.class,
+    public static final C2SPacket<KeepAliveC2SPacket> PACKET = new C2SPacket.JsonC2SPacket<>(KeepAliveC2SPacketCodec.INSTANCE,
             (player, val) -> {
                 if (player.getServer().getFlag(WebSpeakFlags.DEBUG_KEEPALIVE)) {
                     WebSpeakServer.LOGGER.info("{} sent keepalive packet at {}", player.getPlayerId(), new Date(val.timestamp));
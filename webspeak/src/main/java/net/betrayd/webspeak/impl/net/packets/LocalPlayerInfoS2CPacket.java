@@ -3,9 +3,17 @@ package net.betrayd.webspeak.impl.net.packets;
 import net.betrayd.webspeak.PlayerConnection;
 import net.betrayd.webspeak.impl.net.S2CPacket;
 import net.betrayd.webspeak.impl.net.S2CPacket.JsonS2CPacket;
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+import net.betrayd.webspeak.impl.net.codec.LocalPlayerInfoS2CPacketCodec;
 
-public record LocalPlayerInfoS2CPacket(String playerID) {
-    public static final S2CPacket<LocalPlayerInfoS2CPacket> PACKET = new JsonS2CPacket<>("localPlayerInfo");
+/**
+ * @param playerID The local player's ID.
+ * @param handle   The local player's handle, used by compact transforms.
+ */
+@GenerateJsonCodec
+public record LocalPlayerInfoS2CPacket(String playerID, int handle) {
+    public static final S2CPacket<LocalPlayerInfoS2CPacket> PACKET = new JsonS2CPacket<>("localPlayerInfo",
+            LocalPlayerInfoS2CPacketCodec.INSTANCE);
 
     public void send(PlayerConnection connection) {
         connection.sendPacket(PACKET, this);
@@ -12,30 +12,35 @@ import net.betrayd.webspeak.impl.net.C2SPacket;
 import net.betrayd.webspeak.impl.net.C2SPacket.JsonC2SPacket;
 import net.betrayd.webspeak.impl.net.S2CPacket;
 import net.betrayd.webspeak.impl.net.S2CPacket.JsonS2CPacket;
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+import net.betrayd.webspeak.impl.net.codec.RTCPacketDataCodec;
+import net.betrayd.webspeak.impl.net.codec.RequestOfferS2CPacketCodec;
 
 public class RTCPackets {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("WebSpeak RTCPackets");
 
+    @GenerateJsonCodec
     public static record RTCPacketData(String playerID, JsonElement payload) {};
+    @GenerateJsonCodec
     public static record RequestOfferS2CPacket(String playerID) {};
 
-    public static final S2CPacket<RequestOfferS2CPacket> REQUEST_OFFER_S2C = new JsonS2CPacket<>("requestOffer");
-    public static final S2CPacket<RequestOfferS2CPacket> DISCONNECT_RTC_S2C = new JsonS2CPacket<>("disconnectRTC");
+    public static final S2CPacket<RequestOfferS2CPacket> REQUEST_OFFER_S2C = new JsonS2CPacket<>("requestOffer", RequestOfferS2CPacketCodec.INSTANCE);
+    public static final S2CPacket<RequestOfferS2CPacket> DISCONNECT_RTC_S2C = new JsonS2CPacket<>("disconnectRTC", RequestOfferS2CPacketCodec.INSTANCE);
     
-    public static final S2CPacket<RTCPacketData> HAND_OFFER_S2C = new JsonS2CPacket<>("handOffer");
-    public static final S2CPacket<RTCPacketData> HAND_ANSWER_S2C = new JsonS2CPacket<>("handAnswer");
+    public static final S2CPacket<RTCPacketData> HAND_OFFER_S2C = new JsonS2CPacket<>("handOffer", RTCPacketDataCodec.INSTANCE);
+    public static final S2CPacket<RTCPacketData> HAND_ANSWER_S2C = new JsonS2CPacket<>("handAnswer", RTCPacketDataCodec.INSTANCE);
 
-    public static final S2CPacket<RTCPacketData> HAND_ICE_S2C = new JsonS2CPacket<>("handIce");
+    public static final S2CPacket<RTCPacketData> HAND_ICE_S2C = new JsonS2CPacket<>("handIce", RTCPacketDataCodec.INSTANCE);
     
     public static final C2SPacket<RTCPacketData> RETURN_OFFER_C2S = new JsonC2SPacket<>(
-            RTCPacketData.class, RTCPackets::onReturnOffer);
+            RTCPacketDataCodec.INSTANCE, RTCPackets::onReturnOffer);
 
     public static final C2SPacket<RTCPacketData> RETURN_ANSWER_C2S = new JsonC2SPacket<>(
-            RTCPacketData.class, RTCPackets::onReturnAnswer);
+            RTCPacketDataCodec.INSTANCE, RTCPackets::onReturnAnswer);
 
     public static final C2SPacket<RTCPacketData> RETURN_ICE_C2S = new JsonC2SPacket<>(
-            RTCPacketData.class, RTCPackets::onReturnIce);
+            RTCPacketDataCodec.INSTANCE, RTCPackets::onReturnIce);
 
     private static void onReturnOffer(WebSpeakPlayer player, RTCPacketData data) {
         WebSpeakPlayer targetPlayer = player.getServer().getPlayer(data.playerID);
@@ -2,10 +2,14 @@ package net.betrayd.webspeak.impl.net.packets;
 
 import net.betrayd.webspeak.PlayerConnection;
 import net.betrayd.webspeak.impl.net.S2CPacket;
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+import net.betrayd.webspeak.impl.net.codec.SetAudioModifierS2CPacketCodec;
 import net.betrayd.webspeak.util.AudioModifier;
 
+@GenerateJsonCodec
 public record SetAudioModifierS2CPacket(String playerID, AudioModifier audioModifier) {
-    public static final S2CPacket<SetAudioModifierS2CPacket> PACKET = new S2CPacket.JsonS2CPacket<>("setAudioModifier");
+    public static final S2CPacket<SetAudioModifierS2CPacket> PACKET = new S2CPacket.JsonS2CPacket<>("setAudioModifier",
+            SetAudioModifierS2CPacketCodec.INSTANCE);
 
     public void send(PlayerConnection connection) {
         connection.sendPacket(PACKET, this);
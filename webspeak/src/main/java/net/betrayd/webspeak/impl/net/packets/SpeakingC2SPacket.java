@@ -0,0 +1,15 @@
+package net.betrayd.webspeak.impl.net.packets;
+
+import net.betrayd.webspeak.impl.net.C2SPacket;
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+import net.betrayd.webspeak.impl.net.codec.SpeakingC2SPacketCodec;
+
+/**
+ * Sent by the client's voice activity detection when the player starts or
+ * stops speaking.
+ */
+@GenerateJsonCodec
+public record SpeakingC2SPacket(boolean speaking) {
+    public static final C2SPacket<SpeakingC2SPacket> PACKET = new C2SPacket.JsonC2SPacket<>(SpeakingC2SPacketCodec.INSTANCE,
+            (player, val) -> player.setSpeaking(val.speaking));
+}
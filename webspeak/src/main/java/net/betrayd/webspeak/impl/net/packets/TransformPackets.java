@@ -0,0 +1,307 @@
+package net.betrayd.webspeak.impl.net.packets;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+import net.betrayd.webspeak.impl.net.BinaryWriter;
+import net.betrayd.webspeak.impl.net.S2CPacket;
+import net.betrayd.webspeak.impl.net.S2CPacket.JsonS2CPacket;
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+import net.betrayd.webspeak.impl.net.codec.JsonCodecs;
+import net.betrayd.webspeak.impl.net.codec.TransformFormatCodec;
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+/**
+ * Packets for the compact transform encoding. Each compact transform is a
+ * varint of the player handle shifted left by one, three big-endian 32-bit
+ * fixed-point coordinates and a 32-bit smallest-three quaternion, sent as
+ * base64. If the low bit of the varint is set, three 16-bit fixed-point
+ * velocity components follow. The binary protocol sends the bytes as-is.
+ */
+public class TransformPackets {
+
+    /**
+     * The origin and precision the client should decode compact positions with.
+     */
+    @GenerateJsonCodec
+    public static record TransformFormat(WebSpeakVector origin, float precision) {};
+
+    public static final S2CPacket<TransformFormat> SET_TRANSFORM_FORMAT_S2C = new JsonS2CPacket<>("setTransformFormat",
+            TransformFormatCodec.INSTANCE);
+
+    /**
+     * Tell the client which player IDs compact transform handles belong to.
+     */
+    public static final S2CPacket<Map<String, Integer>> SET_PLAYER_HANDLES_S2C = new JsonS2CPacket<>("setPlayerHandles",
+            JsonCodecs.map(JsonCodecs.INTEGER));
+
+    public static final S2CPacket<CompactTransform> COMPACT_TRANSFORM_S2C = new S2CPacket<>("compactTransform") {
+
+        @Override
+        public String write(CompactTransform val) {
+            return Base64.getEncoder().encodeToString(val.toByteArray());
+        }
+
+        @Override
+        public boolean isDroppable() {
+            return true;
+        }
+
+        @Override
+        public boolean hasBinaryCodec() {
+            return true;
+        }
+
+        @Override
+        public void writeBinary(CompactTransform val, BinaryWriter out) {
+            out.writeBytes(val.toByteArray());
+        }
+    };
+
+    /**
+     * Several compact transforms that have already been written back to back.
+     */
+    public static final S2CPacket<byte[]> COMPACT_TRANSFORM_BATCH_S2C = new S2CPacket<>("compactTransform") {
+
+        @Override
+        public String write(byte[] val) {
+            return Base64.getEncoder().encodeToString(val);
+        }
+
+        @Override
+        public boolean isDroppable() {
+            return true;
+        }
+
+        @Override
+        public boolean hasBinaryCodec() {
+            return true;
+        }
+
+        @Override
+        public void writeBinary(byte[] val, BinaryWriter out) {
+            out.writeBytes(val);
+        }
+    };
+
+    /**
+     * Velocities are encoded in steps of the format precision times this, per
+     * second.
+     */
+    public static final int VELOCITY_SCALE = 4;
+
+    private static final double SQRT_2 = Math.sqrt(2);
+    private static final int ORIENTATION_MAX = (1 << 10) - 1;
+
+    /**
+     * A player transform that has been quantized for sending.
+     *
+     * @param handle      The player's handle.
+     * @param x           X position, in steps of the format precision.
+     * @param y           Y position, in steps of the format precision.
+     * @param z           Z position, in steps of the format precision.
+     * @param orientation Forward and up, packed with {@link #packOrientation}.
+     * @param velocity    Velocity, in steps of {@link #VELOCITY_SCALE} times the
+     *                    format precision per second. <code>null</code> if the
+     *                    player isn't moving.
+     */
+    public static record CompactTransform(int handle, int x, int y, int z, int orientation, short[] velocity) {
+
+        /**
+         * The max number of bytes a single transform can take.
+         */
+        public static final int MAX_SIZE = 5 + 3 * Integer.BYTES + Integer.BYTES + 3 * Short.BYTES;
+
+        public static CompactTransform create(int handle, WebSpeakVector pos, WebSpeakVector forward,
+                WebSpeakVector up, WebSpeakVector velocity, TransformFormat format) {
+            WebSpeakVector origin = format.origin();
+            float precision = format.precision();
+
+            short[] quantizedVelocity = null;
+            if (velocity != null && !velocity.equals(WebSpeakVector.ZERO)) {
+                float step = precision * VELOCITY_SCALE;
+                quantizedVelocity = new short[] {
+                        quantizeShort(velocity.x(), step),
+                        quantizeShort(velocity.y(), step),
+                        quantizeShort(velocity.z(), step) };
+            }
+
+            return new CompactTransform(handle,
+                    quantize(pos.x(), origin.x(), precision),
+                    quantize(pos.y(), origin.y(), precision),
+                    quantize(pos.z(), origin.z(), precision),
+                    packOrientation(forward, up),
+                    quantizedVelocity);
+        }
+
+        public void write(ByteBuffer buffer) {
+            int value = (handle << 1) | (velocity != null ? 1 : 0);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+            buffer.putInt(x);
+            buffer.putInt(y);
+            buffer.putInt(z);
+            buffer.putInt(orientation);
+            if (velocity != null) {
+                buffer.putShort(velocity[0]);
+                buffer.putShort(velocity[1]);
+                buffer.putShort(velocity[2]);
+            }
+        }
+
+        public byte[] toByteArray() {
+            ByteBuffer buffer = ByteBuffer.allocate(MAX_SIZE);
+            write(buffer);
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+
+    /**
+     * Quantize a coordinate to a fixed-point step. Values that don't fit are
+     * clamped to the int range.
+     */
+    public static int quantize(double value, double origin, float precision) {
+        return (int) Math.rint((value - origin) / precision);
+    }
+
+    private static short quantizeShort(double value, float step) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.rint(value / step)));
+    }
+
+    /**
+     * Round a velocity to what clients will decode from a compact transform.
+     *
+     * @param velocity  Velocity, in units per second.
+     * @param precision Format precision.
+     * @return Rounded velocity.
+     */
+    public static WebSpeakVector roundVelocity(WebSpeakVector velocity, float precision) {
+        return new WebSpeakVector(
+                roundVelocity(velocity.x(), precision),
+                roundVelocity(velocity.y(), precision),
+                roundVelocity(velocity.z(), precision));
+    }
+
+    /**
+     * Round a single velocity component.
+     * @see #roundVelocity(WebSpeakVector, float)
+     */
+    public static double roundVelocity(double value, float precision) {
+        float step = precision * VELOCITY_SCALE;
+        return quantizeShort(value, step) * (double) step;
+    }
+
+    /**
+     * Pack a forward and up vector into a smallest-three quaternion. The two
+     * highest bits hold the index of the dropped component, and the rest hold the
+     * other three components with 10 bits each. Up is re-orthogonalized against
+     * forward.
+     *
+     * @param forward Forward vector.
+     * @param up      Up vector.
+     * @return Packed orientation.
+     */
+    public static int packOrientation(WebSpeakVector forward, WebSpeakVector up) {
+        WebSpeakVector f = forward.lengthSquared() > 1e-12 ? forward.normalize() : new WebSpeakVector(0, 0, 1);
+        WebSpeakVector r = up.cross(f);
+        if (r.lengthSquared() < 1e-12) {
+            // Up is parallel to forward; any perpendicular will do.
+            r = (Math.abs(f.y()) < 0.99 ? new WebSpeakVector(0, 1, 0) : new WebSpeakVector(1, 0, 0)).cross(f);
+        }
+        r = r.normalize();
+        WebSpeakVector u = f.cross(r);
+
+        // Rotation matrix with columns (right, up, forward)
+        double m00 = r.x(), m01 = u.x(), m02 = f.x();
+        double m10 = r.y(), m11 = u.y(), m12 = f.y();
+        double m20 = r.z(), m21 = u.z(), m22 = f.z();
+
+        double[] q = new double[4]; // x, y, z, w
+        double trace = m00 + m11 + m22;
+        if (trace > 0) {
+            double s = 2 * Math.sqrt(trace + 1);
+            q[3] = 0.25 * s;
+            q[0] = (m21 - m12) / s;
+            q[1] = (m02 - m20) / s;
+            q[2] = (m10 - m01) / s;
+        } else if (m00 > m11 && m00 > m22) {
+            double s = 2 * Math.sqrt(1 + m00 - m11 - m22);
+            q[3] = (m21 - m12) / s;
+            q[0] = 0.25 * s;
+            q[1] = (m01 + m10) / s;
+            q[2] = (m02 + m20) / s;
+        } else if (m11 > m22) {
+            double s = 2 * Math.sqrt(1 + m11 - m00 - m22);
+            q[3] = (m02 - m20) / s;
+            q[0] = (m01 + m10) / s;
+            q[1] = 0.25 * s;
+            q[2] = (m12 + m21) / s;
+        } else {
+            double s = 2 * Math.sqrt(1 + m22 - m00 - m11);
+            q[3] = (m10 - m01) / s;
+            q[0] = (m02 + m20) / s;
+            q[1] = (m12 + m21) / s;
+            q[2] = 0.25 * s;
+        }
+
+        int largest = 0;
+        for (int i = 1; i < 4; i++) {
+            if (Math.abs(q[i]) > Math.abs(q[largest])) {
+                largest = i;
+            }
+        }
+        // q and -q are the same rotation, so make the dropped component positive.
+        double sign = q[largest] < 0 ? -1 : 1;
+
+        int packed = largest << 30;
+        int shift = 20;
+        for (int i = 0; i < 4; i++) {
+            if (i == largest)
+                continue;
+            // The other components are all within +-1/sqrt(2)
+            double normalized = q[i] * sign * SQRT_2 * 0.5 + 0.5;
+            int bits = (int) Math.rint(normalized * ORIENTATION_MAX);
+            packed |= Math.max(0, Math.min(ORIENTATION_MAX, bits)) << shift;
+            shift -= 10;
+        }
+        return packed;
+    }
+
+    /**
+     * Unpack an orientation made with {@link #packOrientation}.
+     *
+     * @param packed Packed orientation.
+     * @return A two-element array with the forward and up vectors.
+     */
+    public static WebSpeakVector[] unpackOrientation(int packed) {
+        int largest = packed >>> 30;
+        double[] q = new double[4];
+        double sum = 0;
+        int shift = 20;
+        for (int i = 0; i < 4; i++) {
+            if (i == largest)
+                continue;
+            int bits = (packed >>> shift) & ORIENTATION_MAX;
+            q[i] = ((double) bits / ORIENTATION_MAX - 0.5) * 2 / SQRT_2;
+            sum += q[i] * q[i];
+            shift -= 10;
+        }
+        q[largest] = Math.sqrt(Math.max(0, 1 - sum));
+
+        double x = q[0], y = q[1], z = q[2], w = q[3];
+        WebSpeakVector forward = new WebSpeakVector(
+                2 * (x * z + w * y),
+                2 * (y * z - w * x),
+                1 - 2 * (x * x + y * y));
+        WebSpeakVector up = new WebSpeakVector(
+                2 * (x * y - w * z),
+                1 - 2 * (x * x + z * z),
+                2 * (y * z + w * x));
+        return new WebSpeakVector[] { forward, up };
+    }
+}
@@ -2,15 +2,73 @@ package net.betrayd.webspeak.impl.net.packets;
 
 import net.betrayd.webspeak.PlayerConnection;
 import net.betrayd.webspeak.WebSpeakPlayer;
+import net.betrayd.webspeak.impl.net.BinaryWriter;
 import net.betrayd.webspeak.impl.net.S2CPacket;
 import net.betrayd.webspeak.impl.net.S2CPacket.JsonS2CPacket;
+import net.betrayd.webspeak.impl.net.S2CPacket.StringS2CPacket;
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+import net.betrayd.webspeak.impl.net.codec.UpdateTransformS2CPacketCodec;
 import net.betrayd.webspeak.util.WebSpeakVector;
 
-public record UpdateTransformS2CPacket(String playerID, WebSpeakVector pos, WebSpeakVector forward, WebSpeakVector up) {
-    public static final S2CPacket<UpdateTransformS2CPacket> PACKET = new JsonS2CPacket<>("updateTransform");
+/**
+ * In the binary protocol, this is the player ID as a string, the position as
+ * three doubles, forward and up as three floats each, and a byte that's
+ * <code>1</code> if three velocity floats follow.
+ * 
+ * @param velocity Velocity the client should extrapolate the position with.
+ *                 Left out if <code>null</code>.
+ */
+@GenerateJsonCodec
+public record UpdateTransformS2CPacket(String playerID, WebSpeakVector pos, WebSpeakVector forward, WebSpeakVector up,
+        WebSpeakVector velocity) {
+    public static final S2CPacket<UpdateTransformS2CPacket> PACKET = new JsonS2CPacket<>("updateTransform",
+            UpdateTransformS2CPacketCodec.INSTANCE) {
+
+        @Override
+        public boolean isDroppable() {
+            return true;
+        }
+
+        @Override
+        public boolean hasBinaryCodec() {
+            return true;
+        }
+
+        @Override
+        public void writeBinary(UpdateTransformS2CPacket val, BinaryWriter out) {
+            out.writeString(val.playerID());
+            out.writeDouble(val.pos().x());
+            out.writeDouble(val.pos().y());
+            out.writeDouble(val.pos().z());
+            writeFloats(val.forward(), out);
+            writeFloats(val.up(), out);
+            if (val.velocity() != null) {
+                out.writeByte(1);
+                writeFloats(val.velocity(), out);
+            } else {
+                out.writeByte(0);
+            }
+        }
+    };
+
+    /**
+     * A JSON array of transforms that has already been written.
+     */
+    public static final S2CPacket<String> BATCH_PACKET = new StringS2CPacket("updateTransforms") {
+        @Override
+        public boolean isDroppable() {
+            return true;
+        }
+    };
 
     public static UpdateTransformS2CPacket fromPlayer(WebSpeakPlayer player) {
-        return new UpdateTransformS2CPacket(player.getPlayerId(), player.getLocation(), player.getForward(), player.getUp());
+        return new UpdateTransformS2CPacket(player.getPlayerId(), player.getLocation(), player.getForward(), player.getUp(), null);
+    }
+
+    private static void writeFloats(WebSpeakVector vec, BinaryWriter out) {
+        out.writeFloat((float) vec.x());
+        out.writeFloat((float) vec.y());
+        out.writeFloat((float) vec.z());
     }
 
     public void send(PlayerConnection connection) {
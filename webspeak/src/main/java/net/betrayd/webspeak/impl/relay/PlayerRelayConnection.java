@@ -12,6 +12,10 @@ import org.slf4j.LoggerFactory;
 import net.betrayd.webspeak.PlayerConnection;
 import net.betrayd.webspeak.WebSpeakPlayer;
 import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.impl.net.BinaryProtocol;
+import net.betrayd.webspeak.impl.net.EncodedPacket;
+import net.betrayd.webspeak.impl.net.OutboundQueue;
+import net.betrayd.webspeak.impl.net.S2CPacket;
 import net.betrayd.webspeak.impl.net.WebSpeakNet;
 import net.betrayd.webspeak.impl.net.WebSpeakNet.UnknownPacketException;
 
@@ -24,6 +28,7 @@ public class PlayerRelayConnection implements PlayerConnection, Session.Listener
     private final WebSpeakPlayer player;
 
     private Session session;
+    private OutboundQueue outbound;
 
     private boolean connected = false;
     private String remoteAdress = null;
@@ -101,7 +106,17 @@ public class PlayerRelayConnection implements PlayerConnection, Session.Listener
 
     @Override
     public void sendText(String message) {
-        session.sendText(message, Callback.NOOP);
+        outbound.sendText(message, false);
+    }
+
+    @Override
+    public void sendEncoded(EncodedPacket<?> packet) {
+        outbound.sendText(packet.getText(), packet.getPacket().isDroppable());
+    }
+
+    @Override
+    public <T> void sendPacket(S2CPacket<T> packet, T val) {
+        outbound.sendText(WebSpeakNet.writePacket(packet, val), packet.isDroppable());
     }
 
     @Override
@@ -120,9 +135,21 @@ public class PlayerRelayConnection implements PlayerConnection, Session.Listener
 
         // Store the session to be able to send data to the remote peer.
         this.session = session;
+        this.outbound = new OutboundQueue(session, server, player.getPlayerId(),
+                () -> server.onTransformsDropped(this));
         player.setConnection(this);
     }
 
+    /**
+     * The relay always uses the text protocol, but text can still come in binary
+     * frames.
+     */
+    @Override
+    public void onWebSocketBinary(ByteBuffer payload, Callback callback) {
+        onWebSocketText(BinaryProtocol.readUtf8(payload));
+        callback.succeed();
+    }
+
     @Override
     public void onWebSocketText(String message) {
         try {
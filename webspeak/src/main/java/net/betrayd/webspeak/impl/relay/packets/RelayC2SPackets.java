@@ -6,17 +6,22 @@ import org.slf4j.LoggerFactory;
 import net.betrayd.webspeak.WebSpeakPlayer;
 import net.betrayd.webspeak.impl.net.C2SPacket;
 import net.betrayd.webspeak.impl.net.C2SPacket.JsonC2SPacket;
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+import net.betrayd.webspeak.impl.net.codec.RelayConnectDataCodec;
+import net.betrayd.webspeak.impl.net.codec.RelayDisconnectDataCodec;
 import net.betrayd.webspeak.impl.relay.PlayerRelayConnection;
 
 public class RelayC2SPackets {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("WebSpeak RelayC2SPackets");
 
+    @GenerateJsonCodec
     public static record RelayConnectData(String context){};
+    @GenerateJsonCodec
     public static record RelayDisconnectData(int statusCode, String reason) {};
 
-    public static final C2SPacket<RelayConnectData> RELAY_CLIENT_CONNECTED_C2S_PACKET = new JsonC2SPacket<>(RelayConnectData.class, RelayC2SPackets::onClientConnected);
-    public static final C2SPacket<RelayDisconnectData> RELAY_CLIENT_DISCONNECTED_C2S_PACKET = new JsonC2SPacket<>(RelayDisconnectData.class, RelayC2SPackets::onClientDisconnected);
+    public static final C2SPacket<RelayConnectData> RELAY_CLIENT_CONNECTED_C2S_PACKET = new JsonC2SPacket<>(RelayConnectDataCodec.INSTANCE, RelayC2SPackets::onClientConnected);
+    public static final C2SPacket<RelayDisconnectData> RELAY_CLIENT_DISCONNECTED_C2S_PACKET = new JsonC2SPacket<>(RelayDisconnectDataCodec.INSTANCE, RelayC2SPackets::onClientDisconnected);
 
     private static void onClientConnected(WebSpeakPlayer player, RelayConnectData data) {
         if (player.getConnection() instanceof PlayerRelayConnection relayConnection && !relayConnection.isConnected()) {
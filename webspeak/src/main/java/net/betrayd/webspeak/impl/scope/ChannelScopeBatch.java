@@ -0,0 +1,181 @@
+package net.betrayd.webspeak.impl.scope;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.betrayd.webspeak.ScopeBatch;
+import net.betrayd.webspeak.ScopePolicy;
+import net.betrayd.webspeak.WebSpeakChannel;
+import net.betrayd.webspeak.WebSpeakPlayer;
+import net.betrayd.webspeak.impl.TransformStore;
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+/**
+ * A reusable scope batch for a single channel. The arrays only grow, so once
+ * a channel has settled in size, refilling the batch each tick doesn't
+ * allocate.
+ */
+class ChannelScopeBatch implements ScopeBatch {
+    private final WebSpeakChannel channel;
+    private final TransformStore transforms;
+
+    private List<WebSpeakPlayer> players = List.of();
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private double[] z = new double[16];
+
+    private int pairCount;
+    private int[] pairA = new int[64];
+    private int[] pairB = new int[64];
+    private boolean[] wasInScope = new boolean[64];
+    private boolean[] spatialized = new boolean[64];
+    private boolean[] results = new boolean[64];
+
+    private float range;
+    private float exitRange;
+
+    private final DistanceKernel.Block distanceBlock = new DistanceKernel.Block();
+
+    ChannelScopeBatch(WebSpeakChannel channel, TransformStore transforms) {
+        this.channel = channel;
+        this.transforms = transforms;
+    }
+
+    /**
+     * Clear all pairs and load the positions of a new set of players.
+     */
+    void reset(List<WebSpeakPlayer> players, float range, float exitRange) {
+        this.players = players;
+        this.range = range;
+        this.exitRange = exitRange;
+        this.pairCount = 0;
+
+        int count = players.size();
+        if (count > x.length) {
+            int newLength = Math.max(count, x.length * 2);
+            x = new double[newLength];
+            y = new double[newLength];
+            z = new double[newLength];
+        }
+        for (int i = 0; i < count; i++) {
+            WebSpeakPlayer player = players.get(i);
+            int handle = player.getHandle();
+            if (handle >= 0) {
+                synchronized (transforms) {
+                    if (transforms.isPushed(handle)) {
+                        x[i] = transforms.getX(handle);
+                        y[i] = transforms.getY(handle);
+                        z[i] = transforms.getZ(handle);
+                        continue;
+                    }
+                }
+            }
+            WebSpeakVector pos = player.getLocation();
+            x[i] = pos.x();
+            y[i] = pos.y();
+            z[i] = pos.z();
+        }
+    }
+
+    /**
+     * Clear all pairs, keeping the players and their positions.
+     */
+    void clearPairs() {
+        this.pairCount = 0;
+    }
+
+    void addPair(int a, int b, boolean wasInScope, boolean spatialized) {
+        if (pairCount == pairA.length) {
+            int newLength = pairA.length * 2;
+            pairA = Arrays.copyOf(pairA, newLength);
+            pairB = Arrays.copyOf(pairB, newLength);
+            this.wasInScope = Arrays.copyOf(this.wasInScope, newLength);
+            this.spatialized = Arrays.copyOf(this.spatialized, newLength);
+            results = new boolean[newLength];
+        }
+        pairA[pairCount] = a;
+        pairB[pairCount] = b;
+        this.wasInScope[pairCount] = wasInScope;
+        this.spatialized[pairCount] = spatialized;
+        pairCount++;
+    }
+
+    /**
+     * Get the scratch block for {@link ScopePolicy#DISTANCE}.
+     */
+    DistanceKernel.Block getDistanceBlock() {
+        return distanceBlock;
+    }
+
+    /**
+     * Get the array policies should write their results to.
+     */
+    boolean[] getResults() {
+        return results;
+    }
+
+    @Override
+    public WebSpeakChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    @Override
+    public WebSpeakPlayer getPlayer(int index) {
+        return players.get(index);
+    }
+
+    @Override
+    public double[] getX() {
+        return x;
+    }
+
+    @Override
+    public double[] getY() {
+        return y;
+    }
+
+    @Override
+    public double[] getZ() {
+        return z;
+    }
+
+    @Override
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    @Override
+    public int[] getPairA() {
+        return pairA;
+    }
+
+    @Override
+    public int[] getPairB() {
+        return pairB;
+    }
+
+    @Override
+    public boolean[] getWasInScope() {
+        return wasInScope;
+    }
+
+    @Override
+    public boolean[] getSpatialized() {
+        return spatialized;
+    }
+
+    @Override
+    public float getRange() {
+        return range;
+    }
+
+    @Override
+    public float getExitRange() {
+        return exitRange;
+    }
+}
@@ -0,0 +1,645 @@
+package net.betrayd.webspeak.impl.scope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import net.betrayd.webspeak.ScopePolicy;
+import net.betrayd.webspeak.WebSpeakChannel;
+import net.betrayd.webspeak.WebSpeakFlags;
+import net.betrayd.webspeak.WebSpeakPlayer;
+import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.impl.HandleSet;
+import net.betrayd.webspeak.impl.LongHashSet;
+import net.betrayd.webspeak.impl.TransformStore;
+
+/**
+ * Computes which players in a channel should join or leave each other's scope.
+ * The evaluator picks out the candidate pairs and the server's
+ * {@link ScopePolicy} decides them. Evaluation only reads server state, so
+ * evaluators for different channels may run in parallel as long as nothing
+ * modifies the server's scopes meanwhile.
+ *
+ * @implNote Players are looked up by handle through a flat array, and all
+ *           buffers are reused between ticks.
+ */
+public class ChannelScopeEvaluator {
+    private final WebSpeakServer server;
+    private final WebSpeakChannel channel;
+    private final ScopeMatrix scopes;
+    private final SpatialHashGrid grid;
+    private final ChannelScopeBatch batch;
+    private final LongHashSet nonSpatialPairs = new LongHashSet();
+
+    private final List<WebSpeakPlayer> players = new ArrayList<>();
+    private int[] handleToIndex = new int[0];
+    private boolean[] moved = new boolean[16];
+    private boolean[] dirty = new boolean[16];
+    /**
+     * Indices of the players flagged as moved or dirty in the current evaluation.
+     */
+    private int[] evaluating = new int[16];
+    private int evaluatingCount;
+
+    private boolean prepared;
+    private int budgetIndex = -1;
+    /**
+     * Whether the grid holds the prepared players yet. It's only built once a
+     * moved player needs it.
+     */
+    private boolean gridReady;
+
+    private final ScopeDiff rangeDiff = new ScopeDiff();
+    private final ScopeDiff budgetDiff = new ScopeDiff();
+
+    /**
+     * The index of the player whose pairs are being visited. The visitors are
+     * kept in fields so visiting doesn't allocate.
+     */
+    private int visiting;
+
+    private final IntConsumer neighborVisitor = this::visitNeighbor;
+    private final IntConsumer scopedVisitor = this::visitScoped;
+
+    // Peer budget state, indexed by player index.
+    private int[] candidateCounts = new int[16];
+    private boolean[] overBudget = new boolean[16];
+    /**
+     * For players over budget, a bitset of the players they'd be in scope with
+     * if there was no budget.
+     */
+    private long[][] candidateRows = new long[16][];
+    /**
+     * For players over budget, a bitset of the candidates they kept.
+     */
+    private long[][] keptRows = new long[16][];
+    private int rowWords;
+    private int[] topIndices = new int[16];
+    private double[] topPriorities = new double[16];
+
+    private final IntConsumer candidateVisitor = this::visitCandidate;
+    private final IntConsumer pushedOutVisitor = this::visitPushedOut;
+
+    public ChannelScopeEvaluator(WebSpeakServer server, WebSpeakChannel channel, ScopeMatrix scopes,
+            TransformStore transforms) {
+        this.server = server;
+        this.channel = channel;
+        this.scopes = scopes;
+        this.grid = new SpatialHashGrid(server.getMaxAudioRange());
+        this.batch = new ChannelScopeBatch(channel, transforms);
+    }
+
+    public WebSpeakServer getServer() {
+        return server;
+    }
+
+    public WebSpeakChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Compute the scope changes for all connected players in the channel.
+     *
+     * @param movedPlayers Players whose pairs with nearby players need to be
+     *                     checked. <code>null</code> to check every player.
+     * @param dirtyPlayers Players whose pairs with everyone in the channel need
+     *                     to be checked. May be <code>null</code>.
+     * @return The scope changes. Only valid until the next call to this method.
+     */
+    public ScopeDiff evaluate(Set<WebSpeakPlayer> movedPlayers, Set<WebSpeakPlayer> dirtyPlayers) {
+        prepare();
+        try {
+            return evaluatePrepared(movedPlayers, dirtyPlayers);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Snapshot the channel's players and their positions so they can be evaluated
+     * in several parts with {@link #evaluatePrepared}. Players that join the
+     * channel or move after this aren't seen until the evaluator is released and
+     * prepared again.
+     */
+    public void prepare() {
+        if (prepared) {
+            release();
+        }
+        players.clear();
+        int maxHandle = -1;
+        for (var player : channel.getPlayers()) {
+            if (player.isConnected() && player.getHandle() >= 0) {
+                players.add(player);
+                maxHandle = Math.max(maxHandle, player.getHandle());
+            }
+        }
+
+        if (maxHandle >= handleToIndex.length) {
+            int oldLength = handleToIndex.length;
+            handleToIndex = Arrays.copyOf(handleToIndex, Math.max(maxHandle + 1, oldLength * 2));
+            Arrays.fill(handleToIndex, oldLength, handleToIndex.length, -1);
+        }
+        for (int i = 0; i < players.size(); i++) {
+            handleToIndex[players.get(i).getHandle()] = i;
+        }
+
+        int count = players.size();
+        if (count > moved.length) {
+            moved = new boolean[Math.max(count, moved.length * 2)];
+            dirty = new boolean[moved.length];
+            evaluating = new int[moved.length];
+        }
+
+        batch.reset(players, server.getMaxAudioRange(), server.getScopeExitRange());
+        findNonSpatialPairs();
+        gridReady = false;
+        prepared = true;
+    }
+
+    /**
+     * Forget the snapshot taken by {@link #prepare}.
+     */
+    public void release() {
+        for (var player : players) {
+            handleToIndex[player.getHandle()] = -1;
+        }
+        players.clear();
+        prepared = false;
+    }
+
+    public boolean isPrepared() {
+        return prepared;
+    }
+
+    /**
+     * Get the channel's position in the server's current budgeted scope tick.
+     * @return The position, or <code>-1</code> outside of a budgeted tick.
+     */
+    public int getBudgetIndex() {
+        return budgetIndex;
+    }
+
+    public void setBudgetIndex(int budgetIndex) {
+        this.budgetIndex = budgetIndex;
+    }
+
+    /**
+     * Compute the scope changes for some of the players in the channel, using
+     * the snapshot taken by {@link #prepare}. Only the given players' pairs are
+     * checked, against the scopes as they are now.
+     *
+     * @param movedPlayers Players whose pairs with nearby players need to be
+     *                     checked. <code>null</code> to check every player.
+     * @param dirtyPlayers Players whose pairs with everyone in the channel need
+     *                     to be checked. May be <code>null</code>.
+     * @return The scope changes. Only valid until the next call to this method.
+     */
+    public ScopeDiff evaluatePrepared(Set<WebSpeakPlayer> movedPlayers, Set<WebSpeakPlayer> dirtyPlayers) {
+        if (!prepared) {
+            throw new IllegalStateException("Evaluator has not been prepared.");
+        }
+        if (movedPlayers == null) {
+            markEveryone();
+        } else {
+            markAll(movedPlayers, moved);
+        }
+        if (dirtyPlayers != null) {
+            markAll(dirtyPlayers, dirty);
+        }
+        return evaluateMarked();
+    }
+
+    /**
+     * Compute the scope changes for some of the players in the channel, using
+     * the snapshot taken by {@link #prepare}. The same as
+     * {@link #evaluatePrepared(Set, Set)}, but with sets of handles.
+     *
+     * @param movedHandles Handles of players whose pairs with nearby players
+     *                     need to be checked.
+     * @param dirtyHandles Handles of players whose pairs with everyone in the
+     *                     channel need to be checked.
+     * @return The scope changes. Only valid until the next call to this method.
+     */
+    public ScopeDiff evaluatePrepared(HandleSet movedHandles, HandleSet dirtyHandles) {
+        if (!prepared) {
+            throw new IllegalStateException("Evaluator has not been prepared.");
+        }
+        markAll(movedHandles, moved);
+        markAll(dirtyHandles, dirty);
+        return evaluateMarked();
+    }
+
+    /**
+     * Evaluate the players flagged as moved or dirty, and clear the flags.
+     */
+    private ScopeDiff evaluateMarked() {
+        try {
+            ScopeDiff diff = evaluateRange();
+
+            int peerBudget = server.getFlag(WebSpeakFlags.PEER_BUDGET);
+            if (peerBudget > 0) {
+                diff = applyPeerBudget(diff, peerBudget);
+            }
+            return diff;
+        } finally {
+            for (int n = 0; n < evaluatingCount; n++) {
+                moved[evaluating[n]] = false;
+                dirty[evaluating[n]] = false;
+            }
+            evaluatingCount = 0;
+        }
+    }
+
+    private int indexOf(int handle) {
+        return handle < handleToIndex.length ? handleToIndex[handle] : -1;
+    }
+
+    private int handleOf(int index) {
+        return players.get(index).getHandle();
+    }
+
+    /**
+     * Compute which players are in range of each other, ignoring the peer budget.
+     */
+    private ScopeDiff evaluateRange() {
+        ScopeDiff diff = rangeDiff;
+        diff.clear();
+
+        if (evaluatingCount == 0) {
+            return diff;
+        }
+        boolean anyMoved = false;
+        for (int n = 0; n < evaluatingCount && !anyMoved; n++) {
+            anyMoved = moved[evaluating[n]];
+        }
+
+        batch.clearPairs();
+
+        if (!anyMoved) {
+            addDirtyPairs();
+        } else if (!server.getFlag(WebSpeakFlags.SCOPE_BROADPHASE)) {
+            // Without the grid, a moved player has to be checked against everyone anyway.
+            for (int n = 0; n < evaluatingCount; n++) {
+                dirty[evaluating[n]] = true;
+            }
+            addDirtyPairs();
+        } else {
+            addMovedPairs();
+        }
+
+        ScopePolicy policy = server.getScopePolicy();
+        boolean[] results = batch.getResults();
+        policy.evaluate(batch, results);
+
+        int[] pairA = batch.getPairA();
+        int[] pairB = batch.getPairB();
+        boolean[] wasInScope = batch.getWasInScope();
+        for (int i = 0; i < batch.getPairCount(); i++) {
+            if (results[i] != wasInScope[i]) {
+                int a = handleOf(pairA[i]);
+                int b = handleOf(pairB[i]);
+                if (results[i]) {
+                    diff.addJoin(a, b);
+                } else {
+                    diff.addLeave(a, b);
+                }
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Flag every player in a set that's in the channel.
+     */
+    private void markAll(Set<WebSpeakPlayer> set, boolean[] flags) {
+        if (set.size() > players.size()) {
+            for (int i = 0; i < players.size(); i++) {
+                if (set.contains(players.get(i))) {
+                    mark(i, flags);
+                }
+            }
+        } else {
+            for (var player : set) {
+                int i = player.getHandle() >= 0 ? indexOf(player.getHandle()) : -1;
+                if (i >= 0 && players.get(i) == player) {
+                    mark(i, flags);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flag every handle in a set that's in the channel.
+     */
+    private void markAll(HandleSet set, boolean[] flags) {
+        for (int n = 0; n < set.size(); n++) {
+            int i = indexOf(set.get(n));
+            if (i >= 0) {
+                mark(i, flags);
+            }
+        }
+    }
+
+    private void markEveryone() {
+        for (int i = 0; i < players.size(); i++) {
+            mark(i, moved);
+        }
+    }
+
+    private void mark(int index, boolean[] flags) {
+        if (!moved[index] && !dirty[index]) {
+            evaluating[evaluatingCount++] = index;
+        }
+        flags[index] = true;
+    }
+
+    /**
+     * Find every pair where one player's audio modifiers disable spatialization
+     * on the other. Those can only come from groups with audio modifiers, so
+     * there's usually very few of them.
+     */
+    private void findNonSpatialPairs() {
+        nonSpatialPairs.clear();
+        for (int i = 0; i < players.size(); i++) {
+            WebSpeakPlayer a = players.get(i);
+            for (var group : a.getGroups()) {
+                for (var other : group.getAudioModifiedPlayers()) {
+                    int j = other.getHandle() >= 0 ? indexOf(other.getHandle()) : -1;
+                    if (j >= 0 && j != i && !a.getAudioModifier(other).isSpatialized()) {
+                        nonSpatialPairs.add(pairKey(i, j));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the pairs that need to be checked when some players have moved, using
+     * the grid to skip players that are obviously out of range.
+     */
+    private void addMovedPairs() {
+        if (!gridReady) {
+            int count = batch.getPlayerCount();
+            double[] x = batch.getX();
+            double[] y = batch.getY();
+            double[] z = batch.getZ();
+
+            grid.setCellSize(server.getMaxAudioRange());
+            grid.clear();
+            for (int i = 0; i < count; i++) {
+                grid.insert(i, x[i], y[i], z[i]);
+            }
+            gridReady = true;
+        }
+
+        addDirtyPairs();
+
+        boolean[] moved = this.moved;
+        boolean[] dirty = this.dirty;
+        for (int n = 0; n < evaluatingCount; n++) {
+            int i = evaluating[n];
+            if (!moved[i] || dirty[i])
+                continue;
+            visiting = i;
+
+            // Players in neighboring cells.
+            grid.forEachNeighbor(i, neighborVisitor);
+
+            // The grid won't find players who were in scope but have since moved
+            // apart, so re-check them here.
+            scopes.forEach(handleOf(i), scopedVisitor);
+        }
+
+        // Pairs without spatialization may be in scope regardless of distance.
+        for (int n = 0; n < nonSpatialPairs.size(); n++) {
+            long key = nonSpatialPairs.get(n);
+            int i = (int) (key >>> 32);
+            int j = (int) key;
+            if ((moved[i] || moved[j]) && !dirty[i] && !dirty[j] && !grid.areNeighbors(i, j)
+                    && !scopes.get(handleOf(i), handleOf(j))) {
+                addPair(i, j);
+            }
+        }
+    }
+
+    /**
+     * Check if a pair with a moved player should be added. Skips pairs that were
+     * already added as dirty, or will be added from the other side.
+     */
+    private boolean shouldCheckMoved(int a, int b) {
+        return b != a && !dirty[b] && (!moved[b] || b > a);
+    }
+
+    private void visitNeighbor(int j) {
+        if (shouldCheckMoved(visiting, j)) {
+            addPair(visiting, j);
+        }
+    }
+
+    private void visitScoped(int handle) {
+        int j = indexOf(handle);
+        if (j >= 0 && shouldCheckMoved(visiting, j) && !grid.areNeighbors(visiting, j)) {
+            addPair(visiting, j);
+        }
+    }
+
+    /**
+     * Add every pair that involves a dirty player.
+     */
+    private void addDirtyPairs() {
+        int count = batch.getPlayerCount();
+        for (int n = 0; n < evaluatingCount; n++) {
+            int i = evaluating[n];
+            if (!dirty[i])
+                continue;
+            for (int j = 0; j < count; j++) {
+                // If both are dirty, only add from one side.
+                if (j != i && (!dirty[j] || j > i)) {
+                    addPair(i, j);
+                }
+            }
+        }
+    }
+
+    private void addPair(int a, int b) {
+        boolean wasInScope = scopes.get(handleOf(a), handleOf(b));
+        batch.addPair(a, b, wasInScope, !nonSpatialPairs.contains(pairKey(a, b)));
+    }
+
+    /**
+     * Limit the number of players each player can be in scope with. A pair is
+     * only kept if it's within both players' top <code>budget</code> candidates.
+     *
+     * @param diff   Scope changes based purely on range.
+     * @param budget Max players in scope per player.
+     * @return Scope changes that respect the budget.
+     */
+    private ScopeDiff applyPeerBudget(ScopeDiff diff, int budget) {
+        int count = players.size();
+        if (count > candidateCounts.length) {
+            int newLength = Math.max(count, candidateCounts.length * 2);
+            candidateCounts = new int[newLength];
+            overBudget = new boolean[newLength];
+            candidateRows = Arrays.copyOf(candidateRows, newLength);
+            keptRows = Arrays.copyOf(keptRows, newLength);
+        }
+
+        // How many players each player would be in scope with if there was no budget.
+        for (int i = 0; i < count; i++) {
+            candidateCounts[i] = scopes.count(handleOf(i));
+        }
+        for (int n = 0; n < diff.getLeaveCount(); n++) {
+            candidateCounts[indexOf(diff.getLeaveA(n))]--;
+            candidateCounts[indexOf(diff.getLeaveB(n))]--;
+        }
+        for (int n = 0; n < diff.getJoinCount(); n++) {
+            candidateCounts[indexOf(diff.getJoinA(n))]++;
+            candidateCounts[indexOf(diff.getJoinB(n))]++;
+        }
+
+        boolean anyOverBudget = false;
+        for (int i = 0; i < count; i++) {
+            overBudget[i] = candidateCounts[i] > budget;
+            anyOverBudget |= overBudget[i];
+        }
+        if (!anyOverBudget) {
+            return diff;
+        }
+
+        // Only players over budget need their candidates written out.
+        rowWords = (count + 63) >>> 6;
+        for (int i = 0; i < count; i++) {
+            if (!overBudget[i])
+                continue;
+            candidateRows[i] = clearRow(candidateRows[i]);
+            keptRows[i] = clearRow(keptRows[i]);
+            visiting = i;
+            scopes.forEach(handleOf(i), candidateVisitor);
+        }
+        for (int n = 0; n < diff.getLeaveCount(); n++) {
+            int a = indexOf(diff.getLeaveA(n));
+            int b = indexOf(diff.getLeaveB(n));
+            if (overBudget[a]) clearBit(candidateRows[a], b);
+            if (overBudget[b]) clearBit(candidateRows[b], a);
+        }
+        for (int n = 0; n < diff.getJoinCount(); n++) {
+            int a = indexOf(diff.getJoinA(n));
+            int b = indexOf(diff.getJoinB(n));
+            if (overBudget[a]) setBit(candidateRows[a], b);
+            if (overBudget[b]) setBit(candidateRows[b], a);
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (overBudget[i]) {
+                keepTopCandidates(i, budget);
+            }
+        }
+
+        budgetDiff.clear();
+        for (int n = 0; n < diff.getLeaveCount(); n++) {
+            budgetDiff.addLeave(diff.getLeaveA(n), diff.getLeaveB(n));
+        }
+        for (int n = 0; n < diff.getJoinCount(); n++) {
+            int a = indexOf(diff.getJoinA(n));
+            int b = indexOf(diff.getJoinB(n));
+            if (isKept(a, b)) {
+                budgetDiff.addJoin(diff.getJoinA(n), diff.getJoinB(n));
+            }
+        }
+
+        // Existing pairs may have been pushed out by closer players.
+        for (int i = 0; i < count; i++) {
+            if (!overBudget[i])
+                continue;
+            visiting = i;
+            scopes.forEach(handleOf(i), pushedOutVisitor);
+        }
+        return budgetDiff;
+    }
+
+    private void visitCandidate(int handle) {
+        int j = indexOf(handle);
+        if (j >= 0) {
+            setBit(candidateRows[visiting], j);
+        }
+    }
+
+    private void visitPushedOut(int handle) {
+        int j = indexOf(handle);
+        // Pairs where both players are over budget get checked from the lower index.
+        if (j < 0 || (overBudget[j] && j < visiting) || !getBit(candidateRows[visiting], j))
+            return;
+        if (!isKept(visiting, j)) {
+            budgetDiff.addLeave(handleOf(visiting), handle);
+        }
+    }
+
+    /**
+     * Mark a player's <code>budget</code> highest priority candidates as kept.
+     * Ties go to the candidate with the lower index.
+     */
+    private void keepTopCandidates(int i, int budget) {
+        if (budget > topIndices.length) {
+            topIndices = new int[budget];
+            topPriorities = new double[budget];
+        }
+        WebSpeakPlayer player = players.get(i);
+        long[] candidates = candidateRows[i];
+        int kept = 0;
+
+        for (int word = 0; word < rowWords; word++) {
+            long bits = candidates[word];
+            while (bits != 0) {
+                int j = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                double priority = player.getScopePriority(players.get(j));
+                if (kept == budget && priority <= topPriorities[kept - 1])
+                    continue;
+                // Insert in descending order, dropping the lowest if full.
+                int n = kept < budget ? kept++ : kept - 1;
+                while (n > 0 && topPriorities[n - 1] < priority) {
+                    topIndices[n] = topIndices[n - 1];
+                    topPriorities[n] = topPriorities[n - 1];
+                    n--;
+                }
+                topIndices[n] = j;
+                topPriorities[n] = priority;
+            }
+        }
+
+        for (int n = 0; n < kept; n++) {
+            setBit(keptRows[i], topIndices[n]);
+        }
+    }
+
+    private boolean isKept(int a, int b) {
+        return (!overBudget[a] || getBit(keptRows[a], b)) && (!overBudget[b] || getBit(keptRows[b], a));
+    }
+
+    private long[] clearRow(long[] row) {
+        if (row == null || row.length < rowWords) {
+            return new long[rowWords];
+        }
+        Arrays.fill(row, 0, rowWords, 0);
+        return row;
+    }
+
+    private static boolean getBit(long[] row, int index) {
+        return (row[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] row, int index) {
+        row[index >>> 6] |= 1L << index;
+    }
+
+    private static void clearBit(long[] row, int index) {
+        row[index >>> 6] &= ~(1L << index);
+    }
+
+    private static long pairKey(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+}
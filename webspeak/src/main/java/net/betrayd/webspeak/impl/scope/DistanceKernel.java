@@ -0,0 +1,104 @@
+package net.betrayd.webspeak.impl.scope;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.betrayd.webspeak.ScopeBatch;
+
+/**
+ * Tests one point against a block of candidate points held in parallel
+ * coordinate arrays. The fastest kernel available on the running JVM is picked
+ * once at startup.
+ *
+ * @implNote If the <code>jdk.incubator.vector</code> module is present (the JVM
+ *           was started with <code>--add-modules jdk.incubator.vector</code>),
+ *           a SIMD kernel is used. Otherwise this falls back to a scalar loop.
+ *           The SIMD kernel is built from its own source set, since it's the only
+ *           code that needs the incubator module to compile.
+ */
+public abstract class DistanceKernel {
+
+    /**
+     * Max number of candidates in a single block, so hits fit in a
+     * <code>long</code>.
+     */
+    public static final int BLOCK_SIZE = 64;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistanceKernel.class);
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final DistanceKernel INSTANCE = load();
+
+    /**
+     * Get the best kernel available on this JVM.
+     * @return Distance kernel.
+     */
+    public static DistanceKernel get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Check whether {@link #get} returns the SIMD kernel. Gathering candidates
+     * into blocks is only worth it if it does; a plain loop over the pairs is
+     * just as fast as the scalar kernel.
+     * 
+     * @return If the SIMD kernel was loaded.
+     */
+    public static boolean isVectorized() {
+        return !(INSTANCE instanceof ScalarDistanceKernel);
+    }
+
+    private static DistanceKernel load() {
+        var vectorModule = ModuleLayer.boot().findModule(VECTOR_MODULE);
+        if (vectorModule.isPresent()) {
+            try {
+                // module-info can't require the incubator module without warning on every build.
+                DistanceKernel.class.getModule().addReads(vectorModule.get());
+                return (DistanceKernel) Class.forName(DistanceKernel.class.getPackageName() + ".VectorDistanceKernel")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LOGGER.warn("Unable to load SIMD distance kernel. Falling back to scalar.", e);
+            }
+        }
+        return new ScalarDistanceKernel();
+    }
+
+    /**
+     * Arrays to gather a block of candidates into before testing them.
+     */
+    public static final class Block {
+        public final double[] x = new double[BLOCK_SIZE];
+        public final double[] y = new double[BLOCK_SIZE];
+        public final double[] z = new double[BLOCK_SIZE];
+        public final double[] limitsSquared = new double[BLOCK_SIZE];
+    }
+
+    /**
+     * Get a block to gather a batch's candidates into. Batches built by the
+     * server carry their own, so this only allocates for other batches.
+     * 
+     * @param batch Batch that's being evaluated.
+     * @return A block that's only used by this batch.
+     */
+    public static Block getBlock(ScopeBatch batch) {
+        return batch instanceof ChannelScopeBatch channelBatch ? channelBatch.getDistanceBlock() : new Block();
+    }
+
+    /**
+     * Find which candidates are within range of a point.
+     * 
+     * @param px            Point X.
+     * @param py            Point Y.
+     * @param pz            Point Z.
+     * @param x             Candidate X coordinates.
+     * @param y             Candidate Y coordinates.
+     * @param z             Candidate Z coordinates.
+     * @param limitsSquared Squared max distance of each candidate.
+     * @param count         Number of candidates. No more than
+     *                      {@link #BLOCK_SIZE}.
+     * @return A bitmask with bit <code>i</code> set if candidate <code>i</code>
+     *         is within its limit.
+     */
+    public abstract long withinRange(double px, double py, double pz, double[] x, double[] y, double[] z,
+            double[] limitsSquared, int count);
+}
@@ -0,0 +1,22 @@
+package net.betrayd.webspeak.impl.scope;
+
+/**
+ * A distance kernel that tests one candidate at a time.
+ */
+public class ScalarDistanceKernel extends DistanceKernel {
+
+    @Override
+    public long withinRange(double px, double py, double pz, double[] x, double[] y, double[] z,
+            double[] limitsSquared, int count) {
+        long hits = 0;
+        for (int i = 0; i < count; i++) {
+            double dx = x[i] - px;
+            double dy = y[i] - py;
+            double dz = z[i] - pz;
+            if (dx * dx + dy * dy + dz * dz <= limitsSquared[i]) {
+                hits |= 1L << i;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,78 @@
+package net.betrayd.webspeak.impl.scope;
+
+import java.util.Arrays;
+
+/**
+ * A set of scope changes computed for a single channel, stored as pairs of
+ * player handles. Computing a diff doesn't touch any server state, so it can
+ * be done off the tick thread and applied later. Diffs are meant to be cleared
+ * and reused every tick.
+ */
+public class ScopeDiff {
+    private int[] joins = new int[16];
+    private int joinCount;
+    private int[] leaves = new int[16];
+    private int leaveCount;
+
+    public void addJoin(int a, int b) {
+        if (joinCount * 2 == joins.length) {
+            joins = Arrays.copyOf(joins, joins.length * 2);
+        }
+        joins[joinCount * 2] = a;
+        joins[joinCount * 2 + 1] = b;
+        joinCount++;
+    }
+
+    public void addLeave(int a, int b) {
+        if (leaveCount * 2 == leaves.length) {
+            leaves = Arrays.copyOf(leaves, leaves.length * 2);
+        }
+        leaves[leaveCount * 2] = a;
+        leaves[leaveCount * 2 + 1] = b;
+        leaveCount++;
+    }
+
+    /**
+     * Get the number of pairs that should join each other's scope.
+     * @return Join count.
+     */
+    public int getJoinCount() {
+        return joinCount;
+    }
+
+    public int getJoinA(int index) {
+        return joins[index * 2];
+    }
+
+    public int getJoinB(int index) {
+        return joins[index * 2 + 1];
+    }
+
+    /**
+     * Get the number of pairs that should leave each other's scope.
+     * @return Leave count.
+     */
+    public int getLeaveCount() {
+        return leaveCount;
+    }
+
+    public int getLeaveA(int index) {
+        return leaves[index * 2];
+    }
+
+    public int getLeaveB(int index) {
+        return leaves[index * 2 + 1];
+    }
+
+    public boolean isEmpty() {
+        return joinCount == 0 && leaveCount == 0;
+    }
+
+    /**
+     * Remove all changes from this diff.
+     */
+    public void clear() {
+        joinCount = 0;
+        leaveCount = 0;
+    }
+}
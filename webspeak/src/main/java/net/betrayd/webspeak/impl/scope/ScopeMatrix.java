@@ -0,0 +1,212 @@
+package net.betrayd.webspeak.impl.scope;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import net.betrayd.webspeak.WebSpeakPlayer;
+
+/**
+ * A symmetric relation between player handles, stored as one bitset row per
+ * handle. Looking up a pair is a single bit test, and clearing a handle only
+ * costs as much as the length of its row.
+ *
+ * @implNote Rows are allocated lazily and only grow as long as the largest
+ *           handle set in them, so sparse matrices stay small. The matrix
+ *           remembers which rows changed since the last {@link #publish}, so
+ *           snapshots only have to copy those.
+ */
+public class ScopeMatrix {
+    private static final long[] EMPTY_ROW = new long[0];
+
+    private long[][] rows = new long[16][];
+    private int size;
+
+    private long[][] publishedRows = new long[0][];
+    private int[] changedRows = new int[16];
+    private int changedRowCount;
+    private boolean[] rowChanged = new boolean[16];
+
+    /**
+     * Check if two handles are related.
+     * @param a Handle A.
+     * @param b Handle B.
+     * @return If the bit is set.
+     */
+    public boolean get(int a, int b) {
+        long[] row = getRow(a);
+        int word = b >>> 6;
+        return word < row.length && (row[word] & (1L << b)) != 0;
+    }
+
+    /**
+     * Relate two handles.
+     * @param a Handle A.
+     * @param b Handle B.
+     * @return If the relation did not already exist.
+     */
+    public boolean set(int a, int b) {
+        if (get(a, b)) {
+            return false;
+        }
+        setBit(a, b);
+        setBit(b, a);
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove the relation between two handles.
+     * @param a Handle A.
+     * @param b Handle B.
+     * @return If the relation existed.
+     */
+    public boolean clear(int a, int b) {
+        if (!get(a, b)) {
+            return false;
+        }
+        clearBit(a, b);
+        clearBit(b, a);
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove all relations of a handle.
+     * @param handle Handle to clear.
+     * @return If the handle had any relations.
+     */
+    public boolean clearAll(int handle) {
+        long[] row = getRow(handle);
+        boolean found = false;
+        for (int word = 0; word < row.length; word++) {
+            long bits = row[word];
+            while (bits != 0) {
+                int other = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (other != handle) {
+                    clearBit(other, handle);
+                }
+                size--;
+                found = true;
+            }
+            row[word] = 0;
+        }
+        if (found) {
+            markChanged(handle);
+        }
+        return found;
+    }
+
+    /**
+     * Call a function on every handle related to a given handle.
+     * @param handle   Handle to check.
+     * @param consumer Called with each related handle.
+     */
+    public void forEach(int handle, IntConsumer consumer) {
+        long[] row = getRow(handle);
+        for (int word = 0; word < row.length; word++) {
+            long bits = row[word];
+            while (bits != 0) {
+                consumer.accept((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Count the number of handles related to a given handle.
+     * @param handle Handle to check.
+     * @return Number of relations.
+     */
+    public int count(int handle) {
+        long[] row = getRow(handle);
+        int count = 0;
+        for (long bits : row) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * Get the total number of relations.
+     * @return Number of related pairs.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if anything changed since the last snapshot was published.
+     * @return If there are unpublished changes.
+     */
+    public boolean hasChanges() {
+        return changedRowCount > 0;
+    }
+
+    /**
+     * Take an immutable snapshot of the matrix. Rows that haven't changed since
+     * the last snapshot are shared with it.
+     * 
+     * @param epoch   Epoch to tag the snapshot with.
+     * @param players Array mapping handles to players at the time of the
+     *                snapshot. Must not be modified afterwards.
+     * @return The snapshot.
+     */
+    public ScopeSnapshot publish(long epoch, WebSpeakPlayer[] players) {
+        long[][] snapshotRows = Arrays.copyOf(publishedRows, rows.length);
+        for (int i = 0; i < changedRowCount; i++) {
+            int handle = changedRows[i];
+            long[] row = rows[handle];
+            snapshotRows[handle] = row != null ? row.clone() : null;
+            rowChanged[handle] = false;
+        }
+        changedRowCount = 0;
+        publishedRows = snapshotRows;
+        return new ScopeSnapshot(epoch, snapshotRows, size, players);
+    }
+
+    private void markChanged(int handle) {
+        if (handle >= rowChanged.length) {
+            rowChanged = Arrays.copyOf(rowChanged, Math.max(handle + 1, rowChanged.length * 2));
+        }
+        if (rowChanged[handle]) {
+            return;
+        }
+        rowChanged[handle] = true;
+        if (changedRowCount == changedRows.length) {
+            changedRows = Arrays.copyOf(changedRows, changedRows.length * 2);
+        }
+        changedRows[changedRowCount++] = handle;
+    }
+
+    private long[] getRow(int handle) {
+        if (handle >= rows.length) {
+            return EMPTY_ROW;
+        }
+        long[] row = rows[handle];
+        return row != null ? row : EMPTY_ROW;
+    }
+
+    private void setBit(int a, int b) {
+        if (a >= rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(a + 1, rows.length * 2));
+        }
+        long[] row = rows[a];
+        int word = b >>> 6;
+        if (row == null || word >= row.length) {
+            row = row == null ? new long[word + 1] : Arrays.copyOf(row, Math.max(word + 1, row.length * 2));
+            rows[a] = row;
+        }
+        row[word] |= 1L << b;
+        markChanged(a);
+    }
+
+    private void clearBit(int a, int b) {
+        long[] row = getRow(a);
+        int word = b >>> 6;
+        if (word < row.length) {
+            row[word] &= ~(1L << b);
+            markChanged(a);
+        }
+    }
+}
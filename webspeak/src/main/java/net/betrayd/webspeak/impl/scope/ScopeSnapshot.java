@@ -0,0 +1,102 @@
+package net.betrayd.webspeak.impl.scope;
+
+import java.util.function.IntConsumer;
+
+import net.betrayd.webspeak.WebSpeakPlayer;
+
+/**
+ * An immutable copy of a {@link ScopeMatrix}, along with the players each
+ * handle belonged to when it was taken. Safe to read from any thread.
+ */
+public final class ScopeSnapshot {
+    public static final ScopeSnapshot EMPTY = new ScopeSnapshot(0, new long[0][], 0, new WebSpeakPlayer[0]);
+
+    private final long epoch;
+    private final long[][] rows;
+    private final int size;
+    private final WebSpeakPlayer[] players;
+
+    ScopeSnapshot(long epoch, long[][] rows, int size, WebSpeakPlayer[] players) {
+        this.epoch = epoch;
+        this.rows = rows;
+        this.size = size;
+        this.players = players;
+    }
+
+    /**
+     * Get the epoch this snapshot was published in. Increases every time a new
+     * snapshot is published.
+     * 
+     * @return Snapshot epoch.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Check if two handles were related.
+     * @param a Handle A.
+     * @param b Handle B.
+     * @return If the bit is set.
+     */
+    public boolean get(int a, int b) {
+        if (a >= rows.length || rows[a] == null) {
+            return false;
+        }
+        long[] row = rows[a];
+        int word = b >>> 6;
+        return word < row.length && (row[word] & (1L << b)) != 0;
+    }
+
+    /**
+     * Call a function on every handle related to a given handle.
+     * @param handle   Handle to check.
+     * @param consumer Called with each related handle.
+     */
+    public void forEach(int handle, IntConsumer consumer) {
+        if (handle >= rows.length || rows[handle] == null) {
+            return;
+        }
+        long[] row = rows[handle];
+        for (int word = 0; word < row.length; word++) {
+            long bits = row[word];
+            while (bits != 0) {
+                consumer.accept((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Count the number of handles related to a given handle.
+     * @param handle Handle to check.
+     * @return Number of relations.
+     */
+    public int count(int handle) {
+        if (handle >= rows.length || rows[handle] == null) {
+            return 0;
+        }
+        int count = 0;
+        for (long bits : rows[handle]) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * Get the total number of relations.
+     * @return Number of related pairs.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the player that had a handle when this snapshot was taken.
+     * @param handle Handle to look up.
+     * @return The player, or <code>null</code> if the handle wasn't in use.
+     */
+    public WebSpeakPlayer getPlayer(int handle) {
+        return handle < players.length ? players[handle] : null;
+    }
+}
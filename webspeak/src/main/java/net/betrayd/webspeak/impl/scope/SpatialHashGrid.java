@@ -0,0 +1,235 @@
+package net.betrayd.webspeak.impl.scope;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform spatial hash grid used as a broadphase for scope checks. Entries
+ * are dense int IDs (usually indices into a player list), and the grid is
+ * meant to be cleared and rebuilt every tick without allocating.
+ *
+ * @implNote Cells are keyed by packing the three cell coordinates into a long
+ *           and stored in an open-addressing table. Entries in the same cell
+ *           form a linked list through the <code>next</code> array.
+ */
+public class SpatialHashGrid {
+    private static final int COORD_BITS = 21;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+
+    private double cellSize;
+    private double inverseCellSize;
+
+    // Per-entry data, indexed by entry ID.
+    private double[] posX = new double[16];
+    private double[] posY = new double[16];
+    private double[] posZ = new double[16];
+    private int[] cellX = new int[16];
+    private int[] cellY = new int[16];
+    private int[] cellZ = new int[16];
+    private int[] next = new int[16];
+
+    // Cell table
+    private long[] cellKeys = new long[64];
+    private int[] cellHeads = new int[64];
+    private int cellCount;
+
+    /**
+     * Create a spatial hash grid.
+     * @param cellSize Width of each cell. Should be at least the max range of
+     *                 any query that will be made against the grid.
+     */
+    public SpatialHashGrid(double cellSize) {
+        setCellSize(cellSize);
+        Arrays.fill(cellHeads, -1);
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Set the width of each cell. Entries already in the grid are not moved, so
+     * the grid should be rebuilt after calling this.
+     *
+     * @param cellSize New cell size. If this is not a positive, finite number,
+     *                 the grid will place every entry in the same cell.
+     * @return If the cell size changed.
+     */
+    public boolean setCellSize(double cellSize) {
+        if (this.cellSize == cellSize) {
+            return false;
+        }
+        this.cellSize = cellSize;
+        if (cellSize > 0 && Double.isFinite(cellSize)) {
+            inverseCellSize = 1 / cellSize;
+        } else {
+            inverseCellSize = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Remove all entries from the grid.
+     */
+    public void clear() {
+        if (cellCount > 0) {
+            Arrays.fill(cellHeads, -1);
+            cellCount = 0;
+        }
+    }
+
+    /**
+     * Insert an entry into the grid. Each ID should only be inserted once between
+     * calls to {@link #clear}.
+     *
+     * @param id ID of the entry. Must be non-negative.
+     * @param x  Entry X position.
+     * @param y  Entry Y position.
+     * @param z  Entry Z position.
+     */
+    public void insert(int id, double x, double y, double z) {
+        ensureEntryCapacity(id + 1);
+        int cx = toCell(x);
+        int cy = toCell(y);
+        int cz = toCell(z);
+
+        posX[id] = x;
+        posY[id] = y;
+        posZ[id] = z;
+        cellX[id] = cx;
+        cellY[id] = cy;
+        cellZ[id] = cz;
+
+        int slot = findOrAddSlot(packKey(cx, cy, cz));
+        next[id] = cellHeads[slot];
+        cellHeads[slot] = id;
+    }
+
+    public double getX(int id) {
+        return posX[id];
+    }
+
+    public double getY(int id) {
+        return posY[id];
+    }
+
+    public double getZ(int id) {
+        return posZ[id];
+    }
+
+    /**
+     * Call a function on every entry in the 27 cells surrounding an entry,
+     * including the entry itself.
+     *
+     * @param id       Entry to search around.
+     * @param consumer Called with the ID of each nearby entry.
+     */
+    public void forEachNeighbor(int id, IntConsumer consumer) {
+        int cx = cellX[id];
+        int cy = cellY[id];
+        int cz = cellZ[id];
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    int slot = findSlot(packKey(cx + dx, cy + dy, cz + dz));
+                    if (slot < 0)
+                        continue;
+                    for (int e = cellHeads[slot]; e >= 0; e = next[e]) {
+                        consumer.accept(e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if two entries are in the same or adjacent cells, meaning
+     * {@link #forEachNeighbor} would have found one from the other.
+     *
+     * @param a Entry A.
+     * @param b Entry B.
+     * @return If the entries are neighbors.
+     */
+    public boolean areNeighbors(int a, int b) {
+        return Math.abs(cellX[a] - cellX[b]) <= 1
+                && Math.abs(cellY[a] - cellY[b]) <= 1
+                && Math.abs(cellZ[a] - cellZ[b]) <= 1;
+    }
+
+    private int toCell(double value) {
+        return (int) Math.floor(value * inverseCellSize);
+    }
+
+    // Coordinates that don't fit in 21 bits wrap around. This can only cause
+    // far-away cells to share a key, which the narrowphase will filter out.
+    private static long packKey(int x, int y, int z) {
+        return ((x & COORD_MASK) << (COORD_BITS * 2)) | ((y & COORD_MASK) << COORD_BITS) | (z & COORD_MASK);
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int findSlot(long key) {
+        int mask = cellKeys.length - 1;
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            if (cellHeads[slot] < 0)
+                return -1;
+            if (cellKeys[slot] == key)
+                return slot;
+        }
+    }
+
+    private int findOrAddSlot(long key) {
+        if ((cellCount + 1) * 2 > cellKeys.length) {
+            growCells();
+        }
+        int mask = cellKeys.length - 1;
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            if (cellHeads[slot] < 0) {
+                cellKeys[slot] = key;
+                cellCount++;
+                return slot;
+            }
+            if (cellKeys[slot] == key)
+                return slot;
+        }
+    }
+
+    private void growCells() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+
+        cellKeys = new long[oldKeys.length * 2];
+        cellHeads = new int[oldHeads.length * 2];
+        Arrays.fill(cellHeads, -1);
+
+        int mask = cellKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] < 0)
+                continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (cellHeads[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            cellKeys[slot] = oldKeys[i];
+            cellHeads[slot] = oldHeads[i];
+        }
+    }
+
+    private void ensureEntryCapacity(int capacity) {
+        if (capacity <= next.length)
+            return;
+        int newLength = Math.max(capacity, next.length * 2);
+        posX = Arrays.copyOf(posX, newLength);
+        posY = Arrays.copyOf(posY, newLength);
+        posZ = Arrays.copyOf(posZ, newLength);
+        cellX = Arrays.copyOf(cellX, newLength);
+        cellY = Arrays.copyOf(cellY, newLength);
+        cellZ = Arrays.copyOf(cellZ, newLength);
+        next = Arrays.copyOf(next, newLength);
+    }
+}
@@ -1,5 +1,7 @@
 package net.betrayd.webspeak.util;
 
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+
 /**
  * <p>
  * Represents a "modifier" that can be applied to player audio, such as muting
@@ -18,6 +20,7 @@ package net.betrayd.webspeak.util;
  * @param spatialized Whether to spatialize the target player's audio.
  *                    <b>default: true</code>
  */
+@GenerateJsonCodec
 public record AudioModifier(Boolean silenced, Boolean spatialized) {
     public boolean isMuted() {
         return silenced != null ? silenced : false;
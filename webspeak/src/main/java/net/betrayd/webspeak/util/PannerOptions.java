@@ -2,9 +2,12 @@ package net.betrayd.webspeak.util;
 
 import com.google.gson.annotations.SerializedName;
 
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+
 /**
  * Config parameters to send to the client about how to handle audio spatialization.
  */
+@GenerateJsonCodec
 public class PannerOptions {
 
     public static enum PanningModelType {
@@ -1,5 +1,7 @@
 package net.betrayd.webspeak.util;
 
+import net.betrayd.webspeak.impl.net.codec.GenerateJsonCodec;
+
 /**
  * Contains human-readable metadata about a given player.
  * 
@@ -7,6 +9,7 @@ package net.betrayd.webspeak.util;
  * @param avatar The URL of an avatar image to use for the player. Should be
  *               square and small in size.
  */
+@GenerateJsonCodec
 public record WSPlayerListEntry(String name, String avatar) {
     public WSPlayerListEntry withName(String name) {
         return new WSPlayerListEntry(name, avatar);
@@ -99,7 +99,7 @@ public record WebSpeakVector(double x, double y, double z) {
 
     public WebSpeakVector cross(double x, double y, double z) {
         return new WebSpeakVector(
-                this.x * z - this.z * y,
+                this.y * z - this.z * y,
                 this.z * x - this.x * z,
                 this.x * y - this.y * x);
     }
@@ -0,0 +1,24 @@
+package net.betrayd.webspeak;
+
+import net.betrayd.webspeak.impl.ServerBackend;
+
+/**
+ * Access to package-private server internals for tests in other packages.
+ */
+public final class ServerTestAccess {
+    private ServerTestAccess() {
+    }
+
+    /**
+     * Start a server on a given backend.
+     *
+     * @param server  Server to start.
+     * @param backend Backend to use. Must belong to the server.
+     * @param port    The port to start on, or <code>-1</code> if the backend
+     *                doesn't use one.
+     * @throws Exception If something bad happens while starting the server.
+     */
+    public static void start(WebSpeakServer server, ServerBackend backend, int port) throws Exception {
+        server.start(backend, port);
+    }
+}
@@ -0,0 +1,66 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.impl.net.BinaryProtocol;
+import net.betrayd.webspeak.impl.net.BinaryWriter;
+import net.betrayd.webspeak.impl.net.WebSpeakNet.UnknownPacketException;
+import net.betrayd.webspeak.impl.net.packets.TransformPackets;
+
+public class BinaryProtocolTest {
+
+    @Test
+    void testVarIntRoundTrip() {
+        int[] values = { 0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, -1 };
+        BinaryWriter writer = new BinaryWriter(1);
+        for (int value : values) {
+            writer.writeVarInt(value);
+        }
+        ByteBuffer buffer = writer.toByteBuffer();
+        for (int value : values) {
+            assertEquals(value, BinaryProtocol.readVarInt(buffer));
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void testDefinitionAndPacket() {
+        int number = BinaryProtocol.getNumber(TransformPackets.COMPACT_TRANSFORM_BATCH_S2C.getId());
+        assertTrue(number > BinaryProtocol.DEFINE);
+
+        ByteBuffer definition = BinaryProtocol.writeDefinition(TransformPackets.COMPACT_TRANSFORM_BATCH_S2C);
+        assertEquals(BinaryProtocol.DEFINE, BinaryProtocol.readVarInt(definition));
+        assertEquals(number, BinaryProtocol.readVarInt(definition));
+        assertEquals(BinaryProtocol.FORMAT_BINARY, definition.get());
+        assertEquals("compactTransform", BinaryProtocol.readUtf8(definition));
+
+        byte[] payload = { 1, 2, 3, (byte) 0xFF };
+        ByteBuffer packet = BinaryProtocol.writePacket(TransformPackets.COMPACT_TRANSFORM_BATCH_S2C, payload);
+        assertEquals(number, BinaryProtocol.readVarInt(packet));
+        byte[] read = new byte[packet.remaining()];
+        packet.get(read);
+        assertArrayEquals(payload, read);
+    }
+
+    @Test
+    void testUndefinedPackets() {
+        BinaryProtocol.Connection connection = new BinaryProtocol.Connection();
+        assertTrue(connection.markDefined(3));
+        assertFalse(connection.markDefined(3));
+
+        BinaryWriter undefined = new BinaryWriter();
+        undefined.writeVarInt(5);
+        assertThrows(IllegalArgumentException.class, () -> connection.applyPacket(null, undefined.toByteBuffer()));
+
+        BinaryWriter unknown = new BinaryWriter();
+        unknown.writeVarInt(BinaryProtocol.DEFINE);
+        unknown.writeVarInt(1);
+        unknown.writeByte(BinaryProtocol.FORMAT_TEXT);
+        unknown.writeUtf8("notAPacket");
+        assertThrows(UnknownPacketException.class, () -> connection.applyPacket(null, unknown.toByteBuffer()));
+    }
+}
@@ -0,0 +1,29 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.impl.net.C2SPackets;
+import net.betrayd.webspeak.impl.net.packets.KeepAliveC2SPacket;
+
+public class C2SPacketsTest {
+
+    @Test
+    void testLookupInPlace() {
+        for (String id : C2SPackets.REGISTRY.keySet()) {
+            String frame = "x" + id + ";{}";
+            assertSame(C2SPackets.get(id), C2SPackets.get(frame, 1, 1 + id.length()));
+        }
+        assertNull(C2SPackets.get("keepAliv;", 0, 8));
+        assertNull(C2SPackets.get("keepAlivee;", 0, 10));
+        assertNull(C2SPackets.get(";", 0, 0));
+    }
+
+    @Test
+    void testReadFromOffset() {
+        String frame = "keepAlive;{\"timestamp\":1234}";
+        KeepAliveC2SPacket packet = KeepAliveC2SPacket.PACKET.read(frame, frame.indexOf(';') + 1);
+        assertEquals(1234, packet.timestamp());
+    }
+}
@@ -0,0 +1,156 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import net.betrayd.webspeak.WebSpeakFlags;
+import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.impl.TransformTracker;
+import net.betrayd.webspeak.test.TestServer.TestConnection;
+import net.betrayd.webspeak.test.TestServer.TestPlayer;
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+public class DeadReckoningTest {
+
+    /**
+     * A player moving along the X axis at a constant speed, in real time.
+     */
+    private static class MovingPlayer extends TestPlayer {
+        double startX;
+        long startTime = System.nanoTime();
+        double speed;
+
+        MovingPlayer(WebSpeakServer server, String playerId, String sessionId) {
+            super(server, playerId, sessionId);
+        }
+
+        double getX(long time) {
+            return startX + speed * (time - startTime) / 1e9d;
+        }
+
+        @Override
+        public WebSpeakVector getLocation() {
+            return new WebSpeakVector(getX(System.nanoTime()), y, z);
+        }
+
+        void turnAround() {
+            long now = System.nanoTime();
+            startX = getX(now);
+            startTime = now;
+            speed = -speed;
+        }
+    }
+
+    private static final String TRANSFORM_PREFIX = "updateTransform;";
+
+    /**
+     * Get every transform of a player a client was sent since a given message.
+     */
+    private static List<JsonObject> getTransforms(TestConnection connection, int from, TestPlayer player) {
+        return connection.sent.subList(from, connection.sent.size()).stream()
+                .filter(message -> message.startsWith(TRANSFORM_PREFIX))
+                .map(message -> JsonParser.parseString(message.substring(TRANSFORM_PREFIX.length())).getAsJsonObject())
+                .filter(transform -> transform.get("playerID").getAsString().equals(player.getPlayerId()))
+                .toList();
+    }
+
+    private static void sleepTick() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testExtrapolatedDistance() {
+        TransformTracker tracker = new TransformTracker();
+        tracker.setPolled(0, 0, 0, 0, 0);
+        tracker.set(0, 1, 0, 0, 0, 0, 1, 0, 1, 0);
+        tracker.estimateVelocity(0, 1, 0, 0, 100_000_000L);
+        assertEquals(10, tracker.getVelocity(0).x(), 1e-9);
+
+        // Clients extrapolate to 2 after another tenth of a second.
+        assertEquals(0, tracker.extrapolatedDistanceSquared(0, 2, 0, 0, 200_000_000L), 1e-9);
+        assertEquals(0.25, tracker.extrapolatedDistanceSquared(0, 2.5, 0, 0, 200_000_000L), 1e-9);
+
+        // Without a velocity, the sent position is used as is.
+        tracker.set(0, 1, 0, 0, 0, 0, 1, 0, 1, 0);
+        assertEquals(1, tracker.extrapolatedDistanceSquared(0, 2, 0, 0, 200_000_000L), 1e-9);
+    }
+
+    @Test
+    void testResendsOnlyPastThreshold() {
+        WebSpeakServer server = TestServer.start();
+        server.setFlag(WebSpeakFlags.DEAD_RECKONING, true);
+        // Leave some room for the tick thread not waking up exactly on time.
+        server.setFlag(WebSpeakFlags.DEAD_RECKONING_POSITION_ERROR, 0.5f);
+        MovingPlayer player = server.createPlayer(MovingPlayer::new);
+        player.speed = 20;
+        TestConnection connection = new TestConnection(server, player);
+        player.setConnection(connection);
+        server.onWebsocketConnected(connection);
+
+        // The first transform has no velocity, the second estimates it.
+        for (int i = 0; i < 3; i++) {
+            server.tick();
+            sleepTick();
+        }
+
+        // Clients extrapolate the player to exactly where it is.
+        int from = connection.sent.size();
+        for (int i = 0; i < 5; i++) {
+            server.tick();
+            sleepTick();
+        }
+        assertEquals(0, getTransforms(connection, from, player).size());
+
+        player.turnAround();
+        sleepTick();
+        sleepTick();
+        server.tick();
+        List<JsonObject> transforms = getTransforms(connection, from, player);
+        assertEquals(1, transforms.size());
+        // Estimated across the turn, so somewhere between the old and new speeds.
+        assertTrue(transforms.get(0).getAsJsonArray("velocity").get(0).getAsDouble() < 10);
+    }
+
+    @Test
+    void testDeferredTransformsAreExtrapolated() {
+        WebSpeakServer server = TestServer.start();
+        server.setFlag(WebSpeakFlags.DEAD_RECKONING, true);
+        server.setFlag(WebSpeakFlags.TRANSFORM_LOD_INTERVAL, 8);
+
+        MovingPlayer mover = server.createPlayer(MovingPlayer::new);
+        mover.speed = 20;
+        mover.setConnection(new TestConnection(server, mover));
+        server.onWebsocketConnected(mover.getConnection());
+        // Near the edge of the range, so the mover's updates to it are held back.
+        TestPlayer listener = TestServer.connect(server, 0, 0, server.getMaxAudioRange() * 0.75);
+
+        int checked = 0;
+        for (int i = 0; i < 20; i++) {
+            int from = listener.getTestConnection().sent.size();
+            server.tick();
+            double x = mover.getX(System.nanoTime());
+
+            for (var transform : getTransforms(listener.getTestConnection(), from, mover)) {
+                JsonArray velocity = transform.getAsJsonArray("velocity");
+                if (velocity == null || velocity.get(0).getAsDouble() < 10)
+                    continue;
+                // Sent where the mover is now, not where it was when it was sampled.
+                assertEquals(x, transform.getAsJsonArray("pos").get(0).getAsDouble(), 0.3);
+                checked++;
+            }
+            sleepTick();
+        }
+        assertTrue(checked > 0, "No moving transforms were sent");
+    }
+}
@@ -0,0 +1,51 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.impl.scope.DistanceKernel;
+import net.betrayd.webspeak.impl.scope.ScalarDistanceKernel;
+
+public class DistanceKernelTest {
+
+    @Test
+    void testMatchesScalar() {
+        DistanceKernel kernel = DistanceKernel.get();
+        DistanceKernel scalar = new ScalarDistanceKernel();
+        Random random = new Random(1);
+
+        double[] x = new double[DistanceKernel.BLOCK_SIZE];
+        double[] y = new double[DistanceKernel.BLOCK_SIZE];
+        double[] z = new double[DistanceKernel.BLOCK_SIZE];
+        double[] limits = new double[DistanceKernel.BLOCK_SIZE];
+
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < DistanceKernel.BLOCK_SIZE; i++) {
+                x[i] = random.nextDouble(-50, 50);
+                y[i] = random.nextDouble(-50, 50);
+                z[i] = random.nextDouble(-50, 50);
+                limits[i] = random.nextBoolean() ? 26 * 26 : 28 * 28;
+            }
+            int count = random.nextInt(DistanceKernel.BLOCK_SIZE + 1);
+            double px = random.nextDouble(-20, 20);
+
+            long expected = scalar.withinRange(px, 0, 0, x, y, z, limits, count);
+            assertEquals(expected, kernel.withinRange(px, 0, 0, x, y, z, limits, count));
+            if (count < DistanceKernel.BLOCK_SIZE) {
+                assertEquals(0, expected >>> count);
+            }
+        }
+    }
+
+    @Test
+    void testBoundaryIsInclusive() {
+        double[] x = { 3, 5 };
+        double[] y = { 4, 0 };
+        double[] z = { 0, 0 };
+        double[] limits = { 25, 24.99 };
+        assertEquals(0b01, DistanceKernel.get().withinRange(0, 0, 0, x, y, z, limits, 2));
+    }
+}
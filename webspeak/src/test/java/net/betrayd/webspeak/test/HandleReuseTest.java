@@ -0,0 +1,96 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.impl.HandleSet;
+import net.betrayd.webspeak.impl.TransformTracker;
+import net.betrayd.webspeak.test.TestServer.TestPlayer;
+
+public class HandleReuseTest {
+
+    @Test
+    void testTrackerForgetsRemovedHandles() {
+        TransformTracker tracker = new TransformTracker();
+        tracker.setPolled(70, 0, 0, 0, 0);
+        tracker.set(70, 1, 0, 0, 0, 0, 1, 0, 1, 0);
+        tracker.estimateVelocity(70, 1, 0, 0, 100_000_000L);
+        assertTrue(tracker.isSent(70));
+        assertTrue(tracker.hasVelocity(70));
+
+        tracker.remove(70);
+        assertFalse(tracker.isSent(70));
+        assertFalse(tracker.hasVelocity(70));
+        assertNull(tracker.getVelocity(70));
+        // A new player in the same spot still counts as changed.
+        assertFalse(tracker.matches(70, 1, 0, 0, 0, 0, 1, 0, 1, 0));
+
+        // The new player's velocity isn't estimated from the old player's last poll.
+        tracker.set(70, 50, 0, 0, 0, 0, 1, 0, 1, 0);
+        tracker.estimateVelocity(70, 50, 0, 0, 200_000_000L);
+        assertEquals(0, tracker.getVelocity(70).x(), 0);
+    }
+
+    @Test
+    void testHandleSetReuse() {
+        HandleSet set = new HandleSet(handle -> null);
+        assertTrue(set.add(3));
+        assertTrue(set.add(64));
+        assertTrue(set.add(130));
+        assertFalse(set.add(64));
+        assertEquals(3, set.size());
+
+        // Removing moves the last handle into the gap.
+        set.removeAt(0);
+        assertFalse(set.contains(3));
+        assertEquals(130, set.get(0));
+        assertEquals(64, set.get(1));
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(64));
+        assertFalse(set.contains(130));
+
+        // Handles that share a word with cleared ones can be added again.
+        assertTrue(set.add(65));
+        assertTrue(set.add(64));
+        assertFalse(set.contains(130));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    void testRemovedPlayerHandleIsReused() {
+        WebSpeakServer server = TestServer.start();
+        List<TestPlayer> players = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            players.add(TestServer.connect(server, i * 5, 0, 0));
+        }
+        server.tick();
+
+        TestPlayer removed = players.get(1);
+        int handle = removed.getHandle();
+        server.removePlayer(removed);
+        assertEquals(-1, removed.getHandle());
+
+        TestPlayer replacement = TestServer.connect(server, 5, 0, 0);
+        assertEquals(handle, replacement.getHandle());
+        assertSame(replacement, server.getPlayerByHandle(handle));
+
+        // The replacement starts with none of the removed player's scopes.
+        assertTrue(server.getPlayersInScope(replacement).isEmpty());
+        server.tick();
+        assertTrue(server.areInScope(replacement, players.get(0)));
+        assertFalse(server.areInScope(removed, players.get(0)));
+
+        // Sets of handles see the new player, not the removed one.
+        HandleSet set = new HandleSet(server::getPlayerByHandle);
+        set.add(handle);
+        assertTrue(set.players().contains(replacement));
+        assertFalse(set.players().contains(removed));
+    }
+}
@@ -0,0 +1,84 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+
+import net.betrayd.webspeak.impl.net.codec.InitialStateS2CPacketCodec;
+import net.betrayd.webspeak.impl.net.codec.JsonCodecs;
+import net.betrayd.webspeak.impl.net.codec.PannerOptionsCodec;
+import net.betrayd.webspeak.impl.net.codec.RTCPacketDataCodec;
+import net.betrayd.webspeak.impl.net.codec.RelayDisconnectDataCodec;
+import net.betrayd.webspeak.impl.net.codec.SetAudioModifierS2CPacketCodec;
+import net.betrayd.webspeak.impl.net.codec.UpdateTransformS2CPacketCodec;
+import net.betrayd.webspeak.impl.net.packets.InitialStateS2CPacket;
+import net.betrayd.webspeak.impl.net.packets.LocalPlayerInfoS2CPacket;
+import net.betrayd.webspeak.impl.net.packets.RTCPackets.RTCPacketData;
+import net.betrayd.webspeak.impl.net.packets.SetAudioModifierS2CPacket;
+import net.betrayd.webspeak.impl.net.packets.UpdateTransformS2CPacket;
+import net.betrayd.webspeak.impl.relay.packets.RelayC2SPackets.RelayDisconnectData;
+import net.betrayd.webspeak.util.AudioModifier;
+import net.betrayd.webspeak.util.PannerOptions;
+import net.betrayd.webspeak.util.WSPlayerListEntry;
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+public class JsonCodecTest {
+    private static final Gson GSON = new Gson();
+
+    @Test
+    void testMatchesGson() {
+        UpdateTransformS2CPacket transform = new UpdateTransformS2CPacket("player<1>", new WebSpeakVector(1.5, -2, 1e-7),
+                new WebSpeakVector(0, 0, 1), new WebSpeakVector(0, 1, 0), null);
+        assertEquals(GSON.toJson(transform), UpdateTransformS2CPacketCodec.INSTANCE.write(transform));
+
+        PannerOptions options = new PannerOptions();
+        options.distanceModel = PannerOptions.DistanceModelType.EXPONENTIAL;
+        options.maxDistance = 12.25f;
+        assertEquals(GSON.toJson(options), PannerOptionsCodec.INSTANCE.write(options));
+
+        SetAudioModifierS2CPacket modifier = new SetAudioModifierS2CPacket("a\"b\\c\n\u2028 \u00e9='",
+                new AudioModifier(true, null));
+        assertEquals(GSON.toJson(modifier), SetAudioModifierS2CPacketCodec.INSTANCE.write(modifier));
+
+        RTCPacketData rtc = new RTCPacketData("p", JsonParser.parseString(
+                "{\"sdp\":\"v=0\\r\\n<a>\",\"n\":[1,2.50,null,{}],\"skip\":null,\"ok\":true}"));
+        assertEquals(GSON.toJson(rtc), RTCPacketDataCodec.INSTANCE.write(rtc));
+
+        Map<String, WSPlayerListEntry> entries = new LinkedHashMap<>();
+        entries.put("one", new WSPlayerListEntry("One", "http://a?b=c&d"));
+        entries.put("two", new WSPlayerListEntry("Two", null));
+        InitialStateS2CPacket state = new InitialStateS2CPacket(new LocalPlayerInfoS2CPacket("one", 3), options,
+                entries, List.of(transform));
+        assertEquals(GSON.toJson(state), InitialStateS2CPacketCodec.INSTANCE.write(state));
+
+        assertEquals(GSON.toJson(List.of("a", "b")), JsonCodecs.list(JsonCodecs.STRING).write(List.of("a", "b")));
+    }
+
+    @Test
+    void testRead() {
+        RelayDisconnectData disconnect = RelayDisconnectDataCodec.INSTANCE
+                .read(" { \"extra\": [1, {\"x\": \"}\"}], \"statusCode\": 1000, \"reason\": \"bye \\u0021\\n\" } ");
+        assertEquals(new RelayDisconnectData(1000, "bye !\n"), disconnect);
+
+        RTCPacketData rtc = RTCPacketDataCodec.INSTANCE.read("{\"playerID\":\"p\",\"payload\":{\"a\":[1,2]}}");
+        assertEquals("p", rtc.playerID());
+        assertEquals(JsonParser.parseString("{\"a\":[1,2]}"), rtc.payload());
+
+        UpdateTransformS2CPacket transform = new UpdateTransformS2CPacket("p", new WebSpeakVector(1, 2, 3),
+                new WebSpeakVector(0, 0, 1), new WebSpeakVector(0, 1, 0), new WebSpeakVector(0.5, 0, 0));
+        assertEquals(transform, UpdateTransformS2CPacketCodec.INSTANCE
+                .read(UpdateTransformS2CPacketCodec.INSTANCE.write(transform)));
+
+        assertNull(RTCPacketDataCodec.INSTANCE.read("null"));
+        assertThrows(IllegalArgumentException.class, () -> RelayDisconnectDataCodec.INSTANCE.read("{\"statusCode\":1.5}"));
+        assertThrows(IllegalArgumentException.class, () -> RelayDisconnectDataCodec.INSTANCE.read("{\"reason\":\"a\"} x"));
+        assertThrows(IllegalArgumentException.class, () -> RelayDisconnectDataCodec.INSTANCE.read("{\"reason\" \"a\"}"));
+    }
+}
@@ -0,0 +1,120 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.websocket.api.Callback;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.impl.net.BinaryProtocol;
+import net.betrayd.webspeak.impl.net.OutboundQueue;
+
+public class OutboundQueueTest {
+
+    /**
+     * Holds on to every frame until it's told to finish writing it.
+     */
+    private static class StalledTransport implements OutboundQueue.Transport {
+        final List<String> sent = new ArrayList<>();
+        final List<Callback> pending = new ArrayList<>();
+        int closeCode = -1;
+
+        @Override
+        public void sendText(String text, Callback callback) {
+            sent.add(text);
+            pending.add(callback);
+        }
+
+        @Override
+        public void sendBinary(ByteBuffer data, Callback callback) {
+            sent.add("<" + data.remaining() + " bytes>");
+            binary.add(data);
+            pending.add(callback);
+        }
+
+        @Override
+        public void close(int statusCode, String reason) {
+            closeCode = statusCode;
+        }
+
+        final List<ByteBuffer> binary = new ArrayList<>();
+
+        void finishAll() {
+            List<Callback> callbacks = new ArrayList<>(pending);
+            pending.clear();
+            callbacks.forEach(Callback::succeed);
+        }
+    }
+
+    @Test
+    void testDropsThenResyncs() {
+        StalledTransport transport = new StalledTransport();
+        AtomicInteger resyncs = new AtomicInteger();
+        OutboundQueue queue = new OutboundQueue(transport, "test", 4, 10, 100, resyncs::incrementAndGet);
+
+        queue.sendText("0123456789", false);
+        assertTrue(queue.isCongested());
+
+        queue.sendText("transform", true);
+        queue.sendText("reliable", false);
+        assertEquals(List.of("0123456789"), transport.sent);
+        assertEquals(8, queue.getQueuedBytes());
+
+        transport.finishAll();
+        assertEquals(List.of("0123456789", "reliable"), transport.sent);
+        assertFalse(queue.isCongested());
+        assertEquals(1, resyncs.get());
+
+        transport.finishAll();
+        assertEquals(1, resyncs.get());
+        assertEquals(0, queue.getInFlightBytes());
+    }
+
+    @Test
+    void testDisconnectsPastLimit() {
+        StalledTransport transport = new StalledTransport();
+        OutboundQueue queue = new OutboundQueue(transport, "test", 4, 10, 30, () -> {});
+
+        queue.sendBinary(ByteBuffer.allocate(20), false);
+        queue.sendText("0123456789", false);
+        assertEquals(-1, transport.closeCode);
+        queue.sendText("x", false);
+        assertEquals(StatusCode.TRY_AGAIN_LATER, transport.closeCode);
+
+        queue.sendText("ignored", false);
+        assertEquals(1, transport.sent.size());
+    }
+
+    @Test
+    void testBatch() {
+        StalledTransport transport = new StalledTransport();
+        OutboundQueue queue = new OutboundQueue(transport, "test", 1000, 2000, 4000, () -> {});
+
+        queue.startBatch(true);
+        queue.sendText("a;1", false);
+        queue.sendBinary(ByteBuffer.wrap(new byte[] { 'b', ';', '2' }), true);
+        assertTrue(transport.sent.isEmpty());
+        queue.flushBatch();
+
+        assertEquals(1, transport.binary.size());
+        ByteBuffer frame = transport.binary.get(0);
+        assertEquals(BinaryProtocol.BATCH, BinaryProtocol.readVarInt(frame));
+        assertEquals(3, BinaryProtocol.readVarInt(frame));
+        assertEquals("a;1", BinaryProtocol.readUtf8(frame.slice(frame.position(), 3)));
+        frame.position(frame.position() + 3);
+        assertEquals(3, BinaryProtocol.readVarInt(frame));
+        assertEquals("b;2", BinaryProtocol.readUtf8(frame));
+
+        // Binary protocol batches can't hold text frames.
+        queue.startBatch(false);
+        queue.sendBinary(ByteBuffer.allocate(4), false);
+        queue.sendText("text", false);
+        queue.flushBatch();
+        assertEquals(List.of("<9 bytes>", "<4 bytes>", "text"), transport.sent);
+    }
+}
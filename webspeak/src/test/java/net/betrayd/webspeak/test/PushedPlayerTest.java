@@ -0,0 +1,51 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.PushedWebSpeakPlayer;
+import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.test.TestServer.TestConnection;
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+public class PushedPlayerTest {
+
+    private static class PushedPlayer extends PushedWebSpeakPlayer {
+        PushedPlayer(WebSpeakServer server, String playerId, String sessionId) {
+            super(server, playerId, sessionId);
+        }
+    }
+
+    private static PushedPlayer connect(WebSpeakServer server, double x) {
+        PushedPlayer player = server.createPlayer(PushedPlayer::new);
+        player.setTransform(new WebSpeakVector(x, 0, 0), null, null);
+        player.setConnection(new TestConnection(server, player));
+        server.onWebsocketConnected(player.getConnection());
+        return player;
+    }
+
+    @Test
+    void testGettersFollowPushes() {
+        WebSpeakServer server = TestServer.start();
+        PushedPlayer a = connect(server, 0);
+        PushedPlayer b = connect(server, 100);
+
+        server.tick();
+        assertEquals(new WebSpeakVector(100, 0, 0), b.getLocation());
+        assertEquals(new WebSpeakVector(0, 0, 1), b.getForward());
+        assertFalse(server.areInScope(a, b));
+
+        b.setTransform(new WebSpeakVector(3, 0, 0), new WebSpeakVector(1, 0, 0), new WebSpeakVector(0, 1, 0));
+        assertEquals(new WebSpeakVector(3, 0, 0), b.getLocation());
+        assertEquals(new WebSpeakVector(1, 0, 0), b.getForward());
+
+        server.updateTransforms(new int[] { b.getHandle() }, new double[] { 4, 0, 0 }, null);
+        assertEquals(new WebSpeakVector(4, 0, 0), b.getLocation());
+        // Orientation is kept.
+        assertEquals(new WebSpeakVector(1, 0, 0), b.getForward());
+
+        server.tick();
+        assertTrue(server.areInScope(a, b));
+    }
+}
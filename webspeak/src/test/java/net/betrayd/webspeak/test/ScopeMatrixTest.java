@@ -0,0 +1,75 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.WebSpeakPlayer;
+import net.betrayd.webspeak.impl.scope.ScopeMatrix;
+import net.betrayd.webspeak.impl.scope.ScopeSnapshot;
+
+public class ScopeMatrixTest {
+
+    @Test
+    void testPairsAreSymmetric() {
+        ScopeMatrix matrix = new ScopeMatrix();
+        assertTrue(matrix.set(3, 130));
+        assertFalse(matrix.set(130, 3));
+
+        assertTrue(matrix.get(3, 130));
+        assertTrue(matrix.get(130, 3));
+        assertFalse(matrix.get(3, 4));
+        assertFalse(matrix.get(500, 3));
+        assertEquals(1, matrix.size());
+
+        assertTrue(matrix.clear(130, 3));
+        assertFalse(matrix.get(3, 130));
+        assertEquals(0, matrix.size());
+    }
+
+    @Test
+    void testClearAll() {
+        ScopeMatrix matrix = new ScopeMatrix();
+        matrix.set(0, 1);
+        matrix.set(0, 64);
+        matrix.set(1, 64);
+
+        Set<Integer> related = new HashSet<>();
+        matrix.forEach(0, related::add);
+        assertEquals(Set.of(1, 64), related);
+        assertEquals(2, matrix.count(0));
+
+        assertTrue(matrix.clearAll(0));
+        assertEquals(1, matrix.size());
+        assertFalse(matrix.get(1, 0));
+        assertFalse(matrix.get(64, 0));
+        assertTrue(matrix.get(1, 64));
+        assertFalse(matrix.clearAll(0));
+    }
+
+    @Test
+    void testSnapshotsAreIsolated() {
+        ScopeMatrix matrix = new ScopeMatrix();
+        matrix.set(0, 1);
+        matrix.set(2, 3);
+        assertTrue(matrix.hasChanges());
+        ScopeSnapshot first = matrix.publish(1, new WebSpeakPlayer[0]);
+        assertFalse(matrix.hasChanges());
+
+        matrix.clear(0, 1);
+        matrix.set(0, 2);
+        ScopeSnapshot second = matrix.publish(2, new WebSpeakPlayer[0]);
+
+        assertTrue(first.get(1, 0));
+        assertFalse(first.get(0, 2));
+        assertEquals(2, first.size());
+
+        assertFalse(second.get(1, 0));
+        assertTrue(second.get(2, 0));
+        assertTrue(second.get(3, 2));
+        assertEquals(2, second.count(2));
+    }
+}
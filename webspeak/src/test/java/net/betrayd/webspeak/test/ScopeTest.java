@@ -0,0 +1,320 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.ScopePolicy;
+import net.betrayd.webspeak.WebSpeakChannel;
+import net.betrayd.webspeak.WebSpeakFlags;
+import net.betrayd.webspeak.WebSpeakPlayer;
+import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.test.TestServer.TestPlayer;
+
+public class ScopeTest {
+
+    /**
+     * A player that counts how many times its scope was checked.
+     */
+    private static class CountingPlayer extends TestPlayer {
+        int checks;
+
+        CountingPlayer(WebSpeakServer server, String playerId, String sessionId) {
+            super(server, playerId, sessionId);
+        }
+
+        @Override
+        public boolean isInScope(WebSpeakPlayer other) {
+            checks++;
+            return super.isInScope(other);
+        }
+    }
+
+    /**
+     * A player that can hear its teammates from anywhere.
+     */
+    private static class TeamPlayer extends TestPlayer {
+        int team;
+
+        TeamPlayer(WebSpeakServer server, String playerId, String sessionId) {
+            super(server, playerId, sessionId);
+        }
+
+        @Override
+        public boolean isInScope(WebSpeakPlayer other) {
+            return (other instanceof TeamPlayer teammate && teammate.team == team) || super.isInScope(other);
+        }
+    }
+
+    private static int countChecks(List<CountingPlayer> players) {
+        int checks = 0;
+        for (var player : players) {
+            checks += player.checks;
+            player.checks = 0;
+        }
+        return checks;
+    }
+
+    @Test
+    void testOnlyMovedPlayersAreChecked() {
+        WebSpeakServer server = TestServer.start();
+        server.setFlag(WebSpeakFlags.INCREMENTAL_SCOPES, true);
+        CountingPlayer a = TestServer.connect(server, CountingPlayer::new, 0, 0, 0);
+        CountingPlayer b = TestServer.connect(server, CountingPlayer::new, 5, 0, 0);
+        CountingPlayer c = TestServer.connect(server, CountingPlayer::new, 100, 0, 0);
+        List<CountingPlayer> players = List.of(a, b, c);
+
+        server.tick();
+        assertTrue(server.areInScope(a, b));
+        assertFalse(server.areInScope(a, c));
+
+        // Nobody moved.
+        countChecks(players);
+        server.tick();
+        assertEquals(0, countChecks(players));
+
+        c.setLocation(3, 0, 0);
+        server.tick();
+        assertTrue(server.areInScope(b, c));
+        assertTrue(server.areInScope(a, c));
+
+        // A is no longer near B or C on the grid, but is still found through its scopes.
+        a.setLocation(200, 0, 0);
+        server.tick();
+        assertFalse(server.areInScope(a, b));
+        assertFalse(server.areInScope(a, c));
+        assertTrue(server.areInScope(b, c));
+    }
+
+    @Test
+    void testDirtyPlayersAreChecked() {
+        WebSpeakServer server = TestServer.start();
+        server.setFlag(WebSpeakFlags.INCREMENTAL_SCOPES, true);
+        WebSpeakChannel other = server.createChannel("other");
+
+        TestPlayer a = TestServer.connect(server, 0, 0, 0);
+        TestPlayer b = TestServer.connect(server, 1, 0, 0);
+        b.setChannel(other);
+        server.tick();
+        assertFalse(server.areInScope(a, b));
+
+        // Neither player moved, but B's channel changed.
+        b.setChannel(server.getDefaultChannel());
+        server.tick();
+        assertTrue(server.areInScope(a, b));
+    }
+
+    @Test
+    void testIsInScopeOverrideSeesFarPlayers() {
+        WebSpeakServer server = TestServer.start();
+        TeamPlayer a = TestServer.connect(server, TeamPlayer::new, 0, 0, 0);
+        TeamPlayer b = TestServer.connect(server, TeamPlayer::new, 500, 0, 0);
+        TeamPlayer c = TestServer.connect(server, TeamPlayer::new, 5, 0, 0);
+        a.team = 1;
+        b.team = 1;
+        c.team = 2;
+
+        server.tick();
+        assertEquals(ScopePolicy.PER_PLAYER, server.getScopePolicy());
+        assertFalse(server.getFlag(WebSpeakFlags.SCOPE_BROADPHASE));
+        assertTrue(server.areInScope(a, b));
+        assertTrue(server.areInScope(a, c));
+        assertFalse(server.areInScope(b, c));
+
+        // Still checked when they move further apart.
+        b.setLocation(1000, 0, 0);
+        server.tick();
+        assertTrue(server.areInScope(a, b));
+    }
+
+    @Test
+    void testExplicitBroadphaseIsKept() {
+        WebSpeakServer server = TestServer.start();
+        server.setFlag(WebSpeakFlags.SCOPE_BROADPHASE, true);
+        TeamPlayer a = TestServer.connect(server, TeamPlayer::new, 0, 0, 0);
+        TeamPlayer b = TestServer.connect(server, TeamPlayer::new, 500, 0, 0);
+
+        server.tick();
+        assertEquals(ScopePolicy.PER_PLAYER, server.getScopePolicy());
+        assertTrue(server.getFlag(WebSpeakFlags.SCOPE_BROADPHASE));
+        // The grid never offers the pair.
+        assertFalse(server.areInScope(a, b));
+    }
+
+    @Test
+    void testExitHysteresis() {
+        WebSpeakServer server = TestServer.start();
+        float range = server.getMaxAudioRange();
+        float exitRange = server.getScopeExitRange();
+        assertTrue(exitRange > range);
+
+        TestPlayer a = TestServer.connect(server, 0, 0, 0);
+        TestPlayer b = TestServer.connect(server, range - 1, 0, 0);
+        server.tick();
+        assertTrue(server.areInScope(a, b));
+
+        // Past the range but within the margin: stays in scope.
+        b.setLocation((range + exitRange) / 2, 0, 0);
+        server.tick();
+        assertTrue(server.areInScope(a, b));
+
+        b.setLocation(exitRange + 0.5, 0, 0);
+        server.tick();
+        assertFalse(server.areInScope(a, b));
+
+        // Coming back into the margin isn't enough to join again.
+        b.setLocation((range + exitRange) / 2, 0, 0);
+        server.tick();
+        assertFalse(server.areInScope(a, b));
+
+        b.setLocation(range - 0.5, 0, 0);
+        server.tick();
+        assertTrue(server.areInScope(a, b));
+    }
+
+    @Test
+    void testPeerBudgetKeepsHighestPriority() {
+        WebSpeakServer server = TestServer.start();
+        server.setFlag(WebSpeakFlags.PEER_BUDGET, 2);
+
+        // B to E are all in range of A, but out of range of each other.
+        TestPlayer a = TestServer.connect(server, 0, 0, 0);
+        TestPlayer b = TestServer.connect(server, 17, 0, 0);
+        TestPlayer c = TestServer.connect(server, 0, 0, 18);
+        TestPlayer d = TestServer.connect(server, -19, 0, 0);
+        TestPlayer e = TestServer.connect(server, 0, 0, -20);
+
+        server.tick();
+        assertTrue(server.areInScope(a, b));
+        assertTrue(server.areInScope(a, c));
+        assertFalse(server.areInScope(a, d));
+        assertFalse(server.areInScope(a, e));
+        assertEquals(2, server.getPlayersInScope(a).size());
+
+        // D comes closer than everyone, pushing out the furthest player A kept.
+        d.setLocation(-1, 0, 0);
+        server.tick();
+        assertTrue(server.areInScope(a, d));
+        assertTrue(server.areInScope(a, b));
+        assertFalse(server.areInScope(a, c));
+        assertEquals(2, server.getPlayersInScope(a).size());
+        // D and B are now in range of each other, and both have room for it.
+        assertTrue(server.areInScope(b, d));
+    }
+
+    @Test
+    void testBudgetCarriesOverStalePlayers() {
+        WebSpeakServer server = TestServer.start();
+        // Too little time for more than one slice per tick.
+        server.setFlag(WebSpeakFlags.SCOPE_TIME_BUDGET, 1);
+        server.setFlag(WebSpeakFlags.SCOPE_MAX_STALENESS, 3);
+
+        Random random = new Random(3);
+        List<TestPlayer> players = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            players.add(TestServer.connect(server, random.nextDouble(-100, 100), 0, random.nextDouble(-100, 100)));
+        }
+
+        int expected = 0;
+        for (int i = 0; i < players.size(); i++) {
+            for (int j = i + 1; j < players.size(); j++) {
+                if (players.get(i).getLocation().distanceTo(players.get(j).getLocation()) <= server.getMaxAudioRange()) {
+                    expected++;
+                }
+            }
+        }
+
+        server.tick();
+        assertTrue(countPairs(server, players) < expected, "Everyone was evaluated on the first tick");
+
+        // Players that ran out of budget are evaluated anyway once they've waited long enough.
+        for (int i = 0; i < 3; i++) {
+            server.tick();
+        }
+        assertEquals(expected, countPairs(server, players));
+    }
+
+    private static int countPairs(WebSpeakServer server, List<TestPlayer> players) {
+        int count = 0;
+        for (int i = 0; i < players.size(); i++) {
+            for (int j = i + 1; j < players.size(); j++) {
+                if (server.areInScope(players.get(i), players.get(j))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Create a server with players spread over a few channels, the same way
+     * every time.
+     */
+    private static List<TestPlayer> populate(WebSpeakServer server) {
+        List<WebSpeakChannel> channels = List.of(server.getDefaultChannel(), server.createChannel("a"),
+                server.createChannel("b"), server.createChannel("c"));
+        Random random = new Random(42);
+        List<TestPlayer> players = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            TestPlayer player = TestServer.connect(server, random.nextDouble(-150, 150), 0, random.nextDouble(-150, 150));
+            player.setChannel(channels.get(i % channels.size()));
+            players.add(player);
+        }
+        return players;
+    }
+
+    /**
+     * Get the indices of every player in scope with each player.
+     */
+    private static List<Set<Integer>> getScopes(WebSpeakServer server, List<TestPlayer> players) {
+        List<Set<Integer>> scopes = new ArrayList<>();
+        for (var player : players) {
+            Set<Integer> indices = new HashSet<>();
+            for (var other : server.getPlayersInScope(player)) {
+                indices.add(players.indexOf(other));
+            }
+            scopes.add(indices);
+        }
+        return scopes;
+    }
+
+    @Test
+    void testParallelMatchesSerial() {
+        WebSpeakServer serial = TestServer.start();
+        List<TestPlayer> serialPlayers = populate(serial);
+
+        WebSpeakServer parallel = TestServer.start();
+        List<TestPlayer> parallelPlayers = populate(parallel);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        parallel.setScopeExecutor(pool);
+
+        try {
+            Random random = new Random(7);
+            for (int tick = 0; tick < 10; tick++) {
+                for (int i = 0; i < serialPlayers.size(); i++) {
+                    if (random.nextInt(3) == 0) {
+                        double dx = random.nextDouble(-8, 8);
+                        double dz = random.nextDouble(-8, 8);
+                        serialPlayers.get(i).x += dx;
+                        serialPlayers.get(i).z += dz;
+                        parallelPlayers.get(i).x += dx;
+                        parallelPlayers.get(i).z += dz;
+                    }
+                }
+                serial.tick();
+                parallel.tick();
+                assertEquals(getScopes(serial, serialPlayers), getScopes(parallel, parallelPlayers),
+                        "Scopes differ on tick " + tick);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
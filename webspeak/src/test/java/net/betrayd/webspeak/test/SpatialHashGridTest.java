@@ -0,0 +1,62 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.impl.scope.SpatialHashGrid;
+
+public class SpatialHashGridTest {
+
+    @Test
+    void testNeighborsMatchBruteForce() {
+        Random random = new Random(1234);
+        double range = 24;
+        int count = 500;
+
+        double[][] positions = new double[count][3];
+        SpatialHashGrid grid = new SpatialHashGrid(range);
+        for (int i = 0; i < count; i++) {
+            positions[i][0] = random.nextDouble(-300, 300);
+            positions[i][1] = random.nextDouble(-20, 20);
+            positions[i][2] = random.nextDouble(-300, 300);
+            grid.insert(i, positions[i][0], positions[i][1], positions[i][2]);
+        }
+
+        for (int i = 0; i < count; i++) {
+            Set<Integer> found = new HashSet<>();
+            grid.forEachNeighbor(i, found::add);
+            assertTrue(found.contains(i), "Entry should find itself");
+
+            for (int j = 0; j < count; j++) {
+                double dx = positions[i][0] - positions[j][0];
+                double dy = positions[i][1] - positions[j][1];
+                double dz = positions[i][2] - positions[j][2];
+                if (dx * dx + dy * dy + dz * dz <= range * range) {
+                    assertTrue(found.contains(j), "Grid missed an entry within range");
+                }
+                assertEquals(found.contains(j), grid.areNeighbors(i, j));
+            }
+        }
+    }
+
+    @Test
+    void testClearAndRebuild() {
+        SpatialHashGrid grid = new SpatialHashGrid(10);
+        grid.insert(0, 0, 0, 0);
+        grid.insert(1, 100, 0, 0);
+        grid.clear();
+
+        grid.setCellSize(200);
+        grid.insert(0, 0, 0, 0);
+        grid.insert(1, 100, 0, 0);
+
+        Set<Integer> found = new HashSet<>();
+        grid.forEachNeighbor(0, found::add);
+        assertEquals(Set.of(0, 1), found);
+    }
+}
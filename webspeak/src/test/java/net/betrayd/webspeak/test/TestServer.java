@@ -0,0 +1,161 @@
+package net.betrayd.webspeak.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.betrayd.webspeak.PlayerConnection;
+import net.betrayd.webspeak.ServerTestAccess;
+import net.betrayd.webspeak.WebSpeakPlayer;
+import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.WebSpeakServer.WebSpeakPlayerFactory;
+import net.betrayd.webspeak.impl.ServerBackend;
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+/**
+ * Utilities for tests that need a running server with connected players, but
+ * no network.
+ */
+public final class TestServer {
+    private TestServer() {
+    }
+
+    /**
+     * A backend that doesn't open any sockets.
+     */
+    public static class NullBackend implements ServerBackend {
+        private final WebSpeakServer server;
+        private boolean running;
+
+        public NullBackend(WebSpeakServer server) {
+            this.server = server;
+        }
+
+        @Override
+        public WebSpeakServer getServer() {
+            return server;
+        }
+
+        @Override
+        public void start(int port) {
+            running = true;
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public int getPort() {
+            return -1;
+        }
+    }
+
+    /**
+     * A player whose location is set directly.
+     */
+    public static class TestPlayer extends WebSpeakPlayer {
+        public double x;
+        public double y;
+        public double z;
+
+        public TestPlayer(WebSpeakServer server, String playerId, String sessionId) {
+            super(server, playerId, sessionId);
+        }
+
+        @Override
+        public WebSpeakVector getLocation() {
+            return new WebSpeakVector(x, y, z);
+        }
+
+        public void setLocation(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        public TestConnection getTestConnection() {
+            return (TestConnection) getConnection();
+        }
+    }
+
+    /**
+     * A connection that keeps everything sent to it.
+     */
+    public static class TestConnection implements PlayerConnection {
+        private final WebSpeakServer server;
+        private final WebSpeakPlayer player;
+        public final List<String> sent = new ArrayList<>();
+
+        public TestConnection(WebSpeakServer server, WebSpeakPlayer player) {
+            this.server = server;
+            this.player = player;
+        }
+
+        @Override
+        public WebSpeakServer getServer() {
+            return server;
+        }
+
+        @Override
+        public WebSpeakPlayer getPlayer() {
+            return player;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public void sendText(String message) {
+            sent.add(message);
+        }
+
+        @Override
+        public void disconnect(int statusCode, String reason) {
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return "test";
+        }
+    }
+
+    /**
+     * Create a server and start it on a {@link NullBackend}.
+     */
+    public static WebSpeakServer start() {
+        WebSpeakServer server = new WebSpeakServer();
+        try {
+            ServerTestAccess.start(server, new NullBackend(server), -1);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return server;
+    }
+
+    /**
+     * Add a player to a server and connect a client for it.
+     */
+    public static TestPlayer connect(WebSpeakServer server, double x, double y, double z) {
+        return connect(server, TestPlayer::new, x, y, z);
+    }
+
+    /**
+     * Add a player of a given type to a server and connect a client for it.
+     */
+    public static <T extends TestPlayer> T connect(WebSpeakServer server, WebSpeakPlayerFactory<T> factory,
+            double x, double y, double z) {
+        T player = server.createPlayer(factory);
+        player.setLocation(x, y, z);
+        player.setConnection(new TestConnection(server, player));
+        server.onWebsocketConnected(player.getConnection());
+        return player;
+    }
+}
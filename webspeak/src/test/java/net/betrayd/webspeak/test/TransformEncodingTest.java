@@ -0,0 +1,79 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.WebSpeakFlags;
+import net.betrayd.webspeak.WebSpeakServer;
+import net.betrayd.webspeak.impl.net.packets.InitialStateS2CPacket;
+import net.betrayd.webspeak.impl.net.packets.TransformPackets;
+import net.betrayd.webspeak.test.TestServer.TestPlayer;
+import net.betrayd.webspeak.util.WebSpeakVector;
+
+public class TransformEncodingTest {
+
+    @Test
+    void testOrientationRoundTrip() {
+        Random random = new Random(12);
+        for (int i = 0; i < 1000; i++) {
+            WebSpeakVector forward = randomUnit(random);
+            WebSpeakVector up = randomUnit(random).cross(forward).normalize();
+
+            WebSpeakVector[] result = TransformPackets.unpackOrientation(TransformPackets.packOrientation(forward, up));
+            assertTrue(result[0].distanceTo(forward) < 0.01, "forward " + forward + " became " + result[0]);
+            assertTrue(result[1].distanceTo(up) < 0.01, "up " + up + " became " + result[1]);
+        }
+    }
+
+    @Test
+    void testDefaultOrientation() {
+        WebSpeakVector[] result = TransformPackets.unpackOrientation(
+                TransformPackets.packOrientation(new WebSpeakVector(0, 0, 1), new WebSpeakVector(0, 1, 0)));
+        assertTrue(result[0].distanceTo(new WebSpeakVector(0, 0, 1)) < 0.01);
+        assertTrue(result[1].distanceTo(new WebSpeakVector(0, 1, 0)) < 0.01);
+    }
+
+    @Test
+    void testQuantizeClamps() {
+        assertEquals(128, TransformPackets.quantize(11, 10, 1f / 128));
+        assertEquals(-64, TransformPackets.quantize(9.5, 10, 1f / 128));
+        assertEquals(Integer.MAX_VALUE, TransformPackets.quantize(1e12, 0, 1f / 128));
+    }
+
+    @Test
+    void testVelocityRounding() {
+        float precision = 1f / 128;
+        WebSpeakVector rounded = TransformPackets.roundVelocity(new WebSpeakVector(2.01, 0, -1e6), precision);
+        assertEquals(2, rounded.x(), 1e-9);
+        assertEquals(0, rounded.y(), 1e-9);
+        // Clamped to what fits in the encoding.
+        assertEquals(Short.MIN_VALUE * precision * TransformPackets.VELOCITY_SCALE, rounded.z(), 1e-9);
+    }
+
+    @Test
+    void testResyncUsesTransformEncoding() {
+        WebSpeakServer server = TestServer.start();
+        server.setFlag(WebSpeakFlags.COMPACT_TRANSFORMS, true);
+        server.setFlag(WebSpeakFlags.BATCH_TRANSFORMS, true);
+        TestPlayer player = TestServer.connect(server, 0, 0, 0);
+        int others = InitialStateS2CPacket.CHUNK_SIZE + 10;
+        for (int i = 0; i < others; i++) {
+            TestServer.connect(server, 1, 0, 0);
+        }
+        server.tick();
+
+        player.getTestConnection().sent.clear();
+        server.onTransformsDropped(player.getConnection());
+        server.tick();
+        // Everyone plus the player's own transform, in two compact chunks.
+        assertEquals(2, player.getTestConnection().sent.stream().filter(m -> m.startsWith("compactTransform;")).count());
+        assertEquals(0, player.getTestConnection().sent.stream().filter(m -> m.startsWith("updateTransform")).count());
+    }
+
+    private static WebSpeakVector randomUnit(Random random) {
+        return new WebSpeakVector(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize();
+    }
+}
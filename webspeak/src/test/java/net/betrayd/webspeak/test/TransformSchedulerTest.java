@@ -0,0 +1,127 @@
+package net.betrayd.webspeak.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import net.betrayd.webspeak.impl.TransformScheduler;
+
+public class TransformSchedulerTest {
+
+    @Test
+    void testIntervalBands() {
+        // Max of 8: four bands of a quarter of the range each.
+        assertEquals(1, TransformScheduler.getInterval(0, 40, 8));
+        assertEquals(1, TransformScheduler.getInterval(9.9, 40, 8));
+        assertEquals(2, TransformScheduler.getInterval(10, 40, 8));
+        assertEquals(4, TransformScheduler.getInterval(20, 40, 8));
+        assertEquals(8, TransformScheduler.getInterval(30, 40, 8));
+        assertEquals(8, TransformScheduler.getInterval(40, 40, 8));
+        assertEquals(8, TransformScheduler.getInterval(100, 40, 8));
+
+        // Rounded down to a power of two.
+        assertEquals(4, TransformScheduler.getInterval(100, 40, 6));
+        assertEquals(2, TransformScheduler.getInterval(15, 40, 6));
+
+        assertEquals(1, TransformScheduler.getInterval(100, 40, 1));
+        assertEquals(1, TransformScheduler.getInterval(100, 0, 8));
+    }
+
+    @Test
+    void testPhasesAreSpread() {
+        int interval = 8;
+        int source = 5;
+        for (int tick = 0; tick < 64; tick++) {
+            // Every listener of a source updates on a different tick.
+            int scheduled = 0;
+            for (int listener = 0; listener < interval; listener++) {
+                if (TransformScheduler.isScheduled(source, listener, interval, tick)) {
+                    scheduled++;
+                }
+            }
+            assertEquals(1, scheduled);
+        }
+
+        for (int listener = 0; listener < 20; listener++) {
+            // And each pair updates exactly once per interval.
+            for (int start = 0; start < 32; start += interval) {
+                int scheduled = 0;
+                for (int tick = start; tick < start + interval; tick++) {
+                    if (TransformScheduler.isScheduled(source, listener, interval, tick)) {
+                        scheduled++;
+                    }
+                }
+                assertEquals(1, scheduled);
+            }
+            assertTrue(TransformScheduler.isScheduled(source, listener, 1, listener * 7));
+        }
+    }
+
+    @Test
+    void testOnlyDuePairsAreTaken() {
+        TransformScheduler scheduler = new TransformScheduler();
+        assertFalse(scheduler.isQueued(3, 70));
+
+        scheduler.schedule(3, 70, 8);
+        scheduler.schedule(3, 2, 1);
+        assertTrue(scheduler.isQueued(3, 70));
+        assertFalse(scheduler.isQueued(70, 3));
+
+        // Interval 1 is due right away.
+        int tick = 1;
+        assertEquals(1, scheduler.takeDue(tick));
+        assertEquals(3, scheduler.getDueSource(0));
+        assertEquals(2, scheduler.getDueListener(0));
+        scheduler.unqueue(3, 2);
+        assertFalse(scheduler.isQueued(3, 2));
+
+        // The other pair comes up exactly on its slot.
+        while (!TransformScheduler.isScheduled(3, 70, 8, tick)) {
+            assertEquals(0, scheduler.takeDue(tick));
+            tick++;
+        }
+        assertEquals(1, scheduler.takeDue(tick));
+        assertEquals(70, scheduler.getDueListener(0));
+        // Still queued until it's sent.
+        assertTrue(scheduler.isQueued(3, 70));
+        scheduler.unqueue(3, 70);
+        assertFalse(scheduler.isQueued(3, 70));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(0, scheduler.takeDue(++tick));
+        }
+    }
+
+    @Test
+    void testDueSortedBySource() {
+        TransformScheduler scheduler = new TransformScheduler();
+        scheduler.schedule(9, 1, 1);
+        scheduler.schedule(2, 5, 1);
+        scheduler.schedule(9, 0, 1);
+        scheduler.schedule(2, 3, 1);
+
+        assertEquals(4, scheduler.takeDue(0));
+        assertEquals(2, scheduler.getDueSource(0));
+        assertEquals(2, scheduler.getDueSource(1));
+        assertEquals(9, scheduler.getDueSource(2));
+        assertEquals(9, scheduler.getDueSource(3));
+    }
+
+    @Test
+    void testRemove() {
+        TransformScheduler scheduler = new TransformScheduler();
+        scheduler.schedule(1, 2, 4);
+        scheduler.schedule(2, 1, 4);
+        scheduler.schedule(1, 3, 4);
+
+        scheduler.remove(2);
+        assertFalse(scheduler.isQueued(1, 2));
+        assertFalse(scheduler.isQueued(2, 1));
+        assertTrue(scheduler.isQueued(1, 3));
+
+        int taken = 0;
+        for (int tick = 0; tick < 4; tick++) {
+            taken += scheduler.takeDue(tick);
+        }
+        assertEquals(1, taken);
+    }
+}
@@ -0,0 +1,47 @@
+package net.betrayd.webspeak.impl.scope;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A distance kernel that tests as many candidates at once as the CPU's vector
+ * registers allow. Only loaded if <code>jdk.incubator.vector</code> is
+ * available.
+ * 
+ * @implNote This doesn't use fused multiply-add, so it gives exactly the same
+ *           results as {@link ScalarDistanceKernel}.
+ */
+class VectorDistanceKernel extends DistanceKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public long withinRange(double px, double py, double pz, double[] x, double[] y, double[] z,
+            double[] limitsSquared, int count) {
+        DoubleVector vpx = DoubleVector.broadcast(SPECIES, px);
+        DoubleVector vpy = DoubleVector.broadcast(SPECIES, py);
+        DoubleVector vpz = DoubleVector.broadcast(SPECIES, pz);
+
+        long hits = 0;
+        int i = 0;
+        int bound = SPECIES.loopBound(count);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, x, i).sub(vpx);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, y, i).sub(vpy);
+            DoubleVector dz = DoubleVector.fromArray(SPECIES, z, i).sub(vpz);
+            DoubleVector distanceSquared = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+            long mask = distanceSquared.compare(VectorOperators.LE, DoubleVector.fromArray(SPECIES, limitsSquared, i))
+                    .toLong();
+            hits |= mask << i;
+        }
+        for (; i < count; i++) {
+            double dx = x[i] - px;
+            double dy = y[i] - py;
+            double dz = z[i] - pz;
+            if (dx * dx + dy * dy + dz * dz <= limitsSquared[i]) {
+                hits |= 1L << i;
+            }
+        }
+        return hits;
+    }
+}